@@ -0,0 +1,59 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.benchmarks;
+
+import java.io.File;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler enabled, so allocation rates are
+ * reported alongside ops/s and latency percentiles, and writes the results as
+ * JSON to {@code target/jmh-results.json} for comparison between library
+ * versions. Any JMH command line options are passed through, so for example
+ * {@code -p flavourId=2b} restricts the run to a single flavour.
+ *
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+public final class BenchmarkRunner {
+    private static final String RESULTS_FILE = "target/jmh-results.json";
+
+    private BenchmarkRunner() {
+        assert (false);
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        File results = new File(commandLine.getResult().orElse(RESULTS_FILE));
+        if (results.getParentFile() != null) {
+            results.getParentFile().mkdirs();
+        }
+        Options options = new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class)
+                .resultFormat(commandLine.getResultFormat().orElse(ResultFormatType.JSON))
+                .result(results.getPath()).build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.verapdf.gf.foundry.VeraGreenfieldFoundryProvider;
+import org.verapdf.pdfa.flavours.PDFAFlavour;
+import org.verapdf.pdfa.qa.AbstractTestCorpus.Corpus;
+import org.verapdf.pdfa.qa.CorpusManager;
+import org.verapdf.pdfa.qa.CorpusSampler;
+import org.verapdf.pdfa.qa.TestCorpus;
+
+/**
+ * A reproducible sample of veraPDF corpus items for a flavour, shared by all
+ * benchmark threads. The items are extracted to local files during setup so
+ * that archive access isn't measured, and each thread cycles through them
+ * using its own {@link Cursor}.
+ *
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+@State(Scope.Benchmark)
+public class CorpusSampleState {
+    /**
+     * The id of the {@link PDFAFlavour} to benchmark.
+     */
+    @Param({ "1b", "2b", "3b", "4", "ua1" })
+    public String flavourId;
+
+    /**
+     * The number of corpus items in the sample.
+     */
+    @Param({ "25" })
+    public int sampleSize;
+
+    /**
+     * The seed used to pick the sample, fixed so runs against different
+     * library versions measure the same items.
+     */
+    @Param({ "20150101" })
+    public long seed;
+
+    private PDFAFlavour flavour;
+    private List<File> items;
+
+    @Setup
+    public void setUp() throws IOException {
+        VeraGreenfieldFoundryProvider.initialise();
+        this.flavour = PDFAFlavour.fromString(this.flavourId);
+        TestCorpus corpus = CorpusManager.corpusByFlavourAndType(this.flavour, Corpus.VERA);
+        if (corpus == null || corpus.getItemCount() == 0)
+            throw new IllegalStateException("No veraPDF corpus items for flavour " + this.flavourId);
+        this.items = new ArrayList<>();
+        for (String itemName : CorpusSampler.seededSample(corpus, this.sampleSize, this.seed)) {
+            this.items.add(corpus.getItemFile(itemName));
+        }
+    }
+
+    /**
+     * @return the {@link PDFAFlavour} being benchmarked
+     */
+    public PDFAFlavour getFlavour() {
+        return this.flavour;
+    }
+
+    /**
+     * @return the sampled items as local files
+     */
+    public List<File> getItems() {
+        return this.items;
+    }
+
+    /**
+     * The position of a benchmark thread in the sample.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int index = 0;
+
+        /**
+         * @param sample
+         *            the sample to take the item from
+         * @return the next item in {@code sample}, wrapping round at the end
+         */
+        public File next(final CorpusSampleState sample) {
+            File item = sample.getItems().get(this.index);
+            this.index = (this.index + 1) % sample.getItems().size();
+            return item;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.verapdf.pdfa.Foundries;
+import org.verapdf.pdfa.PDFAParser;
+import org.verapdf.pdfa.PDFAValidator;
+import org.verapdf.pdfa.results.ValidationResult;
+
+/**
+ * Measures parsing and validating a corpus item together, the work done per
+ * item by {@link org.verapdf.pdfa.qa.CorpusValidator}.
+ *
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    /**
+     * A validator per benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Validator {
+        PDFAValidator validator;
+
+        @Setup(Level.Trial)
+        public void createValidator(final CorpusSampleState sample) {
+            this.validator = Foundries.defaultInstance().createValidator(sample.getFlavour(), 100, false, true,
+                    false);
+        }
+
+        @TearDown(Level.Trial)
+        public void closeValidator() throws IOException {
+            this.validator.close();
+        }
+    }
+
+    @Benchmark
+    public ValidationResult parseAndValidate(final CorpusSampleState sample, final CorpusSampleState.Cursor cursor,
+            final Validator validator) throws Exception {
+        try (PDFAParser parser = Foundries.defaultInstance().createParser(cursor.next(sample), sample.getFlavour())) {
+            return validator.validator.validate(parser);
+        }
+    }
+}
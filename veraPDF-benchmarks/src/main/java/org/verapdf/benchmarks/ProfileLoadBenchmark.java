@@ -0,0 +1,95 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.verapdf.pdfa.flavours.PDFAFlavour;
+import org.verapdf.pdfa.qa.BinaryProfileCache;
+import org.verapdf.pdfa.validation.profiles.Profiles;
+import org.verapdf.pdfa.validation.profiles.ValidationProfile;
+
+/**
+ * Compares loading a validation profile from its XML through JAXB with
+ * loading it from the {@link BinaryProfileCache} binary form. Both start from
+ * bytes in memory, so only parsing and object construction are measured.
+ *
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class ProfileLoadBenchmark {
+
+    @Benchmark
+    public ValidationProfile xml(final ProfileState profile) throws Exception {
+        return Profiles.profileFromXml(new ByteArrayInputStream(profile.xml));
+    }
+
+    @Benchmark
+    public ValidationProfile binary(final ProfileState profile) throws Exception {
+        return BinaryProfileCache.read(new ByteArrayInputStream(profile.binary));
+    }
+
+    /**
+     * The XML and binary forms of the built in validation profile for a
+     * flavour.
+     */
+    @State(Scope.Benchmark)
+    public static class ProfileState {
+        /**
+         * The id of the {@link PDFAFlavour} whose profile is loaded.
+         */
+        @Param({ "1b", "2b", "3b", "4", "ua1" })
+        public String flavourId;
+
+        byte[] xml;
+        byte[] binary;
+
+        @Setup
+        public void setUp() throws Exception {
+            ValidationProfile profile = Profiles.getVeraProfileDirectory()
+                    .getValidationProfileByFlavour(PDFAFlavour.fromString(this.flavourId));
+            this.xml = Profiles.profileToXml(profile, true, false).getBytes(StandardCharsets.UTF_8);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            BinaryProfileCache.write(Profiles.profileFromXml(new ByteArrayInputStream(this.xml)), output);
+            this.binary = output.toByteArray();
+            System.out.println("Profile " + this.flavourId + ": " + this.xml.length + " bytes of XML, "
+                    + this.binary.length + " bytes binary");
+        }
+    }
+}
@@ -32,8 +32,13 @@ import java.io.*;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URL;
+import java.net.URLConnection;
 import java.net.URLDecoder;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
@@ -106,8 +111,20 @@ public abstract class AbstractTestCorpus<L> implements TestCorpus {
         return getStreamFromReference(this.itemMap.get(itemName));
     }
 
+    /**
+     * { @inheritDoc }
+     */
+    @Override
+    public File getItemFile(String itemName) throws IOException {
+        if (!this.itemMap.containsKey(itemName))
+            throw new IOException("No element found for name=" + itemName);
+        return getFileFromReference(this.itemMap.get(itemName));
+    }
+
     protected abstract InputStream getStreamFromReference(final L reference) throws IOException;
 
+    protected abstract File getFileFromReference(final L reference) throws IOException;
+
     /**
      * { @inheritDoc }
      */
@@ -151,10 +168,10 @@ public abstract class AbstractTestCorpus<L> implements TestCorpus {
                         PDFAFlavour.PDFA_2_U, PDFAFlavour.PDFA_3_B, PDFAFlavour.PDFA_4, PDFAFlavour.PDFA_4_F, 
                         PDFAFlavour.PDFA_4_E, PDFAFlavour.PDFUA_1, PDFAFlavour.PDFUA_2,
                         PDFAFlavour.WTPDF_1_0_REUSE, PDFAFlavour.WTPDF_1_0_ACCESSIBILITY),
-                URI.create(VERA_URL), "veraCorp-"),
-        ISARTOR("Isartor", EnumSet.of(PDFAFlavour.PDFA_1_B), URI.create(ISARTOR_URL), "isartCorp-"),
-        BFO("BFO", EnumSet.of(PDFAFlavour.PDFA_2_B), URI.create(BFO_URL), "bfoCorp-"),
-        TWG("TWG", EnumSet.of(PDFAFlavour.NO_FLAVOUR), VERA.getZipFile().toURI(), "twgCorp-");
+                URI.create(VERA_URL)),
+        ISARTOR("Isartor", EnumSet.of(PDFAFlavour.PDFA_1_B), URI.create(ISARTOR_URL)),
+        BFO("BFO", EnumSet.of(PDFAFlavour.PDFA_2_B), URI.create(BFO_URL)),
+        TWG("TWG", EnumSet.of(PDFAFlavour.NO_FLAVOUR), VERA);
 
         private static final String desc = "Synthetic test files for PDF/A validation.";
         private static final Map<String, Corpus> ID_LOOKUP = new HashMap<>();
@@ -166,17 +183,22 @@ public abstract class AbstractTestCorpus<L> implements TestCorpus {
 
         private final String id;
         private final EnumSet<PDFAFlavour> flavours;
-        private final File zipFile;
+        private final URI downloadUri;
+        private final Corpus source;
+        private CompletableFuture<File> zipFile;
 
-        private Corpus(final String id, final EnumSet<PDFAFlavour> flavours, final URI downloadUri,
-                final String prefix) {
+        private Corpus(final String id, final EnumSet<PDFAFlavour> flavours, final URI downloadUri) {
             this.id = id;
             this.flavours = EnumSet.copyOf(flavours);
-            try {
-                this.zipFile = createTempFileFromCorpus(downloadUri.toURL(), prefix);
-            } catch (IOException excep) {
-                throw new IllegalStateException(excep);
-            }
+            this.downloadUri = downloadUri;
+            this.source = null;
+        }
+
+        private Corpus(final String id, final EnumSet<PDFAFlavour> flavours, final Corpus source) {
+            this.id = id;
+            this.flavours = EnumSet.copyOf(flavours);
+            this.downloadUri = source.downloadUri;
+            this.source = source;
         }
 
         public String getId() {
@@ -188,7 +210,41 @@ public abstract class AbstractTestCorpus<L> implements TestCorpus {
             return desc;
         }
 
+        /**
+         * @return the corpus zip file, blocking until it has been fetched if
+         *         this is the first time it's been asked for
+         * @throws IllegalStateException
+         *             if the zip file couldn't be fetched
+         */
         public File getZipFile() {
+            try {
+                return fetch().join();
+            } catch (CompletionException excep) {
+                throw new IllegalStateException(excep.getCause());
+            }
+        }
+
+        /**
+         * Starts fetching the corpus zip file in the background if it hasn't
+         * been started already. Corpora that share a zip file share the same
+         * {@code CompletableFuture}.
+         *
+         * @return a {@code CompletableFuture} that completes with the corpus zip
+         *         file
+         */
+        public synchronized CompletableFuture<File> fetch() {
+            if (this.source != null)
+                return this.source.fetch();
+            if (this.zipFile == null) {
+                this.zipFile = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return "file".equals(this.downloadUri.getScheme()) ? new File(this.downloadUri)
+                                : CorpusCache.defaultInstance().fetch(this.downloadUri.toURL());
+                    } catch (IOException excep) {
+                        throw new CompletionException(excep);
+                    }
+                }, loaderExecutor());
+            }
             return this.zipFile;
         }
 
@@ -201,6 +257,14 @@ public abstract class AbstractTestCorpus<L> implements TestCorpus {
         }
     }
 
+    /**
+     * @return the shared daemon {@code ExecutorService} used to fetch and index
+     *         corpora in the background
+     */
+    static ExecutorService loaderExecutor() {
+        return LoaderHolder.EXECUTOR;
+    }
+
     public static File createTempFileFromCorpus(final URL downloadLoc, final String prefix) throws IOException {
         File tempFile = File.createTempFile(prefix, ".zip");
         System.out.println("Downloading: " + downloadLoc + ", to temp:" + tempFile);
@@ -220,8 +284,18 @@ public abstract class AbstractTestCorpus<L> implements TestCorpus {
     }
 
     static InputStream handleRedirects(URL url) throws IOException {
+        return openConnection(url, Collections.emptyMap()).getInputStream();
+    }
+
+    /**
+     * Opens a connection to {@code url}, following HTTP redirects, with the
+     * passed request properties set on every request made.
+     */
+    static URLConnection openConnection(URL url, Map<String, String> requestProperties) throws IOException {
         if (!url.getProtocol().startsWith("http")) {
-            return url.openStream();
+            URLConnection conn = url.openConnection();
+            conn.connect();
+            return conn;
         }
         URL resourceUrl;
         URL base;
@@ -247,6 +321,9 @@ public abstract class AbstractTestCorpus<L> implements TestCorpus {
             conn.setReadTimeout(15000);
             conn.setInstanceFollowRedirects(false); // Make the logic below easier to detect redirections
             conn.setRequestProperty("User-Agent", "Mozilla/5.0...");
+            for (Map.Entry<String, String> property : requestProperties.entrySet()) {
+                conn.setRequestProperty(property.getKey(), property.getValue());
+            }
 
             switch (conn.getResponseCode()) {
                 case HttpURLConnection.HTTP_MOVED_PERM:
@@ -262,6 +339,14 @@ public abstract class AbstractTestCorpus<L> implements TestCorpus {
             break;
         }
 
-        return conn.getInputStream();
+        return conn;
+    }
+
+    private static final class LoaderHolder {
+        private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(task -> {
+            Thread loader = new Thread(task, "corpus-loader");
+            loader.setDaemon(true);
+            return loader;
+        });
     }
 }
@@ -0,0 +1,523 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.verapdf.pdfa.flavours.PDFAFlavour;
+import org.verapdf.pdfa.validation.profiles.ErrorArgument;
+import org.verapdf.pdfa.validation.profiles.ErrorArgumentImpl;
+import org.verapdf.pdfa.validation.profiles.ErrorDetails;
+import org.verapdf.pdfa.validation.profiles.ProfileDetails;
+import org.verapdf.pdfa.validation.profiles.Profiles;
+import org.verapdf.pdfa.validation.profiles.Reference;
+import org.verapdf.pdfa.validation.profiles.Rule;
+import org.verapdf.pdfa.validation.profiles.RuleId;
+import org.verapdf.pdfa.validation.profiles.ValidationProfile;
+import org.verapdf.pdfa.validation.profiles.Variable;
+
+import javax.xml.bind.JAXBException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A cache of validation profiles in a compact binary form, so a profile only
+ * has to be unmarshalled by JAXB the first time its XML is seen. Each profile
+ * is stored under the SHA-1 of its XML, as soon as the XML has been parsed.
+ * Loading a stored profile reads it straight into {@link ValidationProfile},
+ * {@link Rule} and {@link Variable} objects.
+ * <p>
+ * The binary form is a {@link DataOutputStream} of the profile's fields with
+ * every string written once, later occurrences refer back to the first one.
+ * The many rules that share objects, specifications and clauses keep the
+ * files small.
+ * <p>
+ * A binary profile is only as good as the library's profile model that wrote
+ * it, so profiles are stored in a directory per format version and set of
+ * veraPDF library versions, and each file records the library versions too.
+ * A profile written by other library versions is never read.
+ * {@link #prune(long)} deletes other versions' directories and profiles that
+ * haven't been used for a while, the default cache is pruned when it's first
+ * used.
+ *
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+public final class BinaryProfileCache {
+	/**
+	 * System property holding the cache directory, defaults to
+	 * {@code profiles} in the corpus cache directory.
+	 */
+	public static final String CACHE_DIR_PROPERTY = "verapdf.profile.cache.dir";
+	/**
+	 * System property holding the number of days a profile can go unused
+	 * before the default cache deletes it, defaults to 30.
+	 */
+	public static final String MAX_AGE_PROPERTY = "verapdf.profile.cache.max.age.days";
+	private static final Logger LOG = Logger.getLogger(BinaryProfileCache.class.getCanonicalName());
+	private static final int MAGIC = 0x56505246; // VPRF
+	private static final int VERSION = 2;
+	private static final String SUFFIX = ".vprf";
+	private static final Pattern VERSION_DIR_PATTERN = Pattern.compile("\\d+-[0-9a-f]{12}");
+	// Used profiles are touched at most this often, so pruning knows they're in use
+	private static final long TOUCH_INTERVAL_MILLIS = TimeUnit.DAYS.toMillis(1);
+	// String references, a null, a new string or an index into the strings read so far
+	private static final int NULL_STRING = 0;
+	private static final int NEW_STRING = 1;
+	private static final int STRING_REF_BASE = 2;
+
+	private static final Map<File, BinaryProfileCache> DEFAULT_INSTANCES = new ConcurrentHashMap<>();
+
+	private final File dir;
+	private final File versionDir;
+
+	private BinaryProfileCache(final File dir) {
+		this.dir = dir;
+		this.versionDir = new File(dir,
+				VERSION + "-" + DigestUtils.sha1Hex(RegressionResultStore.libraryVersions()).substring(0, 12));
+	}
+
+	/**
+	 * @param dir
+	 *            the directory the binary profiles are stored in, created when
+	 *            the first profile is stored
+	 * @return a BinaryProfileCache that stores profiles in a directory for
+	 *         the current library versions in {@code dir}
+	 */
+	public static BinaryProfileCache fromDirectory(final File dir) {
+		if (dir == null)
+			throw new NullPointerException("Parameter dir can not be null");
+		return new BinaryProfileCache(dir);
+	}
+
+	/**
+	 * @return the cache in the directory named by {@link #CACHE_DIR_PROPERTY},
+	 *         or else in {@code profiles} in the corpus cache directory. The
+	 *         property is read on every call, so tests can point the default
+	 *         cache at a temporary directory.
+	 */
+	public static BinaryProfileCache defaultInstance() {
+		String path = System.getProperty(CACHE_DIR_PROPERTY);
+		File dir = path != null ? new File(path).getAbsoluteFile() : DefaultHolder.DIR;
+		return DEFAULT_INSTANCES.computeIfAbsent(dir, key -> pruned(fromDirectory(key)));
+	}
+
+	/**
+	 * @return the directory the binary profiles are stored in
+	 */
+	public File getDirectory() {
+		return this.dir;
+	}
+
+	/**
+	 * @return the directory in {@link #getDirectory()} holding the profiles
+	 *         written by the current library versions
+	 */
+	public File getVersionDirectory() {
+		return this.versionDir;
+	}
+
+	/**
+	 * Deletes the profiles written by other library versions, and the current
+	 * versions' profiles that haven't been used for {@code maxAgeMillis}.
+	 *
+	 * @param maxAgeMillis
+	 *            how long a profile can go unused before it's deleted
+	 * @return the number of profiles deleted
+	 * @throws IOException
+	 *             if the cache directory can't be listed
+	 */
+	public int prune(final long maxAgeMillis) throws IOException {
+		if (maxAgeMillis < 0)
+			throw new IllegalArgumentException("Parameter maxAgeMillis=" + maxAgeMillis + ", must be >= 0");
+		File[] entries = this.dir.listFiles();
+		if (entries == null)
+			return 0;
+		int deleted = 0;
+		for (File entry : entries) {
+			if (entry.isFile() && entry.getName().endsWith(SUFFIX)) {
+				// Written before profiles were kept per library version
+				deleted += Files.deleteIfExists(entry.toPath()) ? 1 : 0;
+			} else if (entry.isDirectory() && !entry.equals(this.versionDir)
+					&& VERSION_DIR_PATTERN.matcher(entry.getName()).matches()) {
+				deleted += deleteAll(entry, Long.MAX_VALUE);
+			}
+		}
+		if (this.versionDir.isDirectory()) {
+			deleted += deleteAll(this.versionDir, System.currentTimeMillis() - maxAgeMillis);
+		}
+		return deleted;
+	}
+
+	/**
+	 * Loads the profile for an XML validation profile, from the binary cache
+	 * if it's there, otherwise by parsing the XML and storing the result.
+	 *
+	 * @param xml
+	 *            the validation profile XML
+	 * @return the parsed validation profile
+	 * @throws IOException
+	 *             if the XML can't be read
+	 * @throws JAXBException
+	 *             if the XML can't be parsed
+	 */
+	public ValidationProfile profileFromXml(final File xml) throws IOException, JAXBException {
+		if (xml == null)
+			throw new NullPointerException("Parameter xml can not be null");
+		return profileFromXml(Files.readAllBytes(xml.toPath()));
+	}
+
+	/**
+	 * @param xml
+	 *            the validation profile XML
+	 * @return the parsed validation profile, see {@link #profileFromXml(File)}
+	 * @throws JAXBException
+	 *             if the XML can't be parsed
+	 */
+	public ValidationProfile profileFromXml(final byte[] xml) throws JAXBException {
+		if (xml == null)
+			throw new NullPointerException("Parameter xml can not be null");
+		File binary = new File(this.versionDir, DigestUtils.sha1Hex(xml) + SUFFIX);
+		ValidationProfile stored = readStored(binary);
+		if (stored != null)
+			return stored;
+		ValidationProfile profile = ProfileUnmarshaller.unmarshal(new ByteArrayInputStream(xml));
+		try {
+			store(profile, binary);
+		} catch (IOException excep) {
+			LOG.log(Level.WARNING, "Couldn't store binary profile " + binary, excep);
+		}
+		return profile;
+	}
+
+	/**
+	 * Loads a stored profile without its XML, for callers that already know
+	 * the XML's SHA-1.
+	 *
+	 * @param xmlSha1
+	 *            the hex SHA-1 of the validation profile XML
+	 * @return the stored profile, or {@code null} if there isn't one
+	 */
+	public ValidationProfile profileFromSha1(final String xmlSha1) {
+		if (xmlSha1 == null)
+			throw new NullPointerException("Parameter xmlSha1 can not be null");
+		return readStored(new File(this.versionDir, xmlSha1 + SUFFIX));
+	}
+
+	/**
+	 * Writes a profile in the binary form.
+	 *
+	 * @param profile
+	 *            the profile to write
+	 * @param output
+	 *            the stream to write it to, left open
+	 * @throws IOException
+	 *             if the profile can't be written
+	 */
+	public static void write(final ValidationProfile profile, final OutputStream output) throws IOException {
+		if (profile == null)
+			throw new NullPointerException("Parameter profile can not be null");
+		ProfileWriter writer = new ProfileWriter(new DataOutputStream(output));
+		writer.out.writeInt(MAGIC);
+		writer.out.writeInt(VERSION);
+		writer.string(RegressionResultStore.libraryVersions());
+		writer.string(profile.getPDFAFlavour() == null ? null : profile.getPDFAFlavour().name());
+		ProfileDetails details = profile.getDetails();
+		writer.out.writeBoolean(details != null);
+		if (details != null) {
+			writer.string(details.getName());
+			writer.string(details.getDescription());
+			writer.string(details.getCreator());
+			writer.out.writeBoolean(details.getDateCreated() != null);
+			if (details.getDateCreated() != null) {
+				writer.out.writeLong(details.getDateCreated().getTime());
+			}
+		}
+		writer.string(profile.getHexSha1Digest());
+		writer.out.writeInt(profile.getRules().size());
+		for (Rule rule : profile.getRules()) {
+			writer.rule(rule);
+		}
+		writer.out.writeInt(profile.getVariables().size());
+		for (Variable variable : profile.getVariables()) {
+			writer.string(variable.getName());
+			writer.string(variable.getObject());
+			writer.string(variable.getDefaultValue());
+			writer.string(variable.getValue());
+		}
+		writer.out.flush();
+	}
+
+	/**
+	 * Reads a profile written by {@link #write(ValidationProfile, OutputStream)}.
+	 *
+	 * @param input
+	 *            the stream to read the profile from, left open
+	 * @return the profile
+	 * @throws IOException
+	 *             if the profile can't be read or wasn't written in this
+	 *             version of the binary form with these library versions
+	 */
+	public static ValidationProfile read(final InputStream input) throws IOException {
+		if (input == null)
+			throw new NullPointerException("Parameter input can not be null");
+		ProfileReader reader = new ProfileReader(new DataInputStream(input));
+		if (reader.in.readInt() != MAGIC)
+			throw new IOException("Not a binary validation profile");
+		int version = reader.in.readInt();
+		if (version != VERSION)
+			throw new IOException("Unsupported binary validation profile version " + version);
+		String libraries = reader.string();
+		if (!RegressionResultStore.libraryVersions().equals(libraries))
+			throw new IOException("Binary validation profile written by other library versions " + libraries);
+		String flavourName = reader.string();
+		PDFAFlavour flavour = flavourName == null ? null : PDFAFlavour.valueOf(flavourName);
+		ProfileDetails details = null;
+		if (reader.in.readBoolean()) {
+			String name = reader.string();
+			String description = reader.string();
+			String creator = reader.string();
+			Date created = reader.in.readBoolean() ? new Date(reader.in.readLong()) : null;
+			details = Profiles.profileDetailsFromValues(name, description, creator, created);
+		}
+		String hexSha1 = reader.string();
+		int ruleCount = reader.in.readInt();
+		Set<Rule> rules = new LinkedHashSet<>(ruleCount * 2);
+		for (int i = 0; i < ruleCount; i++) {
+			rules.add(reader.rule());
+		}
+		int variableCount = reader.in.readInt();
+		Set<Variable> variables = new LinkedHashSet<>(variableCount * 2);
+		for (int i = 0; i < variableCount; i++) {
+			variables.add(Profiles.variableFromValues(reader.string(), reader.string(), reader.string(),
+					reader.string()));
+		}
+		return Profiles.profileFromValues(flavour, details, hexSha1, rules, variables);
+	}
+
+	private static ValidationProfile readStored(final File binary) {
+		if (!binary.isFile())
+			return null;
+		ValidationProfile profile;
+		try (InputStream input = new BufferedInputStream(Files.newInputStream(binary.toPath()))) {
+			profile = read(input);
+		} catch (IOException | RuntimeException excep) {
+			LOG.log(Level.WARNING, "Couldn't read binary profile " + binary + ", parsing XML", excep);
+			return null;
+		}
+		long now = System.currentTimeMillis();
+		if (binary.lastModified() < now - TOUCH_INTERVAL_MILLIS && !binary.setLastModified(now)) {
+			LOG.log(Level.FINE, "Couldn't mark binary profile " + binary + " as used");
+		}
+		return profile;
+	}
+
+	/**
+	 * Deletes the files in {@code dir} last modified before {@code before},
+	 * and {@code dir} itself if that empties it.
+	 */
+	private static int deleteAll(final File dir, final long before) throws IOException {
+		File[] files = dir.listFiles();
+		if (files == null)
+			return 0;
+		int deleted = 0;
+		for (File file : files) {
+			if (file.isFile() && file.lastModified() < before && Files.deleteIfExists(file.toPath())
+					&& file.getName().endsWith(SUFFIX)) {
+				deleted++;
+			}
+		}
+		String[] remaining = dir.list();
+		if (remaining != null && remaining.length == 0) {
+			Files.deleteIfExists(dir.toPath());
+		}
+		return deleted;
+	}
+
+	private static void store(final ValidationProfile profile, final File binary) throws IOException {
+		Files.createDirectories(binary.getParentFile().toPath());
+		File tempFile = File.createTempFile(binary.getName(), ".tmp", binary.getParentFile());
+		try {
+			try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(tempFile.toPath()))) {
+				write(profile, output);
+			}
+			Files.move(tempFile.toPath(), binary.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempFile.toPath());
+		}
+	}
+
+	private static final class ProfileWriter {
+		final DataOutputStream out;
+		final Map<String, Integer> strings = new HashMap<>();
+
+		ProfileWriter(final DataOutputStream out) {
+			this.out = out;
+		}
+
+		void string(final String value) throws IOException {
+			if (value == null) {
+				this.out.writeInt(NULL_STRING);
+				return;
+			}
+			Integer index = this.strings.get(value);
+			if (index != null) {
+				this.out.writeInt(STRING_REF_BASE + index.intValue());
+				return;
+			}
+			this.strings.put(value, Integer.valueOf(this.strings.size()));
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			this.out.writeInt(NEW_STRING);
+			this.out.writeInt(bytes.length);
+			this.out.write(bytes);
+		}
+
+		void rule(final Rule rule) throws IOException {
+			RuleId id = rule.getRuleId();
+			string(id.getSpecification() == null ? null : id.getSpecification().name());
+			string(id.getClause());
+			this.out.writeInt(id.getTestNumber());
+			string(rule.getObject());
+			this.out.writeByte(rule.getDeferred() == null ? 0 : rule.getDeferred().booleanValue() ? 2 : 1);
+			string(rule.getTags());
+			string(rule.getDescription());
+			string(rule.getTest());
+			ErrorDetails error = rule.getError();
+			this.out.writeBoolean(error != null);
+			if (error != null) {
+				string(error.getMessage());
+				List<ErrorArgument> arguments = error.getArguments();
+				this.out.writeInt(arguments == null ? -1 : arguments.size());
+				if (arguments != null) {
+					for (ErrorArgument argument : arguments) {
+						string(argument.getArgument());
+						string(argument.getName());
+						string(argument.getArgumentValue());
+					}
+				}
+			}
+			List<Reference> references = rule.getReferences();
+			this.out.writeInt(references == null ? -1 : references.size());
+			if (references != null) {
+				for (Reference reference : references) {
+					string(reference.getSpecification());
+					string(reference.getClause());
+				}
+			}
+		}
+	}
+
+	private static final class ProfileReader {
+		final DataInputStream in;
+		final List<String> strings = new ArrayList<>();
+
+		ProfileReader(final DataInputStream in) {
+			this.in = in;
+		}
+
+		String string() throws IOException {
+			int code = this.in.readInt();
+			if (code == NULL_STRING)
+				return null;
+			if (code != NEW_STRING)
+				return this.strings.get(code - STRING_REF_BASE);
+			byte[] bytes = new byte[this.in.readInt()];
+			this.in.readFully(bytes);
+			String value = new String(bytes, StandardCharsets.UTF_8);
+			this.strings.add(value);
+			return value;
+		}
+
+		Rule rule() throws IOException {
+			String specification = string();
+			String clause = string();
+			RuleId id = Profiles.ruleIdFromValues(
+					specification == null ? null : PDFAFlavour.Specification.valueOf(specification), clause,
+					this.in.readInt());
+			String object = string();
+			byte deferred = this.in.readByte();
+			String tags = string();
+			String description = string();
+			String test = string();
+			ErrorDetails error = null;
+			if (this.in.readBoolean()) {
+				String message = string();
+				int argumentCount = this.in.readInt();
+				List<ErrorArgument> arguments = null;
+				if (argumentCount >= 0) {
+					arguments = new ArrayList<>(argumentCount);
+					for (int i = 0; i < argumentCount; i++) {
+						arguments.add(ErrorArgumentImpl.fromValues(string(), string(), string()));
+					}
+				}
+				error = Profiles.errorFromValues(message, arguments);
+			}
+			int referenceCount = this.in.readInt();
+			List<Reference> references = null;
+			if (referenceCount >= 0) {
+				references = new ArrayList<>(referenceCount);
+				for (int i = 0; i < referenceCount; i++) {
+					references.add(Profiles.referenceFromValues(string(), string()));
+				}
+			}
+			return Profiles.ruleFromValues(id, object, deferred == 0 ? null : Boolean.valueOf(deferred == 2), tags,
+					description, test, error, references);
+		}
+	}
+
+	private static BinaryProfileCache pruned(final BinaryProfileCache cache) {
+		try {
+			int deleted = cache.prune(TimeUnit.DAYS.toMillis(Long.getLong(MAX_AGE_PROPERTY, 30).longValue()));
+			if (deleted > 0) {
+				LOG.log(Level.INFO, "Deleted " + deleted + " stale binary profiles from " + cache.getDirectory());
+			}
+		} catch (IOException excep) {
+			LOG.log(Level.WARNING, "Couldn't prune binary profile cache " + cache.getDirectory(), excep);
+		}
+		return cache;
+	}
+
+	private static final class DefaultHolder {
+		private static final File DIR = new File(CorpusCache.defaultInstance().getRoot(), "profiles")
+				.getAbsoluteFile();
+	}
+}
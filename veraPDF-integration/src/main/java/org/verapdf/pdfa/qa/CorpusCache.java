@@ -0,0 +1,333 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A persistent, content addressed cache of downloaded resources such as the
+ * corpus zip files. Each download is stored once under the hex SHA-1 of its
+ * content, and an index entry per URL records that SHA-1 together with the
+ * ETag and Last-Modified values returned by the server. A cached copy is
+ * re-validated with a conditional request, so a warm cache costs one round trip
+ * per URL rather than a full download. In offline mode cached copies are used
+ * without contacting the server at all.
+ *
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+public final class CorpusCache {
+	/**
+	 * System property holding the cache directory, defaults to
+	 * {@code ~/.verapdf/corpus-cache}.
+	 */
+	public static final String CACHE_DIR_PROPERTY = "verapdf.corpus.cache.dir";
+	/**
+	 * System property that when {@code true} stops the cache from making any
+	 * network requests.
+	 */
+	public static final String OFFLINE_PROPERTY = "verapdf.corpus.offline";
+	private static final Logger LOG = Logger.getLogger(CorpusCache.class.getCanonicalName());
+	private static final String OBJECTS_DIR = "objects";
+	private static final String EXTRACTED_DIR = "extracted";
+	private static final String INDEX_DIR = "index";
+	private static final String INDEX_SUFFIX = ".properties";
+	private static final String URL_KEY = "url";
+	private static final String ETAG_KEY = "etag";
+	private static final String LAST_MODIFIED_KEY = "lastModified";
+	private static final String SHA1_KEY = "sha1";
+
+	private final File root;
+	private final boolean offline;
+	private final Map<String, Object> locks = new ConcurrentHashMap<>();
+	// Guards publishing objects against deleting them once they're unreferenced
+	private final Object objectsLock = new Object();
+
+	private CorpusCache(final File root, final boolean offline) {
+		this.root = root;
+		this.offline = offline;
+	}
+
+	/**
+	 * @param root
+	 *            the root directory of the cache, created if it doesn't exist
+	 * @param offline
+	 *            if {@code true} the cache never contacts the origin server
+	 * @return a CorpusCache instance backed by {@code root}
+	 */
+	public static CorpusCache fromValues(final File root, final boolean offline) {
+		if (root == null)
+			throw new NullPointerException("Parameter root can not be null");
+		return new CorpusCache(root, offline);
+	}
+
+	/**
+	 * @return the cache configured by the {@link #CACHE_DIR_PROPERTY} and
+	 *         {@link #OFFLINE_PROPERTY} system properties
+	 */
+	public static CorpusCache defaultInstance() {
+		return DefaultHolder.INSTANCE;
+	}
+
+	/**
+	 * @return the root directory of the cache
+	 */
+	public File getRoot() {
+		return this.root;
+	}
+
+	/**
+	 * @return {@code true} if the cache never contacts the origin server
+	 */
+	public boolean isOffline() {
+		return this.offline;
+	}
+
+	/**
+	 * @param hexSha1
+	 *            the hex SHA-1 of a cached archive
+	 * @return the directory that items of the archive are extracted to,
+	 *         deleted along with the archive when it's superseded
+	 */
+	public File getExtractedDirectory(final String hexSha1) {
+		return new File(new File(this.root, EXTRACTED_DIR), hexSha1);
+	}
+
+	/**
+	 * Returns a local copy of the resource at {@code url}, downloading it only
+	 * if there's no cached copy or the cached copy is out of date.
+	 *
+	 * @param url
+	 *            the URL of the resource to fetch
+	 * @return a {@link File} holding the content of the resource
+	 * @throws IOException
+	 *             if the resource can't be downloaded and there's no cached
+	 *             copy to fall back on
+	 */
+	public File fetch(final URL url) throws IOException {
+		String key = DigestUtils.sha1Hex(url.toExternalForm());
+		synchronized (this.locks.computeIfAbsent(key, k -> new Object())) {
+			Properties entry = readIndex(key);
+			File cached = entry == null ? null : objectFile(entry.getProperty(SHA1_KEY));
+			if (cached != null && !cached.isFile()) {
+				cached = null;
+			}
+			if (this.offline) {
+				if (cached == null)
+					throw new IOException("Offline and no cached copy of " + url);
+				System.out.println("Using cached: " + url + ", from:" + cached);
+				return cached;
+			}
+			try {
+				File fetched = download(url, key, cached == null ? null : entry, cached);
+				if (entry != null && !fetched.getName().equals(entry.getProperty(SHA1_KEY))) {
+					deleteIfUnreferenced(entry.getProperty(SHA1_KEY));
+				}
+				return fetched;
+			} catch (FileNotFoundException excep) {
+				throw excep;
+			} catch (IOException excep) {
+				if (cached == null)
+					throw excep;
+				LOG.log(Level.WARNING, "Couldn't re-validate " + url + ", using cached copy " + cached, excep);
+				return cached;
+			}
+		}
+	}
+
+	/**
+	 * @param url
+	 *            the URL of a resource
+	 * @return the hex SHA-1 of the cached copy of the resource at {@code url},
+	 *         or {@code null} if it isn't cached
+	 * @throws IOException
+	 *             if there's a problem reading the cache index
+	 */
+	public String getHexSha1(final URL url) throws IOException {
+		Properties entry = readIndex(DigestUtils.sha1Hex(url.toExternalForm()));
+		return entry == null ? null : entry.getProperty(SHA1_KEY);
+	}
+
+	private File download(final URL url, final String key, final Properties entry, final File cached)
+			throws IOException {
+		Map<String, String> conditions = new HashMap<>();
+		if (entry != null && entry.getProperty(ETAG_KEY) != null) {
+			conditions.put("If-None-Match", entry.getProperty(ETAG_KEY));
+		}
+		if (entry != null && entry.getProperty(LAST_MODIFIED_KEY) != null) {
+			conditions.put("If-Modified-Since", entry.getProperty(LAST_MODIFIED_KEY));
+		}
+		URLConnection conn = AbstractTestCorpus.openConnection(url, conditions);
+		String etag = conn.getHeaderField("ETag");
+		String lastModified = conn.getHeaderField("Last-Modified");
+		if (conn instanceof HttpURLConnection) {
+			int responseCode = ((HttpURLConnection) conn).getResponseCode();
+			if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+				((HttpURLConnection) conn).disconnect();
+				System.out.println("Not modified: " + url + ", using cached:" + cached);
+				return cached;
+			}
+		} else if (cached != null && conn.getLastModified() != 0
+				&& String.valueOf(conn.getLastModified()).equals(entry.getProperty(LAST_MODIFIED_KEY))) {
+			conn.getInputStream().close();
+			System.out.println("Not modified: " + url + ", using cached:" + cached);
+			return cached;
+		} else {
+			lastModified = conn.getLastModified() == 0 ? null : String.valueOf(conn.getLastModified());
+		}
+
+		File objects = new File(this.root, OBJECTS_DIR);
+		Files.createDirectories(objects.toPath());
+		File tempFile = File.createTempFile("download-", ".tmp", objects);
+		System.out.println("Downloading: " + url + ", to cache:" + objects);
+		String hexSha1;
+		long totalBytes = 0;
+		try {
+			MessageDigest sha1 = DigestUtils.getSha1Digest();
+			try (InputStream input = new DigestInputStream(conn.getInputStream(), sha1);
+					OutputStream output = new FileOutputStream(tempFile)) {
+				byte[] buffer = new byte[8 * 1024];
+				int bytesRead;
+				while ((bytesRead = input.read(buffer)) != -1) {
+					output.write(buffer, 0, bytesRead);
+					totalBytes += bytesRead;
+				}
+			}
+			hexSha1 = Hex.encodeHexString(sha1.digest());
+			Properties updated = new Properties();
+			updated.setProperty(URL_KEY, url.toExternalForm());
+			updated.setProperty(SHA1_KEY, hexSha1);
+			if (etag != null) {
+				updated.setProperty(ETAG_KEY, etag);
+			}
+			if (lastModified != null) {
+				updated.setProperty(LAST_MODIFIED_KEY, lastModified);
+			}
+			synchronized (this.objectsLock) {
+				Files.move(tempFile.toPath(), objectFile(hexSha1).toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+				writeIndex(key, updated);
+			}
+		} finally {
+			Files.deleteIfExists(tempFile.toPath());
+		}
+		System.out.println("Downloaded: " + totalBytes + " bytes, sha1:" + hexSha1);
+		return objectFile(hexSha1);
+	}
+
+	/**
+	 * Deletes the superseded object {@code hexSha1} and its extracted items,
+	 * unless another index entry still refers to it. Failures are logged, the
+	 * fetch that superseded it has already succeeded.
+	 */
+	private void deleteIfUnreferenced(final String hexSha1) {
+		synchronized (this.objectsLock) {
+			try {
+				File[] indexFiles = new File(this.root, INDEX_DIR).listFiles();
+				if (indexFiles != null) {
+					for (File indexFile : indexFiles) {
+						String name = indexFile.getName();
+						if (!name.endsWith(INDEX_SUFFIX))
+							continue;
+						Properties entry = readIndex(name.substring(0, name.length() - INDEX_SUFFIX.length()));
+						if (entry != null && hexSha1.equals(entry.getProperty(SHA1_KEY)))
+							return;
+					}
+				}
+				System.out.println("Deleting superseded: " + objectFile(hexSha1));
+				Files.deleteIfExists(objectFile(hexSha1).toPath());
+				File extracted = getExtractedDirectory(hexSha1);
+				if (extracted.isDirectory()) {
+					try (Stream<Path> paths = Files.walk(extracted.toPath())) {
+						for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+							Files.deleteIfExists(path);
+						}
+					}
+				}
+			} catch (IOException | UncheckedIOException excep) {
+				LOG.log(Level.WARNING, "Couldn't delete superseded cache object " + hexSha1, excep);
+			}
+		}
+	}
+
+	private File objectFile(final String hexSha1) {
+		return new File(new File(this.root, OBJECTS_DIR), hexSha1);
+	}
+
+	private Properties readIndex(final String key) throws IOException {
+		File indexFile = new File(new File(this.root, INDEX_DIR), key + INDEX_SUFFIX);
+		if (!indexFile.isFile())
+			return null;
+		Properties entry = new Properties();
+		try (InputStream input = new FileInputStream(indexFile)) {
+			entry.load(input);
+		}
+		return entry.getProperty(SHA1_KEY) == null ? null : entry;
+	}
+
+	private void writeIndex(final String key, final Properties entry) throws IOException {
+		File indexDir = new File(this.root, INDEX_DIR);
+		Files.createDirectories(indexDir.toPath());
+		File tempFile = File.createTempFile(key, ".tmp", indexDir);
+		try {
+			try (OutputStream output = new FileOutputStream(tempFile)) {
+				entry.store(output, null);
+			}
+			Files.move(tempFile.toPath(), new File(indexDir, key + INDEX_SUFFIX).toPath(),
+					StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempFile.toPath());
+		}
+	}
+
+	private static final class DefaultHolder {
+		private static final CorpusCache INSTANCE = fromValues(
+				new File(System.getProperty(CACHE_DIR_PROPERTY,
+						new File(new File(System.getProperty("user.home"), ".verapdf"), "corpus-cache").getPath())),
+				Boolean.getBoolean(OFFLINE_PROPERTY));
+	}
+}
@@ -24,52 +24,109 @@
 package org.verapdf.pdfa.qa;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.verapdf.pdfa.flavours.PDFAFlavour;
 import org.verapdf.pdfa.qa.AbstractTestCorpus.Corpus;
 
 /**
+ * Provides the {@link TestCorpus} instances for each {@link PDFAFlavour}. A
+ * corpus archive is only fetched and indexed the first time a corpus that
+ * needs it is asked for, fetches of independent archives run concurrently and
+ * callers asking for the same corpus share the same {@code CompletableFuture}.
+ *
  * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
  */
 public final class CorpusManager {
-    // Reference to corpus zip temp file
-    private static final EnumMap<PDFAFlavour, Set<TestCorpus>> corporaByFlavour = new EnumMap<>(PDFAFlavour.class);
+    private static final EnumMap<Corpus, Map<PDFAFlavour, CompletableFuture<TestCorpus>>> corpora = new EnumMap<>(Corpus.class);
+    static {
+        for (Corpus corpus : Corpus.values()) {
+            corpora.put(corpus, new ConcurrentHashMap<>());
+        }
+    }
 
     private CorpusManager() {
         assert (false);
     }
 
+    /**
+     * Retained for compatibility, corpora are now loaded on first use so
+     * there's nothing to initialise up front.
+     *
+     * @throws IOException
+     *             never thrown
+     */
     public static void initialise() throws IOException {
-        if (!corporaByFlavour.isEmpty())
-            return;
-        for (Corpus corpus : Corpus.values()) {
-            for (PDFAFlavour flavour : corpus.getFlavours()) {
-                TestCorpus toAdd = ZipBackedTestCorpus.fromZipSource(corpus.getId(), corpus, corpus.getDescription(),
-                        flavour);
-                corporaByFlavour.computeIfAbsent(flavour, k -> new HashSet<>());
-                corporaByFlavour.get(flavour).add(toAdd);
+        // Corpora are loaded lazily on first use
+    }
+
+    /**
+     * Starts fetching and indexing every corpus in the background without
+     * waiting for the results, useful when all corpora are going to be used.
+     */
+    public static void prefetchAll() {
+        for (PDFAFlavour flavour : testableFlavours()) {
+            for (Corpus corpus : Corpus.values()) {
+                if (corpus.getFlavours().contains(flavour)) {
+                    corpusFuture(flavour, corpus);
+                }
             }
         }
     }
 
     public static Set<PDFAFlavour> testableFlavours() {
-        return Collections.unmodifiableSet(corporaByFlavour.keySet());
+        EnumSet<PDFAFlavour> flavours = EnumSet.noneOf(PDFAFlavour.class);
+        for (Corpus corpus : Corpus.values()) {
+            flavours.addAll(corpus.getFlavours());
+        }
+        return Collections.unmodifiableSet(flavours);
     }
 
     public static Set<TestCorpus> corporaForFlavour(final PDFAFlavour key) {
-        return Collections.unmodifiableSet(corporaByFlavour.get(key));
+        List<CompletableFuture<TestCorpus>> futures = new ArrayList<>();
+        for (Corpus corpus : Corpus.values()) {
+            if (corpus.getFlavours().contains(key)) {
+                futures.add(corpusFuture(key, corpus));
+            }
+        }
+        Set<TestCorpus> corporaForFlavour = new HashSet<>();
+        for (CompletableFuture<TestCorpus> future : futures) {
+            corporaForFlavour.add(join(future));
+        }
+        return Collections.unmodifiableSet(corporaForFlavour);
     }
 
     public static TestCorpus corpusByFlavourAndType(final PDFAFlavour key, final Corpus type) {
-        for (TestCorpus corpus : corporaByFlavour.get(key)) {
-            if (corpus.getType() == type) {
-                return corpus;
+        if (!type.getFlavours().contains(key))
+            return null;
+        return join(corpusFuture(key, type));
+    }
+
+    private static CompletableFuture<TestCorpus> corpusFuture(final PDFAFlavour flavour, final Corpus corpus) {
+        return corpora.get(corpus).computeIfAbsent(flavour, k -> corpus.fetch().thenApplyAsync(zipFile -> {
+            try {
+                return ZipBackedTestCorpus.fromZipSource(corpus.getId(), corpus, corpus.getDescription(), flavour);
+            } catch (IOException excep) {
+                throw new CompletionException(excep);
             }
+        }, AbstractTestCorpus.loaderExecutor()));
+    }
+
+    private static TestCorpus join(final CompletableFuture<TestCorpus> future) {
+        try {
+            return future.join();
+        } catch (CompletionException excep) {
+            throw new IllegalStateException(excep.getCause());
         }
-        return null;
     }
 }
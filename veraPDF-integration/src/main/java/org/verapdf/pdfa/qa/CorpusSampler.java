@@ -59,4 +59,28 @@ public class CorpusSampler {
         }
         return sample;
     }
+
+    /**
+     * Takes a reproducible sample from a corpus: the same corpus, sample size
+     * and seed always give the same items in the same order. Items are drawn
+     * without replacement so the sample holds no duplicates.
+     *
+     * @param corpus
+     *            a {@link TestCorpus} instance to sample from
+     * @param sampleSize
+     *            the size of the sample to take, the whole corpus is returned
+     *            if it's smaller than this
+     * @param seed
+     *            the seed for the random selection
+     * @return the {@code List<String>} of names that make up the sample
+     */
+    public static List<String> seededSample(final TestCorpus corpus, final int sampleSize, final long seed) {
+        if (corpus == null)
+            throw new NullPointerException("Parameter corpus can not be null");
+        if (sampleSize < 1)
+            throw new IllegalArgumentException("Parameter sampleSize=" + sampleSize + ", must be > 0");
+        List<String> names = new ArrayList<>(new TreeSet<>(corpus.getItemNames()));
+        Collections.shuffle(names, new Random(seed));
+        return names.size() > sampleSize ? new ArrayList<>(names.subList(0, sampleSize)) : names;
+    }
 }
@@ -0,0 +1,350 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa;
+
+import org.verapdf.component.AuditDuration;
+import org.verapdf.component.Components;
+import org.verapdf.pdfa.Foundries;
+import org.verapdf.pdfa.PDFAParser;
+import org.verapdf.pdfa.PDFAValidator;
+import org.verapdf.pdfa.flavours.PDFAFlavour;
+import org.verapdf.pdfa.qa.ResultSet.Incomplete;
+import org.verapdf.pdfa.qa.ResultSet.Result;
+import org.verapdf.pdfa.results.ValidationResult;
+import org.verapdf.pdfa.validation.profiles.Profiles;
+import org.verapdf.pdfa.validation.profiles.ValidationProfile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Validates the items of a {@link TestCorpus} on a fixed size pool of worker
+ * threads. Every worker owns its own {@link PDFAValidator} and creates a fresh
+ * {@link PDFAParser} per item, both obtained from
+ * {@link Foundries#defaultInstance()}. By default parsers read items from the
+ * files returned by {@link TestCorpus#getItemFile(String)}, giving them random
+ * access to the PDF rather than an inflating stream to buffer. The {@link ResultSet} produced is the
+ * same as the serial one, results are ordered by
+ * {@link ResultSet.ResultComparator} whatever order the workers finish in.
+ *
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+public final class CorpusValidator {
+	/**
+	 * System property holding the number of worker threads, defaults to the
+	 * number of available processors.
+	 */
+	public static final String THREADS_PROPERTY = "verapdf.corpus.threads";
+	/**
+	 * System property that when {@code false} makes parsers read items from
+	 * {@link TestCorpus#getItemStream(String)} rather than from extracted
+	 * files, defaults to {@code true}.
+	 */
+	public static final String EXTRACT_PROPERTY = "verapdf.corpus.extract";
+	/**
+	 * System property that when {@code true} samples the peak resident set
+	 * size of the process for each corpus run, defaults to {@code false}.
+	 */
+	public static final String PEAK_RSS_PROPERTY = "verapdf.corpus.peak.rss";
+	private static final int MEGABYTE = (1024 * 1024);
+	private static final Logger LOG = Logger.getLogger(CorpusValidator.class.getCanonicalName());
+
+	private final int threads;
+	private final boolean extractItems;
+
+	private CorpusValidator(final int threads, final boolean extractItems) {
+		this.threads = threads;
+		this.extractItems = extractItems;
+	}
+
+	/**
+	 * @return the number of worker threads used by the instance
+	 */
+	public int getThreads() {
+		return this.threads;
+	}
+
+	/**
+	 * @return {@code true} if parsers read items from extracted files
+	 */
+	public boolean isExtractItems() {
+		return this.extractItems;
+	}
+
+	/**
+	 * @param threads
+	 *            the number of worker threads to validate with
+	 * @return a CorpusValidator that uses {@code threads} workers
+	 * @throws IllegalArgumentException
+	 *             if {@code threads} is less than 1
+	 */
+	public static CorpusValidator fromThreads(final int threads) {
+		return fromValues(threads, defaultExtractItems());
+	}
+
+	/**
+	 * @param threads
+	 *            the number of worker threads to validate with
+	 * @param extractItems
+	 *            if {@code true} parsers read items from extracted files,
+	 *            otherwise from streams
+	 * @return a CorpusValidator configured from the passed params
+	 * @throws IllegalArgumentException
+	 *             if {@code threads} is less than 1
+	 */
+	public static CorpusValidator fromValues(final int threads, final boolean extractItems) {
+		if (threads < 1)
+			throw new IllegalArgumentException("Parameter threads=" + threads + ", must be > 0");
+		return new CorpusValidator(threads, extractItems);
+	}
+
+	/**
+	 * @return a CorpusValidator with the number of workers taken from the
+	 *         {@link #THREADS_PROPERTY} system property, or the number of
+	 *         available processors if it's not set, and item access taken from
+	 *         the {@link #EXTRACT_PROPERTY} system property
+	 */
+	public static CorpusValidator defaultInstance() {
+		return fromThreads(Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()).intValue());
+	}
+
+	/**
+	 * Validate every item in {@code corpus} against {@code flavour}, or against
+	 * the detected flavour of each item if {@code flavour} is
+	 * {@link PDFAFlavour#NO_FLAVOUR}.
+	 *
+	 * @param corpus
+	 *            the {@link TestCorpus} to validate
+	 * @param flavour
+	 *            the {@link PDFAFlavour} to validate the items against
+	 * @return the {@link ResultSet} for the corpus
+	 */
+	public ResultSet validate(final TestCorpus corpus, final PDFAFlavour flavour) {
+		final Set<Result> results = ConcurrentHashMap.newKeySet();
+		final Set<Incomplete> exceptions = ConcurrentHashMap.newKeySet();
+		final AtomicLong maxMemUse = new AtomicLong(-1);
+		final AtomicLong peakRss = new AtomicLong(-1);
+		AuditDuration duration = run(corpus, flavour, new ResultSink() {
+			@Override
+			public void accept(final Result result) {
+				results.add(result);
+			}
+
+			@Override
+			public void exception(final Incomplete incomplete) {
+				exceptions.add(incomplete);
+			}
+		}, maxMemUse, peakRss);
+		return new ResultSetImpl(corpus.getDetails(), corpus.getType().getId(), profileFor(flavour), results,
+				exceptions, duration, maxMemUse.get(), peakRss.get());
+	}
+
+	/**
+	 * Validate every item in {@code corpus} as
+	 * {@link #validate(TestCorpus, PDFAFlavour)} does, but pass each result to
+	 * {@code sink} as soon as it's available rather than keeping it. The
+	 * returned {@link ResultSet} holds the summary counts and any exceptions
+	 * but no results, so memory use doesn't grow with the size of the corpus.
+	 *
+	 * @param corpus
+	 *            the {@link TestCorpus} to validate
+	 * @param flavour
+	 *            the {@link PDFAFlavour} to validate the items against
+	 * @param sink
+	 *            the {@link ResultSink} that receives each result, called from
+	 *            the worker threads
+	 * @return a {@link ResultSet} with the summary for the corpus and no
+	 *         results
+	 */
+	public ResultSet validate(final TestCorpus corpus, final PDFAFlavour flavour, final ResultSink sink) {
+		if (sink == null)
+			throw new NullPointerException("Parameter sink can not be null");
+		final ResultSetSummaryImpl.Tally tally = new ResultSetSummaryImpl.Tally();
+		final Set<Incomplete> exceptions = ConcurrentHashMap.newKeySet();
+		final AtomicLong maxMemUse = new AtomicLong(-1);
+		final AtomicLong peakRss = new AtomicLong(-1);
+		AuditDuration duration = run(corpus, flavour, new ResultSink() {
+			@Override
+			public void accept(final Result result) {
+				tally.add(result);
+				sink.accept(result);
+			}
+
+			@Override
+			public void exception(final Incomplete incomplete) {
+				tally.addException();
+				exceptions.add(incomplete);
+				sink.exception(incomplete);
+			}
+		}, maxMemUse, peakRss);
+		return new ResultSetImpl(corpus.getDetails(), corpus.getType().getId(), profileFor(flavour),
+				tally.toSummary(duration, maxMemUse.get(), peakRss.get()), exceptions);
+	}
+
+	private AuditDuration run(final TestCorpus corpus, final PDFAFlavour flavour, final ResultSink sink,
+			final AtomicLong maxMemUse, final AtomicLong peakRss) {
+		boolean samplePeakRss = Boolean.getBoolean(PEAK_RSS_PROPERTY);
+		if (samplePeakRss && !MemoryMeter.resetPeakRss()) {
+			LOG.log(Level.FINE, "Couldn't reset peak RSS, reporting the peak for the process");
+		}
+		final Queue<PDFAValidator> created = new ConcurrentLinkedQueue<>();
+		final ThreadLocal<PDFAValidator> workerValidator = ThreadLocal.withInitial(() -> {
+			PDFAValidator validator = Foundries.defaultInstance().createValidator(flavour, 100, false, true, false);
+			created.add(validator);
+			return validator;
+		});
+		Components.Timer batchTimer = Components.Timer.start();
+		ExecutorService executor = Executors.newFixedThreadPool(this.threads, new WorkerFactory());
+		try {
+			List<Future<?>> jobs = new ArrayList<>();
+			for (String itemName : corpus.getItemNames()) {
+				jobs.add(executor.submit(() -> validateItem(corpus, itemName, flavour,
+						flavour != PDFAFlavour.NO_FLAVOUR ? workerValidator.get() : null, this.extractItems, sink,
+						maxMemUse)));
+			}
+			for (Future<?> job : jobs) {
+				job.get();
+			}
+		} catch (InterruptedException excep) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted validating corpus " + corpus.getDetails().getName(), excep);
+		} catch (ExecutionException excep) {
+			throw new IllegalStateException("Unexpected failure validating corpus " + corpus.getDetails().getName(),
+					excep.getCause());
+		} finally {
+			executor.shutdownNow();
+			for (PDFAValidator validator : created) {
+				closeQuietly(validator);
+			}
+		}
+		if (samplePeakRss) {
+			long peakRssBytes = MemoryMeter.peakRssBytes();
+			peakRss.set(peakRssBytes < 0 ? -1 : peakRssBytes / MEGABYTE);
+		}
+		return batchTimer.stop();
+	}
+
+	/**
+	 * Validate {@code corpus} serially on the calling thread using the passed
+	 * {@code validator}, which is left open.
+	 */
+	static ResultSet validateSerially(final TestCorpus corpus, final PDFAValidator validator,
+			final PDFAFlavour flavour) {
+		final Set<Result> results = new HashSet<>();
+		final Set<Incomplete> exceptions = new HashSet<>();
+		AtomicLong maxMemUse = new AtomicLong(-1);
+		Components.Timer batchTimer = Components.Timer.start();
+		ResultSink sink = new ResultSink() {
+			@Override
+			public void accept(final Result result) {
+				results.add(result);
+			}
+
+			@Override
+			public void exception(final Incomplete incomplete) {
+				exceptions.add(incomplete);
+			}
+		};
+		for (String itemName : corpus.getItemNames()) {
+			validateItem(corpus, itemName, flavour, validator, false, sink, maxMemUse);
+		}
+		return new ResultSetImpl(corpus.getDetails(), corpus.getType().getId(),
+				flavour != PDFAFlavour.NO_FLAVOUR ? validator.getProfile() : Profiles.defaultProfile(), results,
+				exceptions, batchTimer.stop(), maxMemUse.get(), -1);
+	}
+
+	private static void validateItem(final TestCorpus corpus, final String itemName, final PDFAFlavour flavour,
+			final PDFAValidator validator, final boolean extractItems, final ResultSink sink,
+			final AtomicLong maxMemUse) {
+		System.out.println(itemName);
+		CorpusItemId id = null;
+		Components.Timer jobTimer = Components.Timer.start();
+		long allocatedAtStart = MemoryMeter.threadAllocatedBytes();
+		Result itemResult;
+		try (PDFAParser loader = extractItems
+				? Foundries.defaultInstance().createParser(corpus.getItemFile(itemName), flavour)
+				: Foundries.defaultInstance().createParser(corpus.getItemStream(itemName), flavour);
+			 PDFAValidator newValidator = flavour != PDFAFlavour.NO_FLAVOUR ? null : Foundries.defaultInstance().createValidator(loader.getFlavour(), 100, false, true, false)) {
+			PDFAValidator currentValidator = flavour != PDFAFlavour.NO_FLAVOUR ? validator : newValidator;
+			try {
+				id = CorpusItemIdImpl.fromFileName(currentValidator.getProfile().getPDFAFlavour().getPart(), itemName, "");
+			} catch (IllegalArgumentException excep) {
+				LOG.log(Level.FINE, "Problem generating ID for corpus item:" + itemName, excep);
+			}
+			ValidationResult result = currentValidator.validate(loader);
+			long bytesAllocated = allocatedAtStart < 0 ? -1 : MemoryMeter.threadAllocatedBytes() - allocatedAtStart;
+			itemResult = new Result(id, result, jobTimer.stop(), bytesAllocated);
+			maxMemUse.accumulateAndGet(itemResult.getMemoryUsed(), Math::max);
+		} catch (Throwable e) {
+			LOG.log(Level.SEVERE, String.format("Caught throwable testing %s from corpus %s", itemName,
+					corpus.getDetails().getName()));
+			LOG.log(Level.SEVERE, e.getClass().getName());
+			LOG.log(Level.SEVERE, e.getMessage());
+			sink.exception(new Incomplete(id, itemName, e));
+			return;
+		}
+		sink.accept(itemResult);
+	}
+
+	private static ValidationProfile profileFor(final PDFAFlavour flavour) {
+		return flavour != PDFAFlavour.NO_FLAVOUR
+				? Profiles.getVeraProfileDirectory().getValidationProfileByFlavour(flavour)
+				: Profiles.defaultProfile();
+	}
+
+	private static boolean defaultExtractItems() {
+		return Boolean.parseBoolean(System.getProperty(EXTRACT_PROPERTY, Boolean.TRUE.toString()));
+	}
+
+	private static void closeQuietly(final PDFAValidator validator) {
+		try {
+			validator.close();
+		} catch (IOException excep) {
+			LOG.log(Level.FINE, "Exception closing validator", excep);
+		}
+	}
+
+	private static final class WorkerFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(final Runnable task) {
+			Thread worker = new Thread(task, "corpus-validator-" + this.count.incrementAndGet());
+			worker.setDaemon(true);
+			return worker;
+		}
+	}
+}
@@ -1,23 +1,53 @@
 package org.verapdf.pdfa.qa;
 
+import org.w3c.dom.Attr;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A failed policy check, or an error that stopped a file being checked. Only
+ * strings extracted from the reports are held, so report documents can be
+ * garbage collected as soon as a file has been checked.
+ */
 public class FailedPolicyCheck {
-	private final Element node;
+	private final String nodeName;
+	private final Map<String, String> attributes;
+	private final String location;
 	private final String errorMessage;
 	private final String test;
 
 	public FailedPolicyCheck(Element node, String errorMessage, String test) {
-		this.node = node;
+		this(node == null ? null : node.getTagName(), attributesOf(node), null, errorMessage, test);
+	}
+
+	/**
+	 * @param nodeName
+	 *            the name of the MRR node the check failed on
+	 * @param attributes
+	 *            the attributes of the MRR node
+	 * @param location
+	 *            the location of the node given by the failed assert
+	 * @param errorMessage
+	 *            the message of the failed assert
+	 * @param test
+	 *            the test of the failed assert
+	 */
+	public FailedPolicyCheck(String nodeName, Map<String, String> attributes, String location, String errorMessage,
+			String test) {
+		this.nodeName = nodeName;
+		this.attributes = attributes == null || attributes.isEmpty() ? Collections.emptyMap()
+				: Collections.unmodifiableMap(new TreeMap<>(attributes));
+		this.location = location;
 		this.errorMessage = errorMessage;
 		this.test = test;
 	}
 
 	public FailedPolicyCheck(String errorMessage) {
-		this.node = null;
-		this.errorMessage = errorMessage;
-		this.test = null;
+		this(null, null, null, errorMessage, null);
 	}
 
 	public String getErrorMessage() {
@@ -28,6 +58,29 @@ public class FailedPolicyCheck {
 		return test;
 	}
 
+	/**
+	 * @return the name of the MRR node the check failed on, or {@code null}
+	 */
+	public String getNodeName() {
+		return nodeName;
+	}
+
+	/**
+	 * @return the attributes of the MRR node the check failed on, sorted by
+	 *         name
+	 */
+	public Map<String, String> getAttributes() {
+		return attributes;
+	}
+
+	/**
+	 * @return the location of the node given by the failed assert, or
+	 *         {@code null}
+	 */
+	public String getLocation() {
+		return location;
+	}
+
 	public String getNode() {
 		return getNodeString();
 	}
@@ -40,18 +93,37 @@ public class FailedPolicyCheck {
 	}
 
 	private String getNodeString() {
+		if (nodeName == null) {
+			return null;
+		}
 		StringBuilder str = new StringBuilder();
 		str.append("{");
 		str.append("node: ");
-		str.append(node.getTagName());
+		str.append(nodeName);
 		str.append(", attributes: [");
-		NamedNodeMap attributes = node.getAttributes();
-		str.append(attributes.item(0));
-		for (int i = 1; i < attributes.getLength(); i++) {
-			str.append(", ");
-			str.append(attributes.item(i));
+		if (attributes.isEmpty()) {
+			str.append("null");
+		}
+		String separator = "";
+		for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+			str.append(separator);
+			str.append(attribute.getKey()).append("=\"").append(attribute.getValue()).append('"');
+			separator = ", ";
 		}
 		str.append("]}");
 		return str.toString();
 	}
+
+	private static Map<String, String> attributesOf(Element node) {
+		if (node == null) {
+			return null;
+		}
+		Map<String, String> attributes = new TreeMap<>();
+		NamedNodeMap nodeAttributes = node.getAttributes();
+		for (int i = 0; i < nodeAttributes.getLength(); i++) {
+			Attr attribute = (Attr) nodeAttributes.item(i);
+			attributes.put(attribute.getName(), attribute.getValue());
+		}
+		return attributes;
+	}
 }
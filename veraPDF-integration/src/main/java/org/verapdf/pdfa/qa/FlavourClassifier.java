@@ -0,0 +1,137 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa;
+
+import org.verapdf.pdfa.flavours.PDFAFlavour;
+import org.verapdf.pdfa.flavours.PDFFlavours;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Assigns corpus item names to the {@link PDFAFlavour}s they test, following
+ * the naming conventions of the test corpora. An item name is scanned once
+ * for {@code PDF_A-} and {@code PDFA-} markers and every flavour whose id
+ * follows a marker is matched, so classifying an item costs a single pass
+ * over its name whatever the number of flavours.
+ *
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+public final class FlavourClassifier {
+	private static final String AUTODETECT = "Autodetect";
+	private static final String PDFUA_1_MARKER = "PDF_UA-1";
+	private static final String PDFUA_2_MARKER = "PDF_UA-2";
+	private static final String PDFA_4_MARKER = "PDF_A-4";
+	private static final String PDF = "PDF";
+	private static final String UNDERSCORE_A = "_A-";
+	private static final String A = "A-";
+	private static final List<PDFAFlavour> idFlavours = new ArrayList<>();
+	static {
+		for (PDFAFlavour flavour : PDFAFlavour.values()) {
+			if (flavour != PDFAFlavour.NO_FLAVOUR && !flavour.getId().isEmpty()) {
+				idFlavours.add(flavour);
+			}
+		}
+	}
+
+	private FlavourClassifier() {
+		assert (false);
+	}
+
+	/**
+	 * @param item
+	 *            the name of a corpus item
+	 * @return the set of {@link PDFAFlavour}s that {@code item} tests, which
+	 *         may be empty
+	 */
+	public static Set<PDFAFlavour> classify(final String item) {
+		if (item == null)
+			throw new NullPointerException("Parameter item can not be null");
+		EnumSet<PDFAFlavour> idMatches = matchIds(item);
+		EnumSet<PDFAFlavour> flavours = EnumSet.noneOf(PDFAFlavour.class);
+		for (PDFAFlavour flavour : idMatches) {
+			if (!isSpecialCase(flavour)) {
+				flavours.add(flavour);
+			}
+		}
+		if (item.contains(AUTODETECT)) {
+			flavours.add(PDFAFlavour.NO_FLAVOUR);
+		}
+		if (item.contains(PDFUA_1_MARKER)) {
+			flavours.add(PDFAFlavour.PDFUA_1);
+		}
+		if (item.contains(PDFUA_2_MARKER)) {
+			flavours.add(PDFAFlavour.PDFUA_2);
+			for (PDFAFlavour flavour : PDFAFlavour.values()) {
+				if (PDFFlavours.isWTPDFFlavour(flavour)) {
+					flavours.add(flavour);
+				}
+			}
+		}
+		if (item.contains(PDFA_4_MARKER) && !idMatches.contains(PDFAFlavour.PDFA_4_E)
+				&& !idMatches.contains(PDFAFlavour.PDFA_4_F)) {
+			flavours.add(PDFAFlavour.PDFA_4);
+		}
+		return Collections.unmodifiableSet(flavours);
+	}
+
+	/**
+	 * @param item
+	 *            the name of a corpus item
+	 * @return the set of {@link PDFAFlavour}s whose id directly follows a
+	 *         {@code PDF_A-} or {@code PDFA-} marker in {@code item}
+	 */
+	public static Set<PDFAFlavour> matchingIds(final String item) {
+		if (item == null)
+			throw new NullPointerException("Parameter item can not be null");
+		return Collections.unmodifiableSet(matchIds(item));
+	}
+
+	private static EnumSet<PDFAFlavour> matchIds(final String item) {
+		EnumSet<PDFAFlavour> matches = EnumSet.noneOf(PDFAFlavour.class);
+		int index = item.indexOf(PDF);
+		while (index >= 0) {
+			int idStart = -1;
+			if (item.startsWith(UNDERSCORE_A, index + PDF.length())) {
+				idStart = index + PDF.length() + UNDERSCORE_A.length();
+			} else if (item.startsWith(A, index + PDF.length())) {
+				idStart = index + PDF.length() + A.length();
+			}
+			if (idStart >= 0) {
+				for (PDFAFlavour flavour : idFlavours) {
+					if (item.startsWith(flavour.getId(), idStart)) {
+						matches.add(flavour);
+					}
+				}
+			}
+			index = item.indexOf(PDF, index + 1);
+		}
+		return matches;
+	}
+
+	private static boolean isSpecialCase(final PDFAFlavour flavour) {
+		return flavour == PDFAFlavour.PDFA_4 || flavour == PDFAFlavour.PDFUA_1 || flavour == PDFAFlavour.PDFUA_2
+				|| PDFFlavours.isWTPDFFlavour(flavour);
+	}
+}
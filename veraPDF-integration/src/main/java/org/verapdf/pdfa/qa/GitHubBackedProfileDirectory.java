@@ -33,14 +33,24 @@ import javax.xml.bind.JAXBException;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
+ * A {@link ProfileDirectory} populated with the validation profiles from a
+ * branch of the veraPDF validation profiles GitHub repository. The profiles
+ * are fetched in parallel through the {@link CorpusCache}, so they're only
+ * downloaded again when they've changed on the branch. There's a single
+ * instance per branch.
+ *
  * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
  */
 public class GitHubBackedProfileDirectory implements ProfileDirectory {
@@ -55,6 +65,7 @@ public class GitHubBackedProfileDirectory implements ProfileDirectory {
 	private static final String PDFUA_PROFILE_PATH_PART = "/PDF_UA/";
 	private static final String PDFUA_PROFILE_PREFIX = "PDFUA-";
 	private static final String XML_SUFFIX = ".xml";
+	private static final ConcurrentMap<String, GitHubBackedProfileDirectory> BRANCHES = new ConcurrentHashMap<>();
 	private final String branchName;
 	private final ProfileDirectory profiles;
 
@@ -119,34 +130,53 @@ public class GitHubBackedProfileDirectory implements ProfileDirectory {
 		return this.profiles.getValidationProfiles();
 	}
 
+	/**
+	 * @param branchName
+	 *            the GitHub branch to populate the directory from
+	 * @return the directory for {@code branchName}, populated the first time
+	 *         it's asked for
+	 */
 	public static ProfileDirectory fromBranch(final String branchName) {
-		return new GitHubBackedProfileDirectory(branchName);
+		if (branchName == null)
+			throw new NullPointerException("Parameter branchName can not be null");
+		return BRANCHES.computeIfAbsent(branchName, GitHubBackedProfileDirectory::new);
 	}
+
 	private static Set<ValidationProfile> fromGitHubBranch(final String branchName) {
-		Set<ValidationProfile> profileSet = new HashSet<>();
+		List<CompletableFuture<ValidationProfile>> fetches = new ArrayList<>();
 		for (PDFAFlavour flavour : PDFAFlavour.values()) {
 			if (flavour == PDFAFlavour.NO_FLAVOUR || flavour.getPart().getFamily() == PDFAFlavour.SpecificationFamily.WCAG) {
 				continue;
 			}
-			String profileURLString = getProfilePath(flavour, branchName);
-			try {
-				URL profileURL = new URL(profileURLString);
-				ValidationProfile profile = Profiles.profileFromXml(profileURL.openStream());
+			fetches.add(CompletableFuture.supplyAsync(() -> fromGitHub(flavour, branchName),
+					AbstractTestCorpus.loaderExecutor()));
+		}
+		Set<ValidationProfile> profileSet = new HashSet<>();
+		for (CompletableFuture<ValidationProfile> fetch : fetches) {
+			ValidationProfile profile = fetch.join();
+			if (profile != null) {
 				profileSet.add(profile);
-			} catch (FileNotFoundException fnf) {
-				// Couldn't load the profile from GitHub log and continue
-				LOG.log(Level.WARNING, String.format("Couldn't find GitHub Validation Profile for flavour %s", flavour));
-				LOG.log(Level.WARNING, String.format("Effectively a 404 for %s", profileURLString));
-				LOG.log(Level.WARNING, "FileNotFoundException caught.", fnf);
-				
-			} catch	(IOException | JAXBException e) {
-				LOG.log(Level.SEVERE, "Exception when trying to load validation profile from:" + profileURLString,
-						e);
 			}
 		}
 		return profileSet;
 	}
 
+	private static ValidationProfile fromGitHub(final PDFAFlavour flavour, final String branchName) {
+		String profileURLString = getProfilePath(flavour, branchName);
+		try {
+			return ProcessorPool.defaultInstance().profileFromUrl(new URL(profileURLString));
+		} catch (FileNotFoundException fnf) {
+			// Couldn't load the profile from GitHub log and continue
+			LOG.log(Level.WARNING, String.format("Couldn't find GitHub Validation Profile for flavour %s", flavour));
+			LOG.log(Level.WARNING, String.format("Effectively a 404 for %s", profileURLString));
+			LOG.log(Level.WARNING, "FileNotFoundException caught.", fnf);
+		} catch (IOException | JAXBException e) {
+			LOG.log(Level.SEVERE, "Exception when trying to load validation profile from:" + profileURLString,
+					e);
+		}
+		return null;
+	}
+
 	private static String getProfilePath(PDFAFlavour flavour, String branchName) {
 		StringBuilder profilePath = new StringBuilder();
 		profilePath.append(GITHUB_ROOT);
@@ -0,0 +1,171 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa;
+
+import org.verapdf.pdfa.flavours.PDFAFlavour;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A {@link RegressionReportSink} that writes a JUnit XML report, a
+ * {@code testcase} element for each checked file written as soon as the file
+ * is checked. Failed policy checks are reported as {@code failure} elements,
+ * with the test as the failure's type and the message, location and report
+ * node as its text. Files that couldn't be checked are reported as
+ * {@code error} elements. The {@code testsuite} element carries no counts, as
+ * they aren't known until the end of the run.
+ *
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+public final class JUnitXmlRegressionSink implements RegressionReportSink {
+	private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+	private final OutputStream output;
+	private final XMLStreamWriter writer;
+
+	private JUnitXmlRegressionSink(final OutputStream output, final String name) throws IOException {
+		this.output = output;
+		try {
+			this.writer = OUTPUT_FACTORY.createXMLStreamWriter(output, StandardCharsets.UTF_8.name());
+			this.writer.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+			this.writer.writeCharacters("\n");
+			this.writer.writeStartElement("testsuite");
+			this.writer.writeAttribute("name", "veraPDF " + name + " regression tests");
+			this.writer.writeCharacters("\n");
+			this.writer.flush();
+		} catch (XMLStreamException excep) {
+			output.close();
+			throw new IOException("Couldn't write JUnit report", excep);
+		}
+	}
+
+	/**
+	 * @param output
+	 *            the {@link OutputStream} to write the report to, closed when
+	 *            the sink is closed
+	 * @param name
+	 *            the name of the regression test run
+	 * @return a JUnitXmlRegressionSink that writes to {@code output}
+	 * @throws IOException
+	 *             if the start of the report can't be written
+	 */
+	public static JUnitXmlRegressionSink fromOutputStream(final OutputStream output, final String name)
+			throws IOException {
+		if (output == null)
+			throw new NullPointerException("Parameter output can not be null");
+		if (name == null)
+			throw new NullPointerException("Parameter name can not be null");
+		return new JUnitXmlRegressionSink(output, name);
+	}
+
+	/**
+	 * @param file
+	 *            the file to write the report to, any existing content is
+	 *            replaced
+	 * @param name
+	 *            the name of the regression test run
+	 * @return a JUnitXmlRegressionSink that writes to {@code file}
+	 * @throws IOException
+	 *             if {@code file} can't be opened for writing
+	 */
+	public static JUnitXmlRegressionSink fromFile(final File file, final String name) throws IOException {
+		if (file == null)
+			throw new NullPointerException("Parameter file can not be null");
+		return fromOutputStream(new BufferedOutputStream(new FileOutputStream(file)), name);
+	}
+
+	/**
+	 * { @inheritDoc }
+	 */
+	@Override
+	public synchronized void fileChecked(final String pdfName, final PDFAFlavour flavour, final long durationMillis,
+			final boolean replayed, final List<FailedPolicyCheck> failedChecks) {
+		try {
+			this.writer.writeCharacters("  ");
+			this.writer.writeStartElement("testcase");
+			this.writer.writeAttribute("classname", flavour == null ? PDFAFlavour.NO_FLAVOUR.getId() : flavour.getId());
+			this.writer.writeAttribute("name", pdfName);
+			this.writer.writeAttribute("time", String.format(Locale.ROOT, "%.3f", durationMillis / 1000.0));
+			if (replayed) {
+				this.writer.writeAttribute("replayed", "true");
+			}
+			if (failedChecks != null) {
+				for (FailedPolicyCheck check : failedChecks) {
+					writeFailure(check);
+				}
+			}
+			this.writer.writeEndElement();
+			this.writer.writeCharacters("\n");
+			this.writer.flush();
+		} catch (XMLStreamException excep) {
+			throw new UncheckedIOException(new IOException("Couldn't write JUnit report", excep));
+		}
+	}
+
+	/**
+	 * { @inheritDoc }
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			this.writer.writeEndElement();
+			this.writer.writeCharacters("\n");
+			this.writer.writeEndDocument();
+			this.writer.close();
+		} catch (XMLStreamException excep) {
+			throw new IOException("Couldn't write JUnit report", excep);
+		} finally {
+			this.output.close();
+		}
+	}
+
+	private void writeFailure(final FailedPolicyCheck check) throws XMLStreamException {
+		boolean error = check.getTest() == null;
+		this.writer.writeCharacters("\n    ");
+		this.writer.writeStartElement(error ? "error" : "failure");
+		if (check.getErrorMessage() != null) {
+			this.writer.writeAttribute("message", check.getErrorMessage());
+		}
+		if (!error) {
+			this.writer.writeAttribute("type", check.getTest());
+			StringBuilder text = new StringBuilder();
+			if (check.getLocation() != null) {
+				text.append("location: ").append(check.getLocation()).append('\n');
+			}
+			if (check.getNode() != null) {
+				text.append(check.getNode()).append('\n');
+			}
+			this.writer.writeCharacters(text.toString());
+		}
+		this.writer.writeEndElement();
+		this.writer.writeCharacters("\n  ");
+	}
+}
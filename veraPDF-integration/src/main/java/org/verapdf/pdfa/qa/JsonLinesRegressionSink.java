@@ -0,0 +1,143 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa;
+
+import org.verapdf.pdfa.flavours.PDFAFlavour;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link RegressionReportSink} that writes a line of JSON for each checked
+ * file. Each line is a JSON object with the fields {@code file},
+ * {@code flavour}, {@code durationMillis}, {@code replayed}, {@code outcome},
+ * one of {@code pass}, {@code fail} or {@code error}, and {@code failures}.
+ * Each failure has the fields {@code test}, {@code message}, {@code location},
+ * {@code node} and {@code attributes}, the attributes of the report node the
+ * check failed on.
+ *
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+public final class JsonLinesRegressionSink implements RegressionReportSink {
+	private final Writer writer;
+
+	private JsonLinesRegressionSink(final Writer writer) {
+		this.writer = writer;
+	}
+
+	/**
+	 * @param writer
+	 *            the {@link Writer} to write JSON lines to, closed when the
+	 *            sink is closed
+	 * @return a JsonLinesRegressionSink that writes to {@code writer}
+	 */
+	public static JsonLinesRegressionSink fromWriter(final Writer writer) {
+		if (writer == null)
+			throw new NullPointerException("Parameter writer can not be null");
+		return new JsonLinesRegressionSink(writer);
+	}
+
+	/**
+	 * @param file
+	 *            the file to write JSON lines to, any existing content is
+	 *            replaced
+	 * @return a JsonLinesRegressionSink that writes to {@code file}
+	 * @throws IOException
+	 *             if {@code file} can't be opened for writing
+	 */
+	public static JsonLinesRegressionSink fromFile(final File file) throws IOException {
+		if (file == null)
+			throw new NullPointerException("Parameter file can not be null");
+		return new JsonLinesRegressionSink(
+				new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * { @inheritDoc }
+	 */
+	@Override
+	public void fileChecked(final String pdfName, final PDFAFlavour flavour, final long durationMillis,
+			final boolean replayed, final List<FailedPolicyCheck> failedChecks) {
+		StringBuilder line = new StringBuilder("{");
+		JsonLinesResultSink.appendField(line, "file", pdfName);
+		line.append(',');
+		JsonLinesResultSink.appendField(line, "flavour", flavour == null ? null : flavour.getId());
+		line.append(",\"durationMillis\":").append(durationMillis);
+		line.append(",\"replayed\":").append(replayed);
+		line.append(',');
+		JsonLinesResultSink.appendField(line, "outcome", outcome(failedChecks));
+		line.append(",\"failures\":[");
+		if (failedChecks != null) {
+			String separator = "";
+			for (FailedPolicyCheck check : failedChecks) {
+				line.append(separator).append('{');
+				JsonLinesResultSink.appendField(line, "test", check.getTest());
+				line.append(',');
+				JsonLinesResultSink.appendField(line, "message", check.getErrorMessage());
+				line.append(',');
+				JsonLinesResultSink.appendField(line, "location", check.getLocation());
+				line.append(',');
+				JsonLinesResultSink.appendField(line, "node", check.getNodeName());
+				line.append(",\"attributes\":{");
+				String attributeSeparator = "";
+				for (Map.Entry<String, String> attribute : check.getAttributes().entrySet()) {
+					line.append(attributeSeparator);
+					JsonLinesResultSink.appendField(line, attribute.getKey(), attribute.getValue());
+					attributeSeparator = ",";
+				}
+				line.append("}}");
+				separator = ",";
+			}
+		}
+		writeLine(line.append("]}"));
+	}
+
+	/**
+	 * { @inheritDoc }
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		this.writer.close();
+	}
+
+	static String outcome(final List<FailedPolicyCheck> failedChecks) {
+		if (failedChecks == null || failedChecks.isEmpty())
+			return "pass";
+		return failedChecks.get(0).getTest() == null ? "error" : "fail";
+	}
+
+	private synchronized void writeLine(final CharSequence line) {
+		try {
+			this.writer.append(line).append('\n');
+			this.writer.flush();
+		} catch (IOException excep) {
+			throw new UncheckedIOException("Couldn't write regression outcome", excep);
+		}
+	}
+}
@@ -0,0 +1,167 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa;
+
+import org.verapdf.pdfa.qa.ResultSet.Incomplete;
+import org.verapdf.pdfa.qa.ResultSet.Result;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@link ResultSink} that writes each result to a {@link Writer} as a line
+ * of JSON as soon as it's received, so a corpus of any size can be reported
+ * without keeping its results in memory. Each line is a JSON object with the
+ * fields {@code item}, {@code testType}, {@code compliant}, {@code outcome},
+ * {@code durationMillis} and {@code bytesAllocated} for results, and {@code item}
+ * and {@code exception} for items that threw an exception.
+ *
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+public final class JsonLinesResultSink implements ResultSink, Closeable {
+    private final Writer writer;
+
+    private JsonLinesResultSink(final Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * @param writer
+     *            the {@link Writer} to write JSON lines to, closed when the
+     *            sink is closed
+     * @return a JsonLinesResultSink that writes to {@code writer}
+     */
+    public static JsonLinesResultSink fromWriter(final Writer writer) {
+        if (writer == null)
+            throw new NullPointerException("Parameter writer can not be null");
+        return new JsonLinesResultSink(writer);
+    }
+
+    /**
+     * @param file
+     *            the file to write JSON lines to, any existing content is
+     *            replaced
+     * @return a JsonLinesResultSink that writes to {@code file}
+     * @throws IOException
+     *             if {@code file} can't be opened for writing
+     */
+    public static JsonLinesResultSink fromFile(final File file) throws IOException {
+        if (file == null)
+            throw new NullPointerException("Parameter file can not be null");
+        return new JsonLinesResultSink(
+                new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * { @inheritDoc }
+     */
+    @Override
+    public void accept(final Result result) {
+        StringBuilder line = new StringBuilder("{");
+        appendField(line, "item", itemName(result.getCorpusItemId()));
+        line.append(',');
+        appendField(line, "testType", result.getCorpusItemId() == null ? null
+                : result.getCorpusItemId().getTestType().getId());
+        line.append(",\"compliant\":").append(result.getResult().isCompliant());
+        line.append(',');
+        appendField(line, "outcome", result.getCorpusItemId() == null ? null : result.getTestType());
+        line.append(",\"durationMillis\":").append(result.getDurationMillis());
+        line.append(",\"bytesAllocated\":").append(result.getBytesAllocated());
+        writeLine(line.append('}'));
+    }
+
+    /**
+     * { @inheritDoc }
+     */
+    @Override
+    public void exception(final Incomplete incomplete) {
+        StringBuilder line = new StringBuilder("{");
+        // Items that fail to parse have no id, fall back to their name in the corpus
+        appendField(line, "item", incomplete.getCorpusItemId() == null ? incomplete.getItemName()
+                : itemName(incomplete.getCorpusItemId()));
+        line.append(',');
+        appendField(line, "exception", String.valueOf(incomplete.getCause()));
+        writeLine(line.append('}'));
+    }
+
+    /**
+     * { @inheritDoc }
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        this.writer.close();
+    }
+
+    private synchronized void writeLine(final CharSequence line) {
+        try {
+            this.writer.append(line).append('\n');
+        } catch (IOException excep) {
+            throw new UncheckedIOException("Couldn't write result", excep);
+        }
+    }
+
+    private static String itemName(final CorpusItemId id) {
+        return id == null ? null : id.getName();
+    }
+
+    static void appendField(final StringBuilder line, final String name, final String value) {
+        line.append('"').append(name).append("\":");
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+        line.append('"');
+        for (int index = 0; index < value.length(); index++) {
+            char c = value.charAt(index);
+            switch (c) {
+            case '"':
+                line.append("\\\"");
+                break;
+            case '\\':
+                line.append("\\\\");
+                break;
+            case '\n':
+                line.append("\\n");
+                break;
+            case '\r':
+                line.append("\\r");
+                break;
+            case '\t':
+                line.append("\\t");
+                break;
+            default:
+                if (c < 0x20) {
+                    line.append(String.format("\\u%04x", Integer.valueOf(c)));
+                } else {
+                    line.append(c);
+                }
+            }
+        }
+        line.append('"');
+    }
+}
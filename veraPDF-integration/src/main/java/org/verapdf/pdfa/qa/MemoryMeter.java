@@ -0,0 +1,119 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Memory measurements for corpus validation. Per-item allocation is measured
+ * with the HotSpot per-thread allocation counter, which counts only the bytes
+ * allocated by the calling thread so measurements stay accurate when items
+ * are validated on several threads at once. Peak resident set size is read
+ * from {@code /proc/self/status} where that's available.
+ *
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+final class MemoryMeter {
+	private static final Logger LOG = Logger.getLogger(MemoryMeter.class.getCanonicalName());
+	private static final File PROC_STATUS = new File("/proc/self/status");
+	private static final File PROC_CLEAR_REFS = new File("/proc/self/clear_refs");
+	private static final String PEAK_RSS_KEY = "VmHWM:";
+	private static final String RESET_PEAK_RSS = "5";
+	private static final com.sun.management.ThreadMXBean THREADS = allocationBean();
+
+	private MemoryMeter() {
+		assert (false);
+	}
+
+	/**
+	 * @return the total number of bytes allocated by the calling thread, or -1
+	 *         if the JVM doesn't support per-thread allocation counting
+	 */
+	static long threadAllocatedBytes() {
+		if (THREADS == null)
+			return -1;
+		return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Resets the process' peak resident set size so that a later call to
+	 * {@link #peakRssBytes()} reports the peak since the reset.
+	 *
+	 * @return {@code true} if the peak was reset, {@code false} if it couldn't
+	 *         be, in which case the peak is for the life of the process
+	 */
+	static boolean resetPeakRss() {
+		if (!PROC_CLEAR_REFS.canWrite())
+			return false;
+		try (OutputStream os = new FileOutputStream(PROC_CLEAR_REFS)) {
+			os.write(RESET_PEAK_RSS.getBytes(StandardCharsets.US_ASCII));
+			return true;
+		} catch (IOException excep) {
+			LOG.log(Level.FINE, "Couldn't reset peak RSS", excep);
+			return false;
+		}
+	}
+
+	/**
+	 * @return the peak resident set size of the process in bytes, or -1 if it
+	 *         isn't available on this platform
+	 */
+	static long peakRssBytes() {
+		if (!PROC_STATUS.canRead())
+			return -1;
+		try (BufferedReader reader = new BufferedReader(new FileReader(PROC_STATUS))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith(PEAK_RSS_KEY)) {
+					String value = line.substring(PEAK_RSS_KEY.length()).trim();
+					int space = value.indexOf(' ');
+					return Long.parseLong(space < 0 ? value : value.substring(0, space)) * 1024;
+				}
+			}
+		} catch (IOException | NumberFormatException excep) {
+			LOG.log(Level.FINE, "Couldn't read peak RSS", excep);
+		}
+		return -1;
+	}
+
+	private static com.sun.management.ThreadMXBean allocationBean() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean))
+			return null;
+		com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) bean;
+		if (!allocationBean.isThreadAllocatedMemorySupported())
+			return null;
+		if (!allocationBean.isThreadAllocatedMemoryEnabled()) {
+			allocationBean.setThreadAllocatedMemoryEnabled(true);
+		}
+		return allocationBean;
+	}
+}
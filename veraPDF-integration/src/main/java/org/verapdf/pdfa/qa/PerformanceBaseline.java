@@ -0,0 +1,455 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.ToLongFunction;
+
+import org.verapdf.pdfa.qa.ResultSet.Result;
+
+/**
+ * Per-item and per-result set timing and memory figures from a corpus run,
+ * written to a compact tab separated file so a later run can be compared with
+ * it. A result set is identified by its corpus name and flavour id, e.g.
+ * {@code veraPDF-1b}, matching the HTML report directories.
+ * <p>
+ * Comparison is deliberately conservative so that noisy items don't fail a
+ * build. Only items measured in both runs are compared. The p50 and p95 of the
+ * items' validation times and of their allocations are compared, a figure is
+ * only reported as a regression when it's worse by both the relative and the
+ * absolute threshold. A p95 regression also needs at least 5% of the set's
+ * items to have individually regressed by both thresholds, so one slow or
+ * memory hungry item can't move the p95 on its own. Sets with fewer items than
+ * the minimum aren't compared at all.
+ *
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+public final class PerformanceBaseline {
+	/**
+	 * System property holding the path of a baseline file to compare a run
+	 * with, no comparison is made if it's not set.
+	 */
+	public static final String BASELINE_PROPERTY = "verapdf.perf.baseline";
+	/**
+	 * The name of the baseline file written after a run.
+	 */
+	public static final String FILE_NAME = "performance-baseline.tsv";
+	private static final String HEADER = "# veraPDF corpus performance baseline";
+	private static final String SET_RECORD = "S";
+	private static final String ITEM_RECORD = "I";
+	private static final double P95_ITEM_FRACTION = 0.05;
+	private static final ToLongFunction<Measurement> DURATION = measurement -> measurement.durationMillis;
+	private static final ToLongFunction<Measurement> MEMORY = measurement -> measurement.memoryUsed;
+
+	private final SortedMap<String, SortedMap<String, Measurement>> sets;
+
+	private PerformanceBaseline(final SortedMap<String, SortedMap<String, Measurement>> sets) {
+		this.sets = sets;
+	}
+
+	/**
+	 * @return the sorted names of the result sets in the baseline
+	 */
+	public List<String> getSetNames() {
+		return new ArrayList<>(this.sets.keySet());
+	}
+
+	/**
+	 * @param setName
+	 *            the name of a result set
+	 * @return the median item validation time for the set in milliseconds
+	 */
+	public double getP50(final String setName) {
+		return percentile(figures(measurements(setName), DURATION), 0.5);
+	}
+
+	/**
+	 * @param setName
+	 *            the name of a result set
+	 * @return the 95th percentile item validation time for the set in
+	 *         milliseconds
+	 */
+	public double getP95(final String setName) {
+		return percentile(figures(measurements(setName), DURATION), 0.95);
+	}
+
+	/**
+	 * @param setName
+	 *            the name of a result set
+	 * @return the largest number of megabytes allocated by a single item in the
+	 *         set, -1 if memory wasn't measured
+	 */
+	public long getPeakMemory(final String setName) {
+		long peak = -1;
+		for (Measurement measurement : measurements(setName).values()) {
+			peak = Math.max(peak, measurement.memoryUsed);
+		}
+		return peak;
+	}
+
+	/**
+	 * Compare this baseline, taken as the current run, with an earlier one.
+	 *
+	 * @param baseline
+	 *            the earlier baseline to compare with
+	 * @param thresholds
+	 *            the {@link Thresholds} a figure must exceed to count as a
+	 *            regression
+	 * @return a description of each regression found, empty if there are none
+	 */
+	public List<String> regressionsFrom(final PerformanceBaseline baseline, final Thresholds thresholds) {
+		if (baseline == null)
+			throw new NullPointerException("Parameter baseline can not be null");
+		if (thresholds == null)
+			throw new NullPointerException("Parameter thresholds can not be null");
+		List<String> regressions = new ArrayList<>();
+		for (Map.Entry<String, SortedMap<String, Measurement>> set : this.sets.entrySet()) {
+			SortedMap<String, Measurement> before = baseline.sets.get(set.getKey());
+			if (before == null)
+				continue;
+			SortedMap<String, Measurement> current = new TreeMap<>(set.getValue());
+			current.keySet().retainAll(before.keySet());
+			SortedMap<String, Measurement> previous = new TreeMap<>(before);
+			previous.keySet().retainAll(current.keySet());
+			if (current.size() < thresholds.minItems)
+				continue;
+			compare(regressions, set.getKey(), "validation time %.1f ms, baseline %.1f ms", current, previous,
+					DURATION, thresholds.timeRatio, thresholds.timeFloorMillis);
+			// Memory isn't always measured, only compare the items it was measured for in both runs
+			SortedMap<String, Measurement> currentMemory = new TreeMap<>(current);
+			currentMemory.entrySet().removeIf(
+					item -> item.getValue().memoryUsed < 0 || previous.get(item.getKey()).memoryUsed < 0);
+			SortedMap<String, Measurement> previousMemory = new TreeMap<>(previous);
+			previousMemory.keySet().retainAll(currentMemory.keySet());
+			if (currentMemory.size() >= thresholds.minItems) {
+				compare(regressions, set.getKey(), "item allocation %.1f MB, baseline %.1f MB", currentMemory,
+						previousMemory, MEMORY, thresholds.memoryRatio, thresholds.memoryFloorMegabytes);
+			}
+		}
+		return regressions;
+	}
+
+	/**
+	 * Compares the p50 and p95 of a figure for the same items in two runs,
+	 * adding a description of each regression to {@code regressions}.
+	 */
+	private static void compare(final List<String> regressions, final String setName, final String format,
+			final Map<String, Measurement> current, final Map<String, Measurement> previous,
+			final ToLongFunction<Measurement> figure, final double ratio, final double floor) {
+		double[] currentFigures = figures(current, figure);
+		double[] previousFigures = figures(previous, figure);
+		double p50 = percentile(currentFigures, 0.5);
+		double previousP50 = percentile(previousFigures, 0.5);
+		if (isRegression(p50, previousP50, ratio, floor)) {
+			regressions.add(setName + ": p50 " + String.format(format, Double.valueOf(p50), Double.valueOf(previousP50)));
+		}
+		double p95 = percentile(currentFigures, 0.95);
+		double previousP95 = percentile(previousFigures, 0.95);
+		int worseItems = regressedItemCount(current, previous, figure, ratio, floor);
+		if (isRegression(p95, previousP95, ratio, floor)
+				&& worseItems >= Math.max(1, Math.ceil(current.size() * P95_ITEM_FRACTION))) {
+			regressions.add(setName + ": p95 " + String.format(format, Double.valueOf(p95), Double.valueOf(previousP95))
+					+ String.format(", %d of %d items worse", Integer.valueOf(worseItems),
+							Integer.valueOf(current.size())));
+		}
+	}
+
+	/**
+	 * @param file
+	 *            the file to write the baseline to, replacing any content
+	 * @throws IOException
+	 *             if there's a problem writing the file
+	 */
+	public void write(final File file) throws IOException {
+		try (Writer writer = new BufferedWriter(
+				new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+			writer.write(HEADER + "\n");
+			for (Map.Entry<String, SortedMap<String, Measurement>> set : this.sets.entrySet()) {
+				String setName = set.getKey();
+				writer.write(String.format("%s\t%s\t%d\t%.1f\t%.1f\t%d\n", SET_RECORD, setName,
+						Integer.valueOf(set.getValue().size()), Double.valueOf(getP50(setName)),
+						Double.valueOf(getP95(setName)), Long.valueOf(getPeakMemory(setName))));
+				for (Map.Entry<String, Measurement> item : set.getValue().entrySet()) {
+					writer.write(String.format("%s\t%s\t%s\t%d\t%d\n", ITEM_RECORD, setName, item.getKey(),
+							Long.valueOf(item.getValue().durationMillis), Long.valueOf(item.getValue().memoryUsed)));
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param file
+	 *            a file written by {@link #write(File)}
+	 * @return the baseline read from {@code file}
+	 * @throws IOException
+	 *             if there's a problem reading the file or it's not a baseline
+	 */
+	public static PerformanceBaseline read(final File file) throws IOException {
+		Recorder recorder = new Recorder();
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+			String line = reader.readLine();
+			if (line == null || !line.equals(HEADER))
+				throw new IOException("File " + file + " isn't a performance baseline");
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split("\t");
+				if (fields.length == 5 && fields[0].equals(ITEM_RECORD)) {
+					try {
+						recorder.add(fields[1], fields[2], Long.parseLong(fields[3]), Long.parseLong(fields[4]));
+					} catch (NumberFormatException excep) {
+						throw new IOException("Bad baseline record: " + line, excep);
+					}
+				}
+			}
+		}
+		return recorder.build();
+	}
+
+	private SortedMap<String, Measurement> measurements(final String setName) {
+		SortedMap<String, Measurement> measurements = this.sets.get(setName);
+		return measurements == null ? Collections.emptySortedMap() : measurements;
+	}
+
+	private static boolean isRegression(final double current, final double previous, final double ratio,
+			final double floor) {
+		return current > previous * (1 + ratio) && current - previous > floor;
+	}
+
+	private static int regressedItemCount(final Map<String, Measurement> current,
+			final Map<String, Measurement> previous, final ToLongFunction<Measurement> figure, final double ratio,
+			final double floor) {
+		int worse = 0;
+		for (Map.Entry<String, Measurement> item : current.entrySet()) {
+			if (isRegression(figure.applyAsLong(item.getValue()), figure.applyAsLong(previous.get(item.getKey())),
+					ratio, floor)) {
+				worse++;
+			}
+		}
+		return worse;
+	}
+
+	private static double[] figures(final Map<String, Measurement> measurements,
+			final ToLongFunction<Measurement> figure) {
+		double[] figures = new double[measurements.size()];
+		int index = 0;
+		for (Measurement measurement : measurements.values()) {
+			figures[index++] = figure.applyAsLong(measurement);
+		}
+		Arrays.sort(figures);
+		return figures;
+	}
+
+	/**
+	 * Linearly interpolated percentile of sorted values, 0 if there are none.
+	 */
+	private static double percentile(final double[] sorted, final double fraction) {
+		if (sorted.length == 0)
+			return 0;
+		double position = fraction * (sorted.length - 1);
+		int lower = (int) Math.floor(position);
+		int upper = (int) Math.ceil(position);
+		return sorted[lower] + (sorted[upper] - sorted[lower]) * (position - lower);
+	}
+
+	private static final class Measurement {
+		final long durationMillis;
+		final long memoryUsed;
+
+		Measurement(final long durationMillis, final long memoryUsed) {
+			this.durationMillis = durationMillis;
+			this.memoryUsed = memoryUsed;
+		}
+	}
+
+	/**
+	 * Collects measurements during a run, safe to use from multiple threads.
+	 */
+	public static final class Recorder {
+		private final SortedMap<String, SortedMap<String, Measurement>> sets = new TreeMap<>();
+
+		/**
+		 * @param setName
+		 *            the name of the result set the item belongs to
+		 * @param itemName
+		 *            the name of the item
+		 * @param durationMillis
+		 *            the time taken to validate the item in milliseconds
+		 * @param memoryUsed
+		 *            the megabytes allocated validating the item, -1 if not
+		 *            measured
+		 */
+		public synchronized void add(final String setName, final String itemName, final long durationMillis,
+				final long memoryUsed) {
+			this.sets.computeIfAbsent(clean(setName), k -> new TreeMap<>()).put(clean(itemName),
+					new Measurement(durationMillis, memoryUsed));
+		}
+
+		/**
+		 * @param setName
+		 *            the name of the result set the result belongs to
+		 * @param result
+		 *            a {@link Result} to record
+		 */
+		public void add(final String setName, final Result result) {
+			if (result.getCorpusItemId() == null)
+				return;
+			add(setName, result.getCorpusItemName(), result.getDurationMillis(), result.getMemoryUsed());
+		}
+
+		/**
+		 * @param resultSet
+		 *            a {@link ResultSet} whose results should be recorded
+		 */
+		public void addAll(final ResultSet resultSet) {
+			String setName = setName(resultSet);
+			for (Result result : resultSet.getResults()) {
+				add(setName, result);
+			}
+		}
+
+		/**
+		 * @return a {@link PerformanceBaseline} holding the recorded
+		 *         measurements
+		 */
+		public synchronized PerformanceBaseline build() {
+			SortedMap<String, SortedMap<String, Measurement>> copy = new TreeMap<>();
+			for (Map.Entry<String, SortedMap<String, Measurement>> set : this.sets.entrySet()) {
+				copy.put(set.getKey(), new TreeMap<>(set.getValue()));
+			}
+			return new PerformanceBaseline(copy);
+		}
+
+		private static String clean(final String name) {
+			return name.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+		}
+	}
+
+	/**
+	 * @param resultSet
+	 *            a {@link ResultSet}
+	 * @return the name used for {@code resultSet} in a baseline
+	 */
+	public static String setName(final ResultSet resultSet) {
+		return resultSet.getCorpusDetails().getName() + "-"
+				+ resultSet.getValidationProfile().getPDFAFlavour().getId();
+	}
+
+	/**
+	 * The amounts a figure must get worse by before it counts as a regression.
+	 */
+	public static final class Thresholds {
+		/**
+		 * System property holding the relative threshold for validation times,
+		 * defaults to 0.25, i.e. 25% slower.
+		 */
+		public static final String TIME_RATIO_PROPERTY = "verapdf.perf.time.ratio";
+		/**
+		 * System property holding the absolute threshold for validation times
+		 * in milliseconds, defaults to 5.
+		 */
+		public static final String TIME_FLOOR_PROPERTY = "verapdf.perf.time.floor.ms";
+		/**
+		 * System property holding the relative threshold for peak memory,
+		 * defaults to 0.25.
+		 */
+		public static final String MEMORY_RATIO_PROPERTY = "verapdf.perf.memory.ratio";
+		/**
+		 * System property holding the absolute threshold for peak memory in
+		 * megabytes, defaults to 16.
+		 */
+		public static final String MEMORY_FLOOR_PROPERTY = "verapdf.perf.memory.floor.mb";
+		/**
+		 * System property holding the smallest number of items a result set
+		 * needs to be compared, defaults to 10.
+		 */
+		public static final String MIN_ITEMS_PROPERTY = "verapdf.perf.min.items";
+
+		final double timeRatio;
+		final double timeFloorMillis;
+		final double memoryRatio;
+		final double memoryFloorMegabytes;
+		final int minItems;
+
+		private Thresholds(final double timeRatio, final double timeFloorMillis, final double memoryRatio,
+				final double memoryFloorMegabytes, final int minItems) {
+			this.timeRatio = timeRatio;
+			this.timeFloorMillis = timeFloorMillis;
+			this.memoryRatio = memoryRatio;
+			this.memoryFloorMegabytes = memoryFloorMegabytes;
+			this.minItems = minItems;
+		}
+
+		/**
+		 * @param timeRatio
+		 *            the relative threshold for validation times
+		 * @param timeFloorMillis
+		 *            the absolute threshold for validation times in
+		 *            milliseconds
+		 * @param memoryRatio
+		 *            the relative threshold for peak memory
+		 * @param memoryFloorMegabytes
+		 *            the absolute threshold for peak memory in megabytes
+		 * @param minItems
+		 *            the smallest number of items a result set needs to be
+		 *            compared
+		 * @return a Thresholds instance initialised from the passed params
+		 */
+		public static Thresholds fromValues(final double timeRatio, final double timeFloorMillis,
+				final double memoryRatio, final double memoryFloorMegabytes, final int minItems) {
+			if (timeRatio < 0 || memoryRatio < 0)
+				throw new IllegalArgumentException("Threshold ratios must be >= 0");
+			if (timeFloorMillis < 0 || memoryFloorMegabytes < 0)
+				throw new IllegalArgumentException("Threshold floors must be >= 0");
+			return new Thresholds(timeRatio, timeFloorMillis, memoryRatio, memoryFloorMegabytes, minItems);
+		}
+
+		/**
+		 * @return Thresholds read from the system properties, using the
+		 *         defaults for any that aren't set
+		 */
+		public static Thresholds fromSystemProperties() {
+			return fromValues(doubleProperty(TIME_RATIO_PROPERTY, 0.25), doubleProperty(TIME_FLOOR_PROPERTY, 5),
+					doubleProperty(MEMORY_RATIO_PROPERTY, 0.25), doubleProperty(MEMORY_FLOOR_PROPERTY, 16),
+					Integer.getInteger(MIN_ITEMS_PROPERTY, 10).intValue());
+		}
+
+		private static double doubleProperty(final String name, final double defaultValue) {
+			String value = System.getProperty(name);
+			return value == null ? defaultValue : Double.parseDouble(value);
+		}
+	}
+}
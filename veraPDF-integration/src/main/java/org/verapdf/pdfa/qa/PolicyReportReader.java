@@ -0,0 +1,392 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Streaming evaluation of policy check reports. The SVRL report is read once
+ * for its failed asserts, and the {@code location} paths of those asserts are
+ * resolved in a single pass over the MRR report, so memory use is bounded by
+ * the number of failures rather than the size of either report.
+ * <p>
+ * The ISO Schematron XSLT 1 skeleton writes locations as simple child paths,
+ * e.g. {@code /report/jobs/job/validationReport/details/rule[2]}, which are
+ * resolved while streaming. Any location that isn't of that form is evaluated
+ * as XPath against a DOM of the MRR instead, as are all of the locations when
+ * the MRR is already held as a DOM.
+ *
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+final class PolicyReportReader {
+	private static final String SVRL_NS = "http://purl.oclc.org/dsdl/svrl";
+	private static final String FAILED_ASSERT = "failed-assert";
+	private static final String TEXT = "text";
+	private static final Pattern STEP = Pattern.compile("([A-Za-z_][\\w.\\-]*)(?:\\[(\\d+)\\])?");
+	private static final Pattern ATTRIBUTE_STEP = Pattern.compile("@[A-Za-z_][\\w.\\-]*");
+	private static final XMLInputFactory INPUT_FACTORY = newInputFactory();
+
+	private PolicyReportReader() {
+		throw new AssertionError("Should never happen");
+	}
+
+	/**
+	 * Opens a report for reading, it may be called more than once.
+	 */
+	interface ReportSource {
+		InputStream open() throws IOException;
+	}
+
+	/**
+	 * A failed assert read from an SVRL report.
+	 */
+	static final class FailedAssert {
+		final String test;
+		final String location;
+		final String text;
+
+		FailedAssert(final String test, final String location, final String text) {
+			this.test = test;
+			this.location = location;
+			this.text = text;
+		}
+	}
+
+	/**
+	 * @param svrl
+	 *            an SVRL report
+	 * @return the failed asserts in the report, in document order
+	 * @throws IOException
+	 *             if the report can't be read or isn't well formed
+	 */
+	static List<FailedAssert> failedAsserts(final InputStream svrl) throws IOException {
+		List<FailedAssert> failedAsserts = new ArrayList<>();
+		try {
+			XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(svrl);
+			try {
+				String test = null;
+				String location = null;
+				StringBuilder text = null;
+				int textDepth = 0;
+				while (reader.hasNext()) {
+					switch (reader.next()) {
+					case XMLStreamConstants.START_ELEMENT:
+						if (isSvrl(reader, FAILED_ASSERT)) {
+							test = reader.getAttributeValue(null, "test");
+							location = reader.getAttributeValue(null, "location");
+							text = null;
+						} else if (textDepth > 0) {
+							textDepth++;
+						} else if (test != null && text == null && isSvrl(reader, TEXT)) {
+							text = new StringBuilder();
+							textDepth = 1;
+						}
+						break;
+					case XMLStreamConstants.CHARACTERS:
+					case XMLStreamConstants.CDATA:
+					case XMLStreamConstants.SPACE:
+						if (textDepth > 0) {
+							text.append(reader.getText());
+						}
+						break;
+					case XMLStreamConstants.END_ELEMENT:
+						if (textDepth > 0) {
+							textDepth--;
+						} else if (test != null && isSvrl(reader, FAILED_ASSERT)) {
+							failedAsserts.add(new FailedAssert(test, location, text == null ? null : text.toString()));
+							test = null;
+						}
+						break;
+					default:
+						break;
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException excep) {
+			throw new IOException("Couldn't read SVRL report: " + excep.getMessage(), excep);
+		}
+		return failedAsserts;
+	}
+
+	/**
+	 * Resolves the location of each failed assert against an MRR report.
+	 *
+	 * @param failedAsserts
+	 *            the failed asserts from the SVRL report
+	 * @param mrr
+	 *            the MRR report the policy was applied to
+	 * @return a {@link FailedPolicyCheck} for each failed assert, in the same
+	 *         order
+	 * @throws IOException
+	 *             if the report can't be read or isn't well formed
+	 */
+	static List<FailedPolicyCheck> failedChecks(final List<FailedAssert> failedAsserts, final ReportSource mrr)
+			throws IOException {
+		NodeDetails[] nodes = new NodeDetails[failedAsserts.size()];
+		PathNode root = new PathNode();
+		List<Integer> unresolved = new ArrayList<>();
+		for (int i = 0; i < failedAsserts.size(); i++) {
+			if (!root.add(failedAsserts.get(i).location, i)) {
+				unresolved.add(Integer.valueOf(i));
+			}
+		}
+		if (unresolved.size() < failedAsserts.size()) {
+			try (InputStream input = mrr.open()) {
+				resolve(input, root, nodes);
+			}
+		}
+		if (!unresolved.isEmpty()) {
+			evaluate(failedAsserts, unresolved, mrr, nodes);
+		}
+		return toFailedChecks(failedAsserts, nodes);
+	}
+
+	/**
+	 * Resolves the location of each failed assert against an MRR report that's
+	 * already held as a DOM.
+	 *
+	 * @param failedAsserts
+	 *            the failed asserts from the SVRL report
+	 * @param mrr
+	 *            the MRR report document the policy was applied to
+	 * @return a {@link FailedPolicyCheck} for each failed assert, in the same
+	 *         order
+	 * @throws IOException
+	 *             if a location can't be evaluated
+	 */
+	static List<FailedPolicyCheck> failedChecks(final List<FailedAssert> failedAsserts, final Node mrr)
+			throws IOException {
+		NodeDetails[] nodes = new NodeDetails[failedAsserts.size()];
+		List<Integer> all = new ArrayList<>(failedAsserts.size());
+		for (int i = 0; i < failedAsserts.size(); i++) {
+			all.add(Integer.valueOf(i));
+		}
+		evaluate(failedAsserts, all, mrr, nodes);
+		return toFailedChecks(failedAsserts, nodes);
+	}
+
+	private static List<FailedPolicyCheck> toFailedChecks(final List<FailedAssert> failedAsserts,
+			final NodeDetails[] nodes) {
+		List<FailedPolicyCheck> failedChecks = new ArrayList<>(failedAsserts.size());
+		for (int i = 0; i < failedAsserts.size(); i++) {
+			FailedAssert failedAssert = failedAsserts.get(i);
+			NodeDetails node = nodes[i];
+			failedChecks.add(new FailedPolicyCheck(node == null ? null : node.name,
+					node == null ? null : node.attributes, failedAssert.location, failedAssert.text,
+					failedAssert.test));
+		}
+		return failedChecks;
+	}
+
+	private static void resolve(final InputStream mrr, final PathNode root, final NodeDetails[] nodes) throws IOException {
+		try {
+			XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(mrr);
+			try {
+				// The path nodes and sibling counts of the open elements, null
+				// once off every wanted path
+				Deque<PathNode> pathNodes = new ArrayDeque<>();
+				Deque<Map<String, Integer>> siblings = new ArrayDeque<>();
+				pathNodes.push(root);
+				siblings.push(new HashMap<>());
+				int offPath = 0;
+				while (reader.hasNext()) {
+					int event = reader.next();
+					if (event == XMLStreamConstants.START_ELEMENT) {
+						if (offPath > 0) {
+							offPath++;
+							continue;
+						}
+						String name = qualifiedName(reader);
+						int index = siblings.peek().merge(name, Integer.valueOf(1), Integer::sum).intValue();
+						PathNode node = pathNodes.peek().child(name, index);
+						if (node == null) {
+							offPath = 1;
+							continue;
+						}
+						if (!node.targets.isEmpty()) {
+							NodeDetails details = nodeDetails(reader);
+							for (Integer target : node.targets) {
+								nodes[target.intValue()] = details;
+							}
+						}
+						pathNodes.push(node);
+						siblings.push(new HashMap<>());
+					} else if (event == XMLStreamConstants.END_ELEMENT) {
+						if (offPath > 0) {
+							offPath--;
+						} else {
+							pathNodes.pop();
+							siblings.pop();
+						}
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException excep) {
+			throw new IOException("Couldn't read MRR report: " + excep.getMessage(), excep);
+		}
+	}
+
+	private static void evaluate(final List<FailedAssert> failedAsserts, final List<Integer> unresolved,
+			final ReportSource mrr, final NodeDetails[] nodes) throws IOException {
+		try (InputStream input = mrr.open()) {
+			evaluate(failedAsserts, unresolved, DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(input),
+					nodes);
+		} catch (SAXException | ParserConfigurationException excep) {
+			throw new IOException("Couldn't parse MRR report: " + excep.getMessage(), excep);
+		}
+	}
+
+	private static void evaluate(final List<FailedAssert> failedAsserts, final List<Integer> unresolved,
+			final Node document, final NodeDetails[] nodes) throws IOException {
+		try {
+			XPath path = XPathFactory.newInstance().newXPath();
+			for (Integer target : unresolved) {
+				Node node = (Node) path.evaluate(failedAsserts.get(target.intValue()).location, document,
+						XPathConstants.NODE);
+				if (node instanceof Attr) {
+					node = ((Attr) node).getOwnerElement();
+				}
+				nodes[target.intValue()] = node instanceof Element ? nodeDetails((Element) node) : null;
+			}
+		} catch (XPathExpressionException excep) {
+			throw new IOException("Couldn't evaluate MRR locations: " + excep.getMessage(), excep);
+		}
+	}
+
+	private static NodeDetails nodeDetails(final XMLStreamReader reader) {
+		Map<String, String> attributes = new TreeMap<>();
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			String prefix = reader.getAttributePrefix(i);
+			String name = prefix == null || prefix.isEmpty() ? reader.getAttributeLocalName(i)
+					: prefix + ":" + reader.getAttributeLocalName(i);
+			attributes.put(name, reader.getAttributeValue(i));
+		}
+		return new NodeDetails(qualifiedName(reader), attributes);
+	}
+
+	private static NodeDetails nodeDetails(final Element element) {
+		Map<String, String> attributes = new TreeMap<>();
+		NamedNodeMap elementAttributes = element.getAttributes();
+		for (int i = 0; i < elementAttributes.getLength(); i++) {
+			Attr attribute = (Attr) elementAttributes.item(i);
+			attributes.put(attribute.getName(), attribute.getValue());
+		}
+		return new NodeDetails(element.getTagName(), attributes);
+	}
+
+	private static String qualifiedName(final XMLStreamReader reader) {
+		String prefix = reader.getPrefix();
+		return prefix == null || prefix.isEmpty() ? reader.getLocalName() : prefix + ":" + reader.getLocalName();
+	}
+
+	private static boolean isSvrl(final XMLStreamReader reader, final String localName) {
+		return localName.equals(reader.getLocalName()) && SVRL_NS.equals(reader.getNamespaceURI());
+	}
+
+	private static XMLInputFactory newInputFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		return factory;
+	}
+
+	/**
+	 * The name and attributes of an MRR element a location resolved to.
+	 */
+	private static final class NodeDetails {
+		final String name;
+		final Map<String, String> attributes;
+
+		NodeDetails(final String name, final Map<String, String> attributes) {
+			this.name = name;
+			this.attributes = attributes;
+		}
+	}
+
+	/**
+	 * A trie of the wanted location paths, keyed by element name and
+	 * position among same named siblings.
+	 */
+	private static final class PathNode {
+		final Map<String, PathNode> children = new HashMap<>();
+		final List<Integer> targets = new ArrayList<>(1);
+
+		PathNode child(final String name, final int index) {
+			return this.children.get(name + "[" + index + "]");
+		}
+
+		/**
+		 * @return {@code false} if {@code location} isn't a simple child path
+		 */
+		boolean add(final String location, final int target) {
+			if (location == null || !location.startsWith("/") || location.length() == 1)
+				return false;
+			String[] steps = location.substring(1).split("/");
+			int last = steps.length;
+			if (last > 1 && ATTRIBUTE_STEP.matcher(steps[last - 1]).matches()) {
+				last--;
+			}
+			List<String> keys = new ArrayList<>(last);
+			for (int i = 0; i < last; i++) {
+				Matcher matcher = STEP.matcher(steps[i]);
+				if (!matcher.matches())
+					return false;
+				keys.add(matcher.group(1) + "[" + (matcher.group(2) == null ? "1" : matcher.group(2)) + "]");
+			}
+			PathNode node = this;
+			for (String key : keys) {
+				node = node.children.computeIfAbsent(key, k -> new PathNode());
+			}
+			node.targets.add(Integer.valueOf(target));
+			return true;
+		}
+	}
+}
@@ -0,0 +1,247 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.verapdf.core.VeraPDFException;
+import org.verapdf.policy.PolicyChecker;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A cache of compiled Schematron policies. A policy is compiled to XSLT with
+ * the same ISO Schematron pipeline {@link PolicyChecker} uses, the resulting
+ * {@link Templates} is cached under the SHA-1 of the policy's content, so a
+ * policy shared by many regression files is compiled once rather than once
+ * per file. The least recently used policies are evicted once the cache is
+ * full. Instances are thread safe.
+ *
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+public final class PolicyTemplatesCache {
+	/**
+	 * System property holding the maximum number of compiled policies held by
+	 * the default instance, defaults to 256.
+	 */
+	public static final String MAX_SIZE_PROPERTY = "verapdf.policy.cache.size";
+	private static final Logger LOG = Logger.getLogger(PolicyTemplatesCache.class.getCanonicalName());
+	private static final String PIPELINE_PATH = "org/verapdf/policy/schematron/pipeline/";
+	private static final ClassLoader PIPELINE_LOADER = PolicyChecker.class.getClassLoader();
+
+	private final int maxSize;
+	private final Map<String, Templates> policies;
+	private long compilations = 0;
+
+	private PolicyTemplatesCache(final int maxSize) {
+		this.maxSize = maxSize;
+		this.policies = new LinkedHashMap<String, Templates>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, Templates> eldest) {
+				return size() > PolicyTemplatesCache.this.maxSize;
+			}
+		};
+	}
+
+	/**
+	 * @param maxSize
+	 *            the maximum number of compiled policies to hold
+	 * @return a new, empty PolicyTemplatesCache
+	 * @throws IllegalArgumentException
+	 *             if {@code maxSize} is less than 1
+	 */
+	public static PolicyTemplatesCache fromMaxSize(final int maxSize) {
+		if (maxSize < 1)
+			throw new IllegalArgumentException("Parameter maxSize=" + maxSize + ", must be > 0");
+		return new PolicyTemplatesCache(maxSize);
+	}
+
+	/**
+	 * @return the shared cache, sized by the {@link #MAX_SIZE_PROPERTY} system
+	 *         property
+	 */
+	public static PolicyTemplatesCache defaultInstance() {
+		return DefaultHolder.INSTANCE;
+	}
+
+	/**
+	 * Applies a Schematron policy to an MRR report, as
+	 * {@link PolicyChecker#applyPolicy(InputStream, InputStream, OutputStream, boolean)}
+	 * does, writing the SVRL result to {@code svrlOutput}.
+	 *
+	 * @param schematron
+	 *            the content of the Schematron policy
+	 * @param mrrReport
+	 *            the MRR report to check
+	 * @param svrlOutput
+	 *            the stream the SVRL result is written to
+	 * @throws VeraPDFException
+	 *             if the policy can't be compiled or applied
+	 */
+	public void applyPolicy(final byte[] schematron, final InputStream mrrReport, final OutputStream svrlOutput)
+			throws VeraPDFException {
+		applyPolicy(schematron, new StreamSource(mrrReport), svrlOutput);
+	}
+
+	/**
+	 * Applies a Schematron policy to an MRR report held in any {@link Source},
+	 * e.g. a {@link javax.xml.transform.dom.DOMSource}, writing the SVRL
+	 * result to {@code svrlOutput}.
+	 *
+	 * @param schematron
+	 *            the content of the Schematron policy
+	 * @param mrrReport
+	 *            the MRR report to check
+	 * @param svrlOutput
+	 *            the stream the SVRL result is written to
+	 * @throws VeraPDFException
+	 *             if the policy can't be compiled or applied
+	 */
+	public void applyPolicy(final byte[] schematron, final Source mrrReport, final OutputStream svrlOutput)
+			throws VeraPDFException {
+		try {
+			templatesFor(schematron).newTransformer().transform(mrrReport, new StreamResult(svrlOutput));
+		} catch (TransformerException excep) {
+			throw new VeraPDFException("Exception when applying policy file.", excep);
+		}
+	}
+
+	/**
+	 * @param schematron
+	 *            the content of a Schematron policy
+	 * @return the compiled {@link Templates} for the policy, compiled now if it
+	 *         isn't cached
+	 * @throws TransformerException
+	 *             if the policy can't be compiled
+	 */
+	public Templates templatesFor(final byte[] schematron) throws TransformerException {
+		String key = DigestUtils.sha1Hex(schematron);
+		synchronized (this.policies) {
+			Templates cached = this.policies.get(key);
+			if (cached != null)
+				return cached;
+		}
+		Templates compiled = compile(schematron);
+		synchronized (this.policies) {
+			this.compilations++;
+			Templates cached = this.policies.putIfAbsent(key, compiled);
+			return cached != null ? cached : compiled;
+		}
+	}
+
+	/**
+	 * @return the number of compiled policies currently held
+	 */
+	public int size() {
+		synchronized (this.policies) {
+			return this.policies.size();
+		}
+	}
+
+	/**
+	 * @return the number of policies compiled by the cache
+	 */
+	public long getCompilations() {
+		synchronized (this.policies) {
+			return this.compilations;
+		}
+	}
+
+	private static Templates compile(final byte[] schematron) throws TransformerException {
+		byte[] included = transform(Pipeline.INCLUDE.newTransformer(), schematron);
+		byte[] expanded = transform(Pipeline.EXPAND.newTransformer(), included);
+		Transformer svrl = Pipeline.SVRL.newTransformer();
+		svrl.setOutputProperty(OutputKeys.INDENT, "no");
+		byte[] compiled = transform(svrl, expanded);
+		return Pipeline.FACTORY.newTemplates(new StreamSource(new ByteArrayInputStream(compiled)));
+	}
+
+	private static byte[] transform(final Transformer transformer, final byte[] source) throws TransformerException {
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		transformer.transform(new StreamSource(new ByteArrayInputStream(source)), new StreamResult(result));
+		return result.toByteArray();
+	}
+
+	/**
+	 * The ISO Schematron XSLT pipeline, loaded from the veraPDF library's
+	 * resources.
+	 */
+	private static final class Pipeline {
+		static final TransformerFactory FACTORY = newFactory();
+		static final Templates INCLUDE = stage("iso_dsdl_include.xsl");
+		static final Templates EXPAND = stage("iso_abstract_expand.xsl");
+		static final Templates SVRL = stage("iso_svrl_for_xslt1.xsl");
+
+		private static Templates stage(final String name) {
+			try {
+				return FACTORY.newTemplates(resolve(name));
+			} catch (TransformerConfigurationException excep) {
+				throw new IllegalStateException("Policy Schematron transformer XSL " + name + " not found.", excep);
+			}
+		}
+
+		private static Source resolve(final String href) {
+			InputStream resource = PIPELINE_LOADER.getResourceAsStream(PIPELINE_PATH + href);
+			return resource == null ? null : new StreamSource(resource, PIPELINE_PATH + href);
+		}
+
+		private static TransformerFactory newFactory() {
+			TransformerFactory factory = TransformerFactory.newInstance();
+			try {
+				factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+				factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_STYLESHEET, "file");
+			} catch (TransformerConfigurationException excep) {
+				LOG.log(Level.WARNING, "Unable to secure xsl transformer", excep);
+			}
+			factory.setURIResolver(new URIResolver() {
+				@Override
+				public Source resolve(final String href, final String base) {
+					return Pipeline.resolve(href);
+				}
+			});
+			return factory;
+		}
+	}
+
+	private static final class DefaultHolder {
+		private static final PolicyTemplatesCache INSTANCE = fromMaxSize(
+				Integer.getInteger(MAX_SIZE_PROPERTY, 256).intValue());
+	}
+}
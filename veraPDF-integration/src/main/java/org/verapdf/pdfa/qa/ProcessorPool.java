@@ -0,0 +1,174 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.verapdf.pdfa.validation.profiles.Profiles;
+import org.verapdf.pdfa.validation.profiles.ValidationProfile;
+import org.verapdf.processor.BatchProcessor;
+import org.verapdf.processor.ProcessorConfig;
+import org.verapdf.processor.ProcessorFactory;
+
+import javax.xml.bind.JAXBException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.function.Supplier;
+
+/**
+ * A pool of warm {@link BatchProcessor}s, shared by every test in the JVM, so
+ * that processors and the validation profiles they've loaded are reused
+ * across calls and across test modules rather than rebuilt for each run.
+ * Processors are pooled by a key that callers build from everything that goes
+ * into the processor's config, e.g. the flavour and a profile key from
+ * {@link #profileKey(ValidationProfile)}. A processor is only used by one
+ * thread at a time, between {@link #acquire(String, Supplier)} and
+ * {@link #release(String, BatchProcessor)}.
+ * <p>
+ * The pool also caches validation profiles parsed from URLs, keyed by the
+ * SHA-1 of their content.
+ *
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+public final class ProcessorPool {
+	private final Map<String, ProcessorConfig> configs = new ConcurrentHashMap<>();
+	private final Map<String, Deque<BatchProcessor>> idle = new ConcurrentHashMap<>();
+	private final Map<String, ValidationProfile> profiles = new ConcurrentHashMap<>();
+	private final Map<ValidationProfile, String> profileKeys = Collections.synchronizedMap(new WeakHashMap<>());
+
+	private ProcessorPool() {
+	}
+
+	/**
+	 * @return a new, empty ProcessorPool
+	 */
+	public static ProcessorPool newInstance() {
+		return new ProcessorPool();
+	}
+
+	/**
+	 * @return the pool shared by the JVM
+	 */
+	public static ProcessorPool defaultInstance() {
+		return DefaultHolder.INSTANCE;
+	}
+
+	/**
+	 * @param key
+	 *            identifies the processor's config
+	 * @param config
+	 *            supplies the config for {@code key} the first time it's used
+	 * @return an idle processor for {@code key}, or a new one if there are none
+	 */
+	public BatchProcessor acquire(final String key, final Supplier<ProcessorConfig> config) {
+		if (key == null)
+			throw new NullPointerException("Parameter key can not be null");
+		BatchProcessor processor = idleFor(key).pollFirst();
+		if (processor != null)
+			return processor;
+		return ProcessorFactory.fileBatchProcessor(this.configs.computeIfAbsent(key, k -> config.get()));
+	}
+
+	/**
+	 * Returns a processor to the pool for re-use.
+	 *
+	 * @param key
+	 *            the key the processor was acquired with
+	 * @param processor
+	 *            the processor, no longer used by the caller
+	 */
+	public void release(final String key, final BatchProcessor processor) {
+		if (processor != null)
+			idleFor(key).offerFirst(processor);
+	}
+
+	/**
+	 * @param key
+	 *            identifies a processor config
+	 * @return the number of idle processors pooled for {@code key}
+	 */
+	public int idleCount(final String key) {
+		return idleFor(key).size();
+	}
+
+	/**
+	 * @param profile
+	 *            a validation profile
+	 * @return a key that identifies the profile by the SHA-1 of its XML form,
+	 *         computed once per profile instance
+	 * @throws JAXBException
+	 *             if the profile can't be serialised
+	 */
+	public String profileKey(final ValidationProfile profile) throws JAXBException {
+		String key = this.profileKeys.get(profile);
+		if (key == null) {
+			key = "profile " + DigestUtils.sha1Hex(Profiles.profileToXml(profile, false, false));
+			this.profileKeys.put(profile, key);
+		}
+		return key;
+	}
+
+	/**
+	 * Fetches a validation profile through the {@link CorpusCache} and loads
+	 * it through the {@link BinaryProfileCache}, unless a profile with the same
+	 * content has already been loaded.
+	 *
+	 * @param url
+	 *            the URL of the validation profile XML
+	 * @return the parsed validation profile
+	 * @throws IOException
+	 *             if the profile can't be fetched
+	 * @throws JAXBException
+	 *             if the profile can't be parsed
+	 */
+	public ValidationProfile profileFromUrl(final URL url) throws IOException, JAXBException {
+		File profileFile = CorpusCache.defaultInstance().fetch(url);
+		String sha1 = CorpusCache.defaultInstance().getHexSha1(url);
+		if (sha1 == null) {
+			try (InputStream input = Files.newInputStream(profileFile.toPath())) {
+				sha1 = DigestUtils.sha1Hex(input);
+			}
+		}
+		ValidationProfile profile = this.profiles.get(sha1);
+		if (profile == null) {
+			profile = BinaryProfileCache.defaultInstance().profileFromXml(profileFile);
+			ValidationProfile cached = this.profiles.putIfAbsent(sha1, profile);
+			profile = cached != null ? cached : profile;
+		}
+		return profile;
+	}
+
+	private Deque<BatchProcessor> idleFor(final String key) {
+		return this.idle.computeIfAbsent(key, k -> new ConcurrentLinkedDeque<>());
+	}
+
+	private static final class DefaultHolder {
+		private static final ProcessorPool INSTANCE = newInstance();
+	}
+}
@@ -0,0 +1,275 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Remembers the SHA-1 of every atomic profile file seen by an incremental
+ * profile merge, along with the file's size and modification time. A file
+ * whose size and modification time haven't changed since the last run isn't
+ * read again, its recorded SHA-1 is used to find its parsed rules in the
+ * {@link BinaryProfileCache}.
+ * <p>
+ * As with git's racily clean index entries, a file modified around the time
+ * it was hashed could be edited again without its size or timestamp changing,
+ * timestamps are only accurate to a second or two on some file systems. So
+ * the manifest records when the run that wrote it started, and a file whose
+ * modification time is within {@value #RACY_WINDOW_SECONDS} seconds of that,
+ * or later, is always hashed again.
+ * <p>
+ * The manifest also records the key and SHA-1 of
+ * the last merged profile, which is kept next to the manifest, so a merge
+ * whose inputs haven't changed can copy it rather than build it again.
+ * <p>
+ * The manifest is a single TSV file. Only the files seen by the current run
+ * are written back, so deleted files drop out of it.
+ *
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+public final class ProfileManifest {
+	private static final String HEADER = "# veraPDF profile merge manifest v2";
+	private static final String STARTED = "started";
+	private static final String OUTPUT = "output";
+	private static final String FILE = "file";
+	private static final String MERGED_SUFFIX = ".merged.xml";
+	// The coarsest file system timestamps, FAT's, are accurate to 2 seconds
+	private static final long RACY_WINDOW_SECONDS = 2;
+
+	private final File file;
+	// When this run started and when the run that wrote the manifest did, in nanoseconds
+	private final long started = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+	private long previousStarted = Long.MIN_VALUE;
+	private final Map<String, Entry> previous = new ConcurrentHashMap<>();
+	private final Map<String, Entry> current = new ConcurrentHashMap<>();
+	private String outputKey;
+	private String outputSha1;
+	private final AtomicInteger changedCount = new AtomicInteger();
+
+	private ProfileManifest(final File file) {
+		this.file = file;
+	}
+
+	/**
+	 * @param file
+	 *            the manifest file, read now if it exists
+	 * @return a ProfileManifest backed by {@code file}
+	 * @throws IOException
+	 *             if the manifest exists and can't be read
+	 */
+	public static ProfileManifest fromFile(final File file) throws IOException {
+		if (file == null)
+			throw new NullPointerException("Parameter file can not be null");
+		ProfileManifest manifest = new ProfileManifest(file);
+		manifest.load();
+		return manifest;
+	}
+
+	/**
+	 * @return the manifest file
+	 */
+	public File getFile() {
+		return this.file;
+	}
+
+	/**
+	 * @return the file holding the last merged profile
+	 */
+	public File getMergedFile() {
+		return new File(this.file.getPath() + MERGED_SUFFIX);
+	}
+
+	/**
+	 * Gets the SHA-1 of a profile file, reading the file only if its size or
+	 * modification time differ from the recorded ones, or it was modified too
+	 * close to the last run for them to be trusted. Safe to call from several
+	 * threads.
+	 *
+	 * @param path
+	 *            the profile file
+	 * @return the hex SHA-1 of the file's contents
+	 * @throws IOException
+	 *             if the file can't be read
+	 */
+	public String sha1Of(final Path path) throws IOException {
+		if (path == null)
+			throw new NullPointerException("Parameter path can not be null");
+		String key = path.toAbsolutePath().normalize().toString();
+		Entry seen = this.current.get(key);
+		if (seen != null)
+			return seen.sha1;
+		BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+		long modified = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+		Entry recorded = this.previous.get(key);
+		Entry entry;
+		if (recorded != null && recorded.size == attrs.size() && recorded.modified == modified
+				&& modified < this.previousStarted - TimeUnit.SECONDS.toNanos(RACY_WINDOW_SECONDS)) {
+			entry = recorded;
+		} else {
+			entry = new Entry(attrs.size(), modified, DigestUtils.sha1Hex(Files.readAllBytes(path)));
+			if (recorded == null || !recorded.sha1.equals(entry.sha1)) {
+				this.changedCount.incrementAndGet();
+			}
+		}
+		this.current.put(key, entry);
+		return entry.sha1;
+	}
+
+	/**
+	 * @return the number of files seen by this run that are new or whose
+	 *         contents have changed since the last run
+	 */
+	public int getChangedCount() {
+		return this.changedCount.get();
+	}
+
+	/**
+	 * @param key
+	 *            identifies the inputs of a merge
+	 * @return the merged profile last written for {@code key}, or
+	 *         {@code null} if there isn't one or it's been altered
+	 * @throws IOException
+	 *             if the merged profile can't be read
+	 */
+	public byte[] getMergedProfile(final String key) throws IOException {
+		File merged = getMergedFile();
+		if (key == null || !key.equals(this.outputKey) || !merged.isFile())
+			return null;
+		byte[] xml = Files.readAllBytes(merged.toPath());
+		return DigestUtils.sha1Hex(xml).equals(this.outputSha1) ? xml : null;
+	}
+
+	/**
+	 * Records a merged profile, written to {@link #getMergedFile()} when the
+	 * manifest is saved.
+	 *
+	 * @param key
+	 *            identifies the inputs of the merge
+	 * @param xml
+	 *            the merged profile
+	 * @throws IOException
+	 *             if the merged profile can't be written
+	 */
+	public void setMergedProfile(final String key, final byte[] xml) throws IOException {
+		if (key == null)
+			throw new NullPointerException("Parameter key can not be null");
+		if (xml == null)
+			throw new NullPointerException("Parameter xml can not be null");
+		writeAtomically(getMergedFile(), xml);
+		this.outputKey = key;
+		this.outputSha1 = DigestUtils.sha1Hex(xml);
+	}
+
+	/**
+	 * Writes the manifest file with the files seen by this run.
+	 *
+	 * @throws IOException
+	 *             if the file can't be written
+	 */
+	public synchronized void save() throws IOException {
+		StringBuilder builder = new StringBuilder(HEADER).append('\n');
+		builder.append(STARTED).append('\t').append(this.started).append('\n');
+		if (this.outputKey != null) {
+			builder.append(OUTPUT).append('\t').append(this.outputKey).append('\t').append(this.outputSha1)
+					.append('\n');
+		}
+		for (Map.Entry<String, Entry> entry : new TreeMap<>(this.current).entrySet()) {
+			Entry value = entry.getValue();
+			builder.append(FILE).append('\t').append(value.size).append('\t').append(value.modified).append('\t')
+					.append(value.sha1).append('\t').append(RegressionShard.escape(entry.getKey())).append('\n');
+		}
+		writeAtomically(this.file, builder.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void load() throws IOException {
+		if (!this.file.isFile())
+			return;
+		try (BufferedReader reader = Files.newBufferedReader(this.file.toPath(), StandardCharsets.UTF_8)) {
+			String header = reader.readLine();
+			if (!HEADER.equals(header)) {
+				System.out.println("Profile manifest " + this.file + " has an unknown format, ignoring");
+				return;
+			}
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split("\t", -1);
+				if (STARTED.equals(fields[0]) && fields.length == 2) {
+					try {
+						this.previousStarted = Long.parseLong(fields[1]);
+					} catch (NumberFormatException excep) {
+						throw new IOException("Malformed line in " + this.file + ": " + line, excep);
+					}
+				} else if (OUTPUT.equals(fields[0]) && fields.length == 3) {
+					this.outputKey = fields[1];
+					this.outputSha1 = fields[2];
+				} else if (FILE.equals(fields[0]) && fields.length == 5) {
+					try {
+						this.previous.put(RegressionShard.unescape(fields[4]),
+								new Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[3]));
+					} catch (NumberFormatException excep) {
+						throw new IOException("Malformed line in " + this.file + ": " + line, excep);
+					}
+				} else {
+					throw new IOException("Malformed line in " + this.file + ": " + line);
+				}
+			}
+		}
+	}
+
+	private static void writeAtomically(final File target, final byte[] bytes) throws IOException {
+		File dir = target.getAbsoluteFile().getParentFile();
+		Files.createDirectories(dir.toPath());
+		File tempFile = File.createTempFile(target.getName(), ".tmp", dir);
+		try {
+			Files.write(tempFile.toPath(), bytes);
+			Files.move(tempFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempFile.toPath());
+		}
+	}
+
+	private static final class Entry {
+		final long size;
+		final long modified;
+		final String sha1;
+
+		Entry(final long size, final long modified, final String sha1) {
+			this.size = size;
+			this.modified = modified;
+			this.sha1 = sha1;
+		}
+	}
+}
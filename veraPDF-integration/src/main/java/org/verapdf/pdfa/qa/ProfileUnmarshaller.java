@@ -0,0 +1,88 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa;
+
+import org.verapdf.pdfa.validation.profiles.ValidationProfile;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.transform.stream.StreamSource;
+import java.io.InputStream;
+
+/**
+ * Unmarshals validation profile XML as {@code Profiles.profileFromXml} does,
+ * but with a single {@link JAXBContext} for the process and an
+ * {@link Unmarshaller} per thread, rather than a new context for every
+ * profile. It pays off when many profiles are parsed, e.g. the thousands of
+ * atomic profiles loaded by {@link RuleDirectory}.
+ *
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+final class ProfileUnmarshaller {
+	// Package private in veraPDF core, but it's the JAXB root of a profile
+	private static final String PROFILE_CLASS = "org.verapdf.pdfa.validation.profiles.ValidationProfileImpl";
+	private static final ThreadLocal<Unmarshaller> UNMARSHALLERS = new ThreadLocal<>();
+
+	private ProfileUnmarshaller() {
+		throw new AssertionError("Should never happen");
+	}
+
+	/**
+	 * @param xml
+	 *            a validation profile XML stream, left open
+	 * @return the validation profile
+	 * @throws JAXBException
+	 *             if the XML can't be parsed
+	 */
+	static ValidationProfile unmarshal(final InputStream xml) throws JAXBException {
+		if (xml == null)
+			throw new NullPointerException("Parameter xml can not be null");
+		Unmarshaller unmarshaller = UNMARSHALLERS.get();
+		if (unmarshaller == null) {
+			unmarshaller = ContextHolder.CONTEXT.createUnmarshaller();
+			UNMARSHALLERS.set(unmarshaller);
+		}
+		return (ValidationProfile) unmarshaller.unmarshal(new StreamSource(xml), ContextHolder.PROFILE_TYPE)
+				.getValue();
+	}
+
+	private static final class ContextHolder {
+		private static final Class<?> PROFILE_TYPE = profileType();
+		private static final JAXBContext CONTEXT = newContext();
+
+		private static Class<?> profileType() {
+			try {
+				return Class.forName(PROFILE_CLASS, true, ValidationProfile.class.getClassLoader());
+			} catch (ClassNotFoundException excep) {
+				throw new IllegalStateException("Couldn't load " + PROFILE_CLASS, excep);
+			}
+		}
+
+		private static JAXBContext newContext() {
+			try {
+				return JAXBContext.newInstance(PROFILE_TYPE);
+			} catch (JAXBException excep) {
+				throw new IllegalStateException("Couldn't create JAXB context for " + PROFILE_CLASS, excep);
+			}
+		}
+	}
+}
@@ -24,16 +24,38 @@ import org.verapdf.pdfa.flavours.PDFAFlavour;
 import org.verapdf.pdfa.validation.profiles.*;
 import org.verapdf.pdfa.validation.profiles.Profiles.RuleComparator;
 
+import org.apache.commons.codec.digest.DigestUtils;
+
 import javax.xml.bind.JAXBException;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.Path;
 import java.util.*;
 
 /**
+ * Merges directories of atomic profiles into a single validation profile.
+ * Rules and variables are written in sorted order, and the profile's creation
+ * date is taken from the {@code SOURCE_DATE_EPOCH} environment variable when
+ * it's set, so the same inputs always give the same XML.
+ * <p>
+ * With a {@link ProfileManifest} the merge is incremental. Only atomic
+ * profiles that have changed since the last run are read and parsed, and if
+ * none have changed the last merged profile is written out again as it is.
+ *
  * @author Maksim Bezrukov
  */
 public class ProfilesMerger {
+    /**
+     * System property holding the manifest file for an incremental merge.
+     */
+    public static final String MANIFEST_PROPERTY = "verapdf.profile.merge.manifest";
+    /**
+     * Environment variable holding the creation date of the merged profile,
+     * in seconds since the epoch.
+     */
+    public static final String SOURCE_DATE_EPOCH = "SOURCE_DATE_EPOCH";
 
     public static void main(String[] args) {
         if (args.length < 4) {
@@ -51,7 +73,12 @@ public class ProfilesMerger {
         }
 
         try {
-            mergeAtomicProfiles(System.out, directories, args[0], args[1], args[2]);
+            String manifest = System.getProperty(MANIFEST_PROPERTY);
+            if (manifest != null) {
+                mergeAtomicProfiles(System.out, directories, args[0], args[1], args[2], new File(manifest));
+            } else {
+                mergeAtomicProfiles(System.out, directories, args[0], args[1], args[2]);
+            }
         } catch (IOException | JAXBException e) {
             e.printStackTrace();
         }
@@ -62,22 +89,103 @@ public class ProfilesMerger {
                                            final String name,
                                            final String description,
                                            final String creator) throws IOException, JAXBException {
+        Profiles.profileToXml(mergeProfiles(root, name, description, creator, null), out, true, false);
+    }
+
+    /**
+     * Merges the atomic profiles incrementally, see {@link ProfileManifest}.
+     * The merged profile is the same as the one written by
+     * {@link #mergeAtomicProfiles(OutputStream, File[], String, String, String)}.
+     *
+     * @param out          the stream to write the merged profile to
+     * @param root         the directories of atomic profiles to merge
+     * @param name         the name of the merged profile
+     * @param description  the description of the merged profile
+     * @param creator      the creator of the merged profile
+     * @param manifestFile the manifest of the last run, created if it doesn't exist
+     * @throws IOException   if a profile or the manifest can't be read or written
+     * @throws JAXBException if an atomic profile can't be parsed or the merged
+     *                       profile can't be written
+     */
+    public static void mergeAtomicProfiles(OutputStream out,
+                                           final File[] root,
+                                           final String name,
+                                           final String description,
+                                           final String creator,
+                                           final File manifestFile) throws IOException, JAXBException {
+        if (manifestFile == null)
+            throw new NullPointerException("Parameter manifestFile can not be null");
+        ProfileManifest manifest = ProfileManifest.fromFile(manifestFile);
+        String key = mergeKey(root, name, description, creator, manifest);
+        byte[] xml = manifest.getMergedProfile(key);
+        if (xml == null) {
+            ByteArrayOutputStream merged = new ByteArrayOutputStream();
+            Profiles.profileToXml(mergeProfiles(root, name, description, creator, manifest), merged, true, false);
+            xml = merged.toByteArray();
+            manifest.setMergedProfile(key, xml);
+        }
+        manifest.save();
+        out.write(xml);
+        out.flush();
+    }
+
+    /**
+     * Identifies the inputs of a merge by the SHA-1s of the atomic profiles
+     * in each directory, the profile details and the library versions.
+     */
+    private static String mergeKey(final File[] root,
+                                   final String name,
+                                   final String description,
+                                   final String creator,
+                                   final ProfileManifest manifest) throws IOException {
+        StringBuilder inputs = new StringBuilder();
+        inputs.append(name).append('\n').append(description).append('\n').append(creator).append('\n')
+                .append(System.getenv(SOURCE_DATE_EPOCH)).append('\n')
+                .append(RegressionResultStore.libraryVersions()).append('\n');
+        for (File dir : root) {
+            inputs.append(dir.getAbsolutePath()).append('\n');
+            for (Path file : RuleDirectory.profileFiles(dir.toPath())) {
+                inputs.append(file).append('\t').append(manifest.sha1Of(file)).append('\n');
+            }
+        }
+        return DigestUtils.sha1Hex(inputs.toString());
+    }
+
+    private static ValidationProfile mergeProfiles(final File[] root,
+                                                   final String name,
+                                                   final String description,
+                                                   final String creator,
+                                                   final ProfileManifest manifest) throws IOException, JAXBException {
         SortedSet<Rule> rules = new TreeSet<>(new RuleComparator());
-        SortedSet<Variable> variables = new TreeSet<>(Comparator.comparing(Variable::getName));
+        VariableRegistry variables = VariableRegistry.newInstance();
         PDFAFlavour flavour = null;
 
         for (File dir : root) {
-            RuleDirectory ruleDir = RuleDirectory.loadFromDir(dir);
+            RuleDirectory ruleDir = RuleDirectory.loadFromDir(dir, manifest);
             if (flavour == null) {
                 flavour = ruleDir.getFlavour();
             }
             rules.addAll(updateSpecification(ruleDir.getItems(), flavour));
-            RuleDirectory.checkAndAddAllVariables(variables, ruleDir.getVariables());
+            variables.addAll(ruleDir.getVariables());
         }
+        variables.checkForClashes();
 
-        ProfileDetails det = Profiles.profileDetailsFromValues(name, description, creator, new Date());
-        ValidationProfile mergedProfile = Profiles.profileFromSortedValues(flavour, det, "", rules, variables);
-        Profiles.profileToXml(mergedProfile, out, true, false);
+        ProfileDetails det = Profiles.profileDetailsFromValues(name, description, creator, creationDate());
+        SortedSet<Variable> sortedVariables = new TreeSet<>(Comparator.comparing(Variable::getName));
+        sortedVariables.addAll(variables.getVariables());
+        return Profiles.profileFromSortedValues(flavour, det, "", rules, sortedVariables);
+    }
+
+    private static Date creationDate() {
+        String epoch = System.getenv(SOURCE_DATE_EPOCH);
+        if (epoch == null || epoch.trim().isEmpty()) {
+            return new Date();
+        }
+        try {
+            return new Date(Long.parseLong(epoch.trim()) * 1000L);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(SOURCE_DATE_EPOCH + " must be a number of seconds, not " + epoch, e);
+        }
     }
 
     private static Set<Rule> updateSpecification(final Collection<Rule> rules, final PDFAFlavour flavour) {
@@ -0,0 +1,220 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Options controlling how a regression run is executed: a wall clock budget
+ * for each file, a limit on the number of failed files after which the run
+ * stops, and a triage mode that skips recording passed checks when a file's
+ * policy doesn't look at them.
+ * <p>
+ * A file that overruns its budget is interrupted, and the check notices at
+ * its next read of the PDF or between its validation and policy steps. Until
+ * then it keeps running in the background, so the number of these abandoned
+ * checks is capped, the run fails rather than exceed the cap.
+ *
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+public final class RegressionExecutionOptions {
+	/**
+	 * System property holding the wall clock budget for each file in seconds,
+	 * 0 for no budget.
+	 */
+	public static final String TIMEOUT_PROPERTY = "verapdf.regression.timeout";
+	/**
+	 * System property holding the number of files failing their policy checks
+	 * after which the run stops, 0 to check every file. Files without a PDF
+	 * or a policy don't count.
+	 */
+	public static final String MAX_FAILURES_PROPERTY = "verapdf.regression.max.failures";
+	/**
+	 * System property that when {@code true} turns on triage mode.
+	 */
+	public static final String TRIAGE_PROPERTY = "verapdf.regression.triage";
+	/**
+	 * System property holding the number of timed out checks that may still
+	 * be running in the background before the run fails, defaults to
+	 * {@value #DEFAULT_MAX_ABANDONED}.
+	 */
+	public static final String MAX_ABANDONED_PROPERTY = "verapdf.regression.max.abandoned";
+	/**
+	 * The default number of timed out checks that may still be running.
+	 */
+	public static final int DEFAULT_MAX_ABANDONED = 4;
+	/**
+	 * Checks every file, without a time budget, recording passed checks.
+	 */
+	public static final RegressionExecutionOptions DEFAULT = new RegressionExecutionOptions(0, 0, false,
+			DEFAULT_MAX_ABANDONED);
+	private static final byte[] PASSED = "passed".getBytes(StandardCharsets.US_ASCII);
+
+	private final long timeoutMillis;
+	private final int maxFailures;
+	private final boolean triage;
+	private final int maxAbandoned;
+
+	private RegressionExecutionOptions(final long timeoutMillis, final int maxFailures, final boolean triage,
+			final int maxAbandoned) {
+		this.timeoutMillis = timeoutMillis;
+		this.maxFailures = maxFailures;
+		this.triage = triage;
+		this.maxAbandoned = maxAbandoned;
+	}
+
+	/**
+	 * @param timeoutMillis
+	 *            the wall clock budget for each file in milliseconds, 0 for no
+	 *            budget
+	 * @param maxFailures
+	 *            the number of failed files after which the run stops, 0 to
+	 *            check every file
+	 * @param triage
+	 *            {@code true} to skip recording passed checks for files whose
+	 *            policies don't need them
+	 * @return the options
+	 * @throws IllegalArgumentException
+	 *             if {@code timeoutMillis} or {@code maxFailures} is negative
+	 */
+	public static RegressionExecutionOptions fromValues(final long timeoutMillis, final int maxFailures,
+			final boolean triage) {
+		return fromValues(timeoutMillis, maxFailures, triage, DEFAULT_MAX_ABANDONED);
+	}
+
+	/**
+	 * @param timeoutMillis
+	 *            the wall clock budget for each file in milliseconds, 0 for no
+	 *            budget
+	 * @param maxFailures
+	 *            the number of failed files after which the run stops, 0 to
+	 *            check every file
+	 * @param triage
+	 *            {@code true} to skip recording passed checks for files whose
+	 *            policies don't need them
+	 * @param maxAbandoned
+	 *            the number of timed out checks that may still be running
+	 *            before the run fails
+	 * @return the options
+	 * @throws IllegalArgumentException
+	 *             if {@code timeoutMillis} or {@code maxFailures} is negative,
+	 *             or {@code maxAbandoned} isn't positive
+	 */
+	public static RegressionExecutionOptions fromValues(final long timeoutMillis, final int maxFailures,
+			final boolean triage, final int maxAbandoned) {
+		if (timeoutMillis < 0)
+			throw new IllegalArgumentException("Parameter timeoutMillis=" + timeoutMillis + ", must be >= 0");
+		if (maxFailures < 0)
+			throw new IllegalArgumentException("Parameter maxFailures=" + maxFailures + ", must be >= 0");
+		if (maxAbandoned < 1)
+			throw new IllegalArgumentException("Parameter maxAbandoned=" + maxAbandoned + ", must be > 0");
+		return new RegressionExecutionOptions(timeoutMillis, maxFailures, triage, maxAbandoned);
+	}
+
+	/**
+	 * @param args
+	 *            command line arguments, searched for {@code --timeout <s>},
+	 *            {@code --max-failures <n>}, {@code --max-abandoned <n>} and
+	 *            {@code --triage}
+	 * @return the options named on the command line, or else by the
+	 *         {@link #TIMEOUT_PROPERTY}, {@link #MAX_FAILURES_PROPERTY},
+	 *         {@link #MAX_ABANDONED_PROPERTY} and {@link #TRIAGE_PROPERTY}
+	 *         system properties
+	 */
+	public static RegressionExecutionOptions fromArgs(final String[] args) {
+		String timeout = RegressionShard.argument(args, "--timeout");
+		if (timeout == null)
+			timeout = System.getProperty(TIMEOUT_PROPERTY, "0");
+		String maxFailures = RegressionShard.argument(args, "--max-failures");
+		if (maxFailures == null)
+			maxFailures = System.getProperty(MAX_FAILURES_PROPERTY, "0");
+		String maxAbandoned = RegressionShard.argument(args, "--max-abandoned");
+		if (maxAbandoned == null)
+			maxAbandoned = System.getProperty(MAX_ABANDONED_PROPERTY, Integer.toString(DEFAULT_MAX_ABANDONED));
+		boolean triage = Boolean.getBoolean(TRIAGE_PROPERTY);
+		for (String arg : args) {
+			triage |= "--triage".equals(arg);
+		}
+		return fromValues((long) (Double.parseDouble(timeout) * 1000), Integer.parseInt(maxFailures), triage,
+				Integer.parseInt(maxAbandoned));
+	}
+
+	/**
+	 * @return the wall clock budget for each file in milliseconds, 0 for no
+	 *         budget
+	 */
+	public long getTimeoutMillis() {
+		return this.timeoutMillis;
+	}
+
+	/**
+	 * @return the number of files failing their policy checks after which the
+	 *         run stops, 0 to check every file
+	 */
+	public int getMaxFailures() {
+		return this.maxFailures;
+	}
+
+	/**
+	 * @return the number of timed out checks that may still be running before
+	 *         the run fails
+	 */
+	public int getMaxAbandoned() {
+		return this.maxAbandoned;
+	}
+
+	/**
+	 * @return {@code true} if triage mode is on
+	 */
+	public boolean isTriage() {
+		return this.triage;
+	}
+
+	/**
+	 * @param schematron
+	 *            a Schematron policy
+	 * @return {@code true} if passed checks must be recorded for the policy to
+	 *         be evaluated correctly, always {@code true} unless triage mode is
+	 *         on. A policy is taken to need them if it mentions
+	 *         {@code passed} anywhere, e.g. {@code @status = 'passed'} or
+	 *         {@code @passedChecks}.
+	 */
+	public boolean recordPasses(final byte[] schematron) {
+		return !this.triage || indexOf(schematron, PASSED) >= 0;
+	}
+
+	@Override
+	public String toString() {
+		return "RegressionExecutionOptions [timeoutMillis=" + this.timeoutMillis + ", maxFailures=" + this.maxFailures
+				+ ", triage=" + this.triage + ", maxAbandoned=" + this.maxAbandoned + "]";
+	}
+
+	private static int indexOf(final byte[] bytes, final byte[] sought) {
+		outer: for (int i = 0; i <= bytes.length - sought.length; i++) {
+			for (int j = 0; j < sought.length; j++) {
+				if (bytes[i + j] != sought[j])
+					continue outer;
+			}
+			return i;
+		}
+		return -1;
+	}
+}
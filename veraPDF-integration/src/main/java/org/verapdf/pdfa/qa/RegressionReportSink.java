@@ -0,0 +1,100 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa;
+
+import org.verapdf.pdfa.flavours.PDFAFlavour;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Receives the outcome of each regression test file as soon as it's checked,
+ * so failures can be written out in a machine readable form while a run is
+ * still going. Files are checked on several threads so implementations must
+ * be thread safe.
+ *
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+public interface RegressionReportSink extends Closeable {
+	/**
+	 * System property holding the file regression outcomes are reported to.
+	 */
+	public static final String REPORT_PROPERTY = "verapdf.regression.report";
+
+	/**
+	 * @param pdfName
+	 *            the name of the checked file
+	 * @param flavour
+	 *            the flavour the file was validated against
+	 * @param durationMillis
+	 *            the time taken to validate and check the file, in
+	 *            milliseconds
+	 * @param replayed
+	 *            {@code true} if the outcome was replayed from a
+	 *            {@link RegressionResultStore}
+	 * @param failedChecks
+	 *            the failed policy checks, empty if the file passed, a single
+	 *            check without a test if checking the file failed with an error
+	 */
+	public void fileChecked(String pdfName, PDFAFlavour flavour, long durationMillis, boolean replayed,
+			List<FailedPolicyCheck> failedChecks);
+
+	/**
+	 * @param file
+	 *            the report file, a JUnit XML report if its name ends with
+	 *            {@code .xml}, JSON lines otherwise
+	 * @param name
+	 *            the name of the regression test run
+	 * @return a RegressionReportSink that writes to {@code file}
+	 * @throws IOException
+	 *             if {@code file} can't be opened for writing
+	 */
+	public static RegressionReportSink fromFile(final File file, final String name) throws IOException {
+		if (file == null)
+			throw new NullPointerException("Parameter file can not be null");
+		File dir = file.getAbsoluteFile().getParentFile();
+		if (dir != null && !dir.isDirectory() && !dir.mkdirs())
+			throw new IOException("Couldn't create report directory " + dir);
+		return file.getName().endsWith(".xml") ? JUnitXmlRegressionSink.fromFile(file, name)
+				: JsonLinesRegressionSink.fromFile(file);
+	}
+
+	/**
+	 * @param name
+	 *            the name of the regression test run
+	 * @param args
+	 *            the command line arguments, {@code --report <file>} names the
+	 *            report file, overriding {@link #REPORT_PROPERTY}
+	 * @return a RegressionReportSink for the report file, or {@code null} if no
+	 *         report was asked for
+	 * @throws IOException
+	 *             if the report file can't be opened for writing
+	 */
+	public static RegressionReportSink fromArgs(final String name, final String[] args) throws IOException {
+		String report = RegressionShard.argument(args, "--report");
+		if (report == null) {
+			report = System.getProperty(REPORT_PROPERTY);
+		}
+		return report == null || report.isEmpty() ? null : fromFile(new File(report), name);
+	}
+}
@@ -0,0 +1,301 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.verapdf.ReleaseDetails;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A persistent store of regression test outcomes, so that a run only
+ * re-checks the files whose inputs have changed since the last run. Each
+ * outcome is keyed by the SHA-1 of the PDF, the SHA-1 of its Schematron
+ * policy, the validation profile and the versions of the veraPDF libraries on
+ * the class path. Only outcomes that come from a completed policy check are
+ * stored, files that failed with an error are always re-checked.
+ * <p>
+ * The store is a single TSV file. Outcomes recorded by other library versions
+ * can never be replayed, so they're dropped when the file is loaded.
+ *
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+public final class RegressionResultStore {
+	/**
+	 * System property holding the store file, defaults to
+	 * {@code regression-results-<name>.tsv} in the corpus cache directory.
+	 */
+	public static final String STORE_PROPERTY = "verapdf.regression.store";
+	/**
+	 * System property that when {@code true} re-checks every file, replacing
+	 * the stored outcomes.
+	 */
+	public static final String FORCE_PROPERTY = "verapdf.regression.force";
+	/**
+	 * System property that when {@code false} turns the store off.
+	 */
+	public static final String ENABLED_PROPERTY = "verapdf.regression.store.enabled";
+	private static final String HEADER = "# veraPDF regression results v2, libraries ";
+	private static final String PASS = "pass";
+	private static final String FAIL = "fail";
+	// Can't be produced by escaping a string, escaping doubles backslashes
+	private static final String NULL = "\\N";
+	// test, message, location, node name and attributes
+	private static final int CHECK_FIELDS = 5;
+	// Ids of the libraries whose versions key the stored outcomes
+	private static final String[] LIBRARY_IDS = { "core", "validation-model" };
+
+	private final File file;
+	private final boolean force;
+	private final String libraries;
+	private final Map<String, List<FailedPolicyCheck>> outcomes = new ConcurrentHashMap<>();
+	private volatile boolean changed = false;
+
+	private RegressionResultStore(final File file, final boolean force) {
+		this.file = file;
+		this.force = force;
+		this.libraries = libraryVersions();
+	}
+
+	/**
+	 * @param file
+	 *            the store file, read now if it exists
+	 * @param force
+	 *            if {@code true} stored outcomes are never replayed
+	 * @return a RegressionResultStore backed by {@code file}
+	 * @throws IOException
+	 *             if the store file exists and can't be read
+	 */
+	public static RegressionResultStore fromValues(final File file, final boolean force) throws IOException {
+		if (file == null)
+			throw new NullPointerException("Parameter file can not be null");
+		RegressionResultStore store = new RegressionResultStore(file, force);
+		store.load();
+		return store;
+	}
+
+	/**
+	 * @param name
+	 *            the name of the test set, e.g. {@code pdf}
+	 * @param args
+	 *            command line arguments, searched for {@code --force}
+	 * @return the store configured by the {@link #STORE_PROPERTY},
+	 *         {@link #FORCE_PROPERTY} and {@link #ENABLED_PROPERTY} system
+	 *         properties and {@code args}, or {@code null} if the store is
+	 *         turned off
+	 * @throws IOException
+	 *             if the store file exists and can't be read
+	 */
+	public static RegressionResultStore fromArgs(final String name, final String[] args) throws IOException {
+		if (!Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY, "true")))
+			return null;
+		boolean force = Boolean.getBoolean(FORCE_PROPERTY);
+		for (String arg : args) {
+			force |= "--force".equals(arg);
+		}
+		String path = System.getProperty(STORE_PROPERTY);
+		File storeFile = path != null ? new File(path)
+				: new File(CorpusCache.defaultInstance().getRoot(), "regression-results-" + name + ".tsv");
+		return fromValues(storeFile, force);
+	}
+
+	/**
+	 * @param pdfSha1
+	 *            the hex SHA-1 of the PDF
+	 * @param policySha1
+	 *            the hex SHA-1 of the Schematron policy
+	 * @param profileKey
+	 *            identifies the validation profile, e.g. the hash of a custom
+	 *            profile
+	 * @return the key the outcome for these inputs is stored under
+	 */
+	public String keyFor(final String pdfSha1, final String policySha1, final String profileKey) {
+		return DigestUtils.sha1Hex(pdfSha1 + "\t" + policySha1 + "\t" + profileKey + "\t" + this.libraries);
+	}
+
+	/**
+	 * @param key
+	 *            a key from {@link #keyFor(String, String, String)}
+	 * @return the stored failed checks for {@code key}, an empty list for a
+	 *         pass, or {@code null} if there's no stored outcome or the store
+	 *         is forcing re-checks
+	 */
+	public List<FailedPolicyCheck> get(final String key) {
+		return this.force ? null : this.outcomes.get(key);
+	}
+
+	/**
+	 * Stores an outcome, unless it holds an error rather than policy check
+	 * failures.
+	 *
+	 * @param key
+	 *            a key from {@link #keyFor(String, String, String)}
+	 * @param failedChecks
+	 *            the failed checks, {@code null} or empty for a pass
+	 */
+	public void put(final String key, final List<FailedPolicyCheck> failedChecks) {
+		List<FailedPolicyCheck> outcome = failedChecks == null ? Collections.emptyList() : failedChecks;
+		for (FailedPolicyCheck check : outcome) {
+			if (check.getTest() == null)
+				return;
+		}
+		this.outcomes.put(key, outcome);
+		this.changed = true;
+	}
+
+	/**
+	 * @return the number of stored outcomes
+	 */
+	public int size() {
+		return this.outcomes.size();
+	}
+
+	/**
+	 * Writes the store file if any outcomes have been added.
+	 *
+	 * @throws IOException
+	 *             if the file can't be written
+	 */
+	public synchronized void save() throws IOException {
+		if (!this.changed)
+			return;
+		File dir = this.file.getAbsoluteFile().getParentFile();
+		Files.createDirectories(dir.toPath());
+		File tempFile = File.createTempFile(this.file.getName(), ".tmp", dir);
+		try {
+			try (Writer writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
+				writer.write(HEADER + RegressionShard.escape(this.libraries) + "\n");
+				for (Map.Entry<String, List<FailedPolicyCheck>> entry : this.outcomes.entrySet()) {
+					writer.write(entry.getKey());
+					writer.write(entry.getValue().isEmpty() ? "\t" + PASS : "\t" + FAIL);
+					for (FailedPolicyCheck check : entry.getValue()) {
+						writer.write("\t" + encode(check.getTest()) + "\t" + encode(check.getErrorMessage()) + "\t"
+								+ encode(check.getLocation()) + "\t" + encode(check.getNodeName()) + "\t"
+								+ encodeAttributes(check.getAttributes()));
+					}
+					writer.write("\n");
+				}
+			}
+			Files.move(tempFile.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			this.changed = false;
+		} finally {
+			Files.deleteIfExists(tempFile.toPath());
+		}
+	}
+
+	private void load() throws IOException {
+		if (!this.file.isFile())
+			return;
+		try (BufferedReader reader = Files.newBufferedReader(this.file.toPath(), StandardCharsets.UTF_8)) {
+			String header = reader.readLine();
+			if (header == null || !header.equals(HEADER + RegressionShard.escape(this.libraries))) {
+				System.out.println("Regression results in " + this.file + " are from other library versions, ignoring");
+				return;
+			}
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] fields = line.split("\t", -1);
+				if (fields.length < 2 || (fields.length - 2) % CHECK_FIELDS != 0)
+					throw new IOException("Malformed line in " + this.file + ": " + line);
+				List<FailedPolicyCheck> failedChecks = new ArrayList<>((fields.length - 2) / CHECK_FIELDS);
+				for (int i = 2; i < fields.length; i += CHECK_FIELDS) {
+					failedChecks.add(new FailedPolicyCheck(decode(fields[i + 3]), decodeAttributes(fields[i + 4]),
+							decode(fields[i + 2]), decode(fields[i + 1]), decode(fields[i])));
+				}
+				this.outcomes.put(fields[0], failedChecks);
+			}
+		}
+		System.out.println("Loaded " + this.outcomes.size() + " regression results from " + this.file);
+	}
+
+	private static String encode(final String value) {
+		return value == null ? NULL : RegressionShard.escape(value);
+	}
+
+	private static String decode(final String value) {
+		return NULL.equals(value) ? null : RegressionShard.unescape(value);
+	}
+
+	/**
+	 * Encodes attributes as escaped {@code name=value} lines, escaped again as
+	 * a single field.
+	 */
+	private static String encodeAttributes(final Map<String, String> attributes) {
+		StringBuilder builder = new StringBuilder();
+		for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+			if (builder.length() > 0) {
+				builder.append('\n');
+			}
+			builder.append(RegressionShard.escape(attribute.getKey())).append('=')
+					.append(RegressionShard.escape(attribute.getValue()));
+		}
+		return RegressionShard.escape(builder.toString());
+	}
+
+	private static Map<String, String> decodeAttributes(final String value) {
+		Map<String, String> attributes = new TreeMap<>();
+		String lines = RegressionShard.unescape(value);
+		if (lines.isEmpty())
+			return attributes;
+		for (String attribute : lines.split("\n")) {
+			int equals = attribute.indexOf('=');
+			attributes.put(RegressionShard.unescape(attribute.substring(0, equals)),
+					RegressionShard.unescape(attribute.substring(equals + 1)));
+		}
+		return attributes;
+	}
+
+	/**
+	 * The versions of the core and validation model libraries. Validation
+	 * model only registers its details when a foundry is first used, so it's
+	 * registered here to give the same answer whenever this is called.
+	 */
+	static String libraryVersions() {
+		TreeSet<String> versions = new TreeSet<>();
+		for (String id : LIBRARY_IDS) {
+			if (!ReleaseDetails.getIds().contains(id)) {
+				String resource = ReleaseDetails.APPLICATION_PROPERTIES_ROOT + id + "." + ReleaseDetails.PROPERTIES_EXT;
+				// Registering a missing resource adds a placeholder entry, so check first
+				if (RegressionResultStore.class.getClassLoader().getResource(resource) == null)
+					continue;
+				ReleaseDetails.addDetailsFromResource(resource);
+			}
+			ReleaseDetails details = ReleaseDetails.byId(id);
+			versions.add(details.getId() + " " + details.getVersion() + " "
+					+ (details.getBuildDate() == null ? "" : Long.toString(details.getBuildDate().getTime())));
+		}
+		return String.join(", ", versions);
+	}
+}
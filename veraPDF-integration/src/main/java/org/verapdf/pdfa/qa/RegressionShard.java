@@ -0,0 +1,310 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * One of {@code n} partitions of the regression test files, written
+ * {@code i/n} with {@code i} counting from 1. A file is assigned to a shard by
+ * the hash of its name, so every flavour's run of a file lands in the same
+ * shard and the assignment doesn't depend on which other files exist.
+ * <p>
+ * Each shard writes its failures to a file named for the shard, and
+ * {@link #mergeFailures(File, String)} reads the files for a complete set of
+ * shards back into a single failure map.
+ *
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+public final class RegressionShard {
+	/**
+	 * System property holding the shard to run, {@code i/n}, the whole test set
+	 * is run if it's not set.
+	 */
+	public static final String SHARD_PROPERTY = "verapdf.regression.shard";
+	/**
+	 * System property holding the directory shard failures are written to,
+	 * defaults to {@code regression-results} when the test set is sharded.
+	 */
+	public static final String RESULTS_DIR_PROPERTY = "verapdf.regression.results.dir";
+	/**
+	 * The shard that holds every file.
+	 */
+	public static final RegressionShard ALL = new RegressionShard(1, 1);
+	private static final String HEADER = "# veraPDF regression shard ";
+	private static final Pattern SHARD_PATTERN = Pattern.compile("(\\d+)/(\\d+)");
+	private static final Pattern FILE_PATTERN = Pattern.compile("(.+)-shard-(\\d+)-of-(\\d+)\\.tsv");
+
+	private final int index;
+	private final int count;
+
+	private RegressionShard(final int index, final int count) {
+		this.index = index;
+		this.count = count;
+	}
+
+	/**
+	 * @param index
+	 *            the shard's index, from 1 to {@code count}
+	 * @param count
+	 *            the total number of shards
+	 * @return the shard
+	 * @throws IllegalArgumentException
+	 *             if {@code count} is less than 1 or {@code index} is out of
+	 *             range
+	 */
+	public static RegressionShard fromValues(final int index, final int count) {
+		if (count < 1)
+			throw new IllegalArgumentException("Parameter count=" + count + ", must be > 0");
+		if (index < 1 || index > count)
+			throw new IllegalArgumentException("Parameter index=" + index + ", must be between 1 and " + count);
+		return new RegressionShard(index, count);
+	}
+
+	/**
+	 * @param shard
+	 *            a shard written {@code i/n}
+	 * @return the shard
+	 * @throws IllegalArgumentException
+	 *             if {@code shard} isn't a valid {@code i/n} value
+	 */
+	public static RegressionShard fromString(final String shard) {
+		if (shard == null)
+			throw new NullPointerException("Parameter shard can not be null");
+		Matcher matcher = SHARD_PATTERN.matcher(shard.trim());
+		if (!matcher.matches())
+			throw new IllegalArgumentException("Parameter shard=" + shard + ", must be of the form i/n");
+		return fromValues(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+	}
+
+	/**
+	 * @param args
+	 *            command line arguments, searched for {@code --shard i/n}
+	 * @return the shard named on the command line, or else by the
+	 *         {@link #SHARD_PROPERTY} system property, or else {@link #ALL}
+	 */
+	public static RegressionShard fromArgs(final String[] args) {
+		String shard = argument(args, "--shard");
+		if (shard == null)
+			shard = System.getProperty(SHARD_PROPERTY);
+		return shard == null ? ALL : fromString(shard);
+	}
+
+	/**
+	 * @param args
+	 *            command line arguments, searched for {@code --results <dir>}
+	 * @return the results directory named on the command line, or else by the
+	 *         {@link #RESULTS_DIR_PROPERTY} system property, or else
+	 *         {@code regression-results} if the shard named by {@code args}
+	 *         isn't the whole test set, otherwise {@code null}
+	 */
+	public static File resultsDirFromArgs(final String[] args) {
+		String dir = argument(args, "--results");
+		if (dir == null)
+			dir = System.getProperty(RESULTS_DIR_PROPERTY);
+		if (dir == null && fromArgs(args).getCount() > 1)
+			dir = "regression-results";
+		return dir == null ? null : new File(dir);
+	}
+
+	/**
+	 * @param args
+	 *            command line arguments
+	 * @param name
+	 *            the name of an option, e.g. {@code --merge}
+	 * @return the value following {@code name} in {@code args}, or
+	 *         {@code null} if it's not there
+	 */
+	public static String argument(final String[] args, final String name) {
+		for (int i = 0; i < args.length - 1; i++) {
+			if (name.equals(args[i]))
+				return args[i + 1];
+		}
+		return null;
+	}
+
+	/**
+	 * @return the shard's index, from 1
+	 */
+	public int getIndex() {
+		return this.index;
+	}
+
+	/**
+	 * @return the total number of shards
+	 */
+	public int getCount() {
+		return this.count;
+	}
+
+	/**
+	 * @param fileName
+	 *            the name of a regression test file
+	 * @return {@code true} if the file belongs to this shard
+	 */
+	public boolean contains(final String fileName) {
+		return Math.floorMod(fileName.hashCode(), this.count) == this.index - 1;
+	}
+
+	/**
+	 * Writes failures found by this shard to
+	 * {@code <dir>/<name>-shard-<i>-of-<n>.tsv}. The file is written even if
+	 * there are no failures, so its presence marks the shard as complete.
+	 *
+	 * @param dir
+	 *            the results directory, created if it doesn't exist
+	 * @param name
+	 *            the name of the test set, e.g. {@code pdf}
+	 * @param failedFiles
+	 *            the failures found by this shard
+	 * @return the file written
+	 * @throws IOException
+	 *             if the file can't be written
+	 */
+	public File writeFailures(final File dir, final String name, final Map<String, List<FailedPolicyCheck>> failedFiles)
+			throws IOException {
+		Files.createDirectories(dir.toPath());
+		File results = new File(dir, name + "-shard-" + this.index + "-of-" + this.count + ".tsv");
+		File tempFile = File.createTempFile(results.getName(), ".tmp", dir);
+		try {
+			try (Writer writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
+				writer.write(HEADER + this + "\n");
+				for (Map.Entry<String, List<FailedPolicyCheck>> entry : new TreeMap<>(failedFiles).entrySet()) {
+					for (FailedPolicyCheck check : entry.getValue()) {
+						writer.write(escape(entry.getKey()) + "\t" + escape(String.valueOf(check)) + "\n");
+					}
+				}
+			}
+			Files.move(tempFile.toPath(), results.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempFile.toPath());
+		}
+		return results;
+	}
+
+	/**
+	 * Reads back the failures written by a complete set of shards.
+	 *
+	 * @param dir
+	 *            the results directory the shards wrote to
+	 * @param name
+	 *            the name of the test set, e.g. {@code pdf}
+	 * @return the failures found by all of the shards, keyed by file name
+	 * @throws IOException
+	 *             if there are no shard results for {@code name}, the shards
+	 *             don't agree on the shard count, a shard is missing, or a file
+	 *             can't be read
+	 */
+	public static Map<String, List<FailedPolicyCheck>> mergeFailures(final File dir, final String name)
+			throws IOException {
+		File[] files = dir.listFiles();
+		int count = 0;
+		BitSet seen = new BitSet();
+		Map<String, List<FailedPolicyCheck>> failedFiles = new HashMap<>();
+		for (File file : files == null ? new File[0] : files) {
+			Matcher matcher = FILE_PATTERN.matcher(file.getName());
+			if (!matcher.matches() || !name.equals(matcher.group(1)))
+				continue;
+			int fileCount = Integer.parseInt(matcher.group(3));
+			if (count != 0 && count != fileCount)
+				throw new IOException("Shard results in " + dir + " mix shard counts " + count + " and " + fileCount);
+			count = fileCount;
+			seen.set(Integer.parseInt(matcher.group(2)));
+			readFailures(file, failedFiles);
+		}
+		if (count == 0)
+			throw new IOException("No shard results for " + name + " in " + dir);
+		for (int index = 1; index <= count; index++) {
+			if (!seen.get(index))
+				throw new IOException("Missing results for shard " + index + "/" + count + " of " + name);
+		}
+		return failedFiles;
+	}
+
+	private static void readFailures(final File file, final Map<String, List<FailedPolicyCheck>> failedFiles)
+			throws IOException {
+		try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty() || line.startsWith("#"))
+					continue;
+				int tab = line.indexOf('\t');
+				if (tab < 0)
+					throw new IOException("Malformed line in " + file + ": " + line);
+				failedFiles.computeIfAbsent(unescape(line.substring(0, tab)), k -> new ArrayList<>())
+						.add(new FailedPolicyCheck(unescape(line.substring(tab + 1))));
+			}
+		}
+	}
+
+	static String escape(final String value) {
+		return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+	}
+
+	static String unescape(final String value) {
+		StringBuilder builder = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '\\' && i + 1 < value.length()) {
+				char next = value.charAt(++i);
+				builder.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+			} else {
+				builder.append(c);
+			}
+		}
+		return builder.toString();
+	}
+
+	@Override
+	public String toString() {
+		return this.index + "/" + this.count;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * this.index + this.count;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof RegressionShard))
+			return false;
+		RegressionShard other = (RegressionShard) obj;
+		return this.index == other.index && this.count == other.count;
+	}
+}
@@ -0,0 +1,107 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa;
+
+import org.verapdf.pdfa.flavours.PDFAFlavour;
+
+import java.util.Comparator;
+import java.util.zip.ZipEntry;
+
+/**
+ * A single regression test, a PDF from the regression test files paired with
+ * the Schematron policy it's checked against and the flavour it's validated
+ * against.
+ *
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+public final class RegressionTestCase {
+	/**
+	 * Orders test cases largest PDF first, so the longest running files are
+	 * started first and workers finish at about the same time.
+	 */
+	public static final Comparator<RegressionTestCase> LARGEST_FIRST = Comparator
+			.comparingLong(RegressionTestCase::getSize).reversed().thenComparing(RegressionTestCase::getPdfName);
+
+	private final ZipEntry pdf;
+	private final ZipEntry policy;
+	private final PDFAFlavour flavour;
+
+	private RegressionTestCase(final ZipEntry pdf, final ZipEntry policy, final PDFAFlavour flavour) {
+		this.pdf = pdf;
+		this.policy = policy;
+		this.flavour = flavour;
+	}
+
+	/**
+	 * @param pdf
+	 *            the zip entry of the PDF
+	 * @param policy
+	 *            the zip entry of the PDF's Schematron policy
+	 * @param flavour
+	 *            the flavour to validate the PDF against, may be {@code null}
+	 *            for the flavour detected from the PDF
+	 * @return a RegressionTestCase for the passed values
+	 */
+	public static RegressionTestCase fromValues(final ZipEntry pdf, final ZipEntry policy, final PDFAFlavour flavour) {
+		if (pdf == null)
+			throw new NullPointerException("Parameter pdf can not be null");
+		if (policy == null)
+			throw new NullPointerException("Parameter policy can not be null");
+		return new RegressionTestCase(pdf, policy, flavour);
+	}
+
+	/**
+	 * @param pdfName
+	 *            the name of a PDF test file
+	 * @return the name of the Schematron policy for {@code pdfName}
+	 */
+	public static String policyName(final String pdfName) {
+		return pdfName.substring(0, pdfName.length() - ".pdf".length()) + ".sch";
+	}
+
+	public ZipEntry getPdf() {
+		return this.pdf;
+	}
+
+	public String getPdfName() {
+		return this.pdf.getName();
+	}
+
+	public ZipEntry getPolicy() {
+		return this.policy;
+	}
+
+	public PDFAFlavour getFlavour() {
+		return this.flavour;
+	}
+
+	/**
+	 * @return the uncompressed size of the PDF, or 0 if it's not known
+	 */
+	public long getSize() {
+		return Math.max(0, this.pdf.getSize());
+	}
+
+	@Override
+	public String toString() {
+		return getPdfName() + " [" + (this.flavour == null ? "auto" : this.flavour.getId()) + "]";
+	}
+}
@@ -1,35 +1,48 @@
 package org.verapdf.pdfa.qa;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.net.URL;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.Enumeration;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 import javax.xml.bind.JAXBException;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
+import javax.xml.transform.dom.DOMSource;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.verapdf.ReleaseDetails;
 import org.verapdf.core.VeraPDFException;
+import org.verapdf.core.utils.FileUtils;
 import org.verapdf.gf.foundry.VeraGreenfieldFoundryProvider;
 import org.verapdf.metadata.fixer.FixerFactory;
 import org.verapdf.metadata.fixer.MetadataFixerConfig;
@@ -40,93 +53,526 @@ import org.verapdf.pdfa.validation.profiles.ValidationProfile;
 import org.verapdf.pdfa.validation.validators.ValidatorConfig;
 import org.verapdf.pdfa.validation.validators.ValidatorConfigBuilder;
 import org.verapdf.policy.PolicyChecker;
+import org.verapdf.processor.BatchProcessingHandler;
 import org.verapdf.processor.BatchProcessor;
+import org.verapdf.processor.DomMrrHandler;
 import org.verapdf.processor.FormatOption;
 import org.verapdf.processor.ProcessorConfig;
 import org.verapdf.processor.ProcessorFactory;
 import org.verapdf.processor.TaskType;
+import org.verapdf.processor.reports.ItemDetails;
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
 public class RegressionTestingHelper {
+    /**
+     * System property holding the size in bytes above which MRR and SVRL
+     * reports are spilled from memory to temporary files, defaults to 8 MB.
+     */
+    public static final String SPILL_THRESHOLD_PROPERTY = "verapdf.regression.spill.threshold";
+    /**
+     * System property holding the number of worker threads regression files
+     * are checked on, defaults to the number of available processors.
+     */
+    public static final String THREADS_PROPERTY = "verapdf.regression.threads";
+    /**
+     * System property that when {@code true} hands MRR reports to the policy
+     * check as DOM documents instead of serialising and re-parsing them. It
+     * saves a marshal and a parse per file at the cost of holding each report
+     * in memory.
+     */
+    public static final String DIRECT_MRR_PROPERTY = "verapdf.regression.direct.mrr";
+    private static final int DEFAULT_SPILL_THRESHOLD = 8 * 1024 * 1024;
     private static final String testFilesZipUrl = "https://github.com/veraPDF/veraPDF-regression-tests/archive/refs/heads/integration.zip";
 
+    private final RegressionShard shard;
+    private final int threads;
+    private final boolean directMrr = Boolean.getBoolean(DIRECT_MRR_PROPERTY);
     private final ZipFile zipSource;
     private final Map<String, ZipEntry> pdfMap;
     private final Map<String, ZipEntry> schMap;
+    private final Map<String, ZipEntry> policies;
+    private final Set<String> orphanedPdfNames;
+    private final Map<String, String> pdfSha1s = new ConcurrentHashMap<>();
+    // Timed out checks that haven't yet stopped
+    private final AtomicInteger abandonedChecks = new AtomicInteger();
+    private volatile RegressionResultStore resultStore;
+    private volatile RegressionReportSink reportSink;
+    private volatile RegressionExecutionOptions executionOptions = RegressionExecutionOptions.DEFAULT;
 
     public RegressionTestingHelper(boolean isWcag) throws IOException {
+        this(isWcag, RegressionShard.ALL, Integer.getInteger(THREADS_PROPERTY,
+                Runtime.getRuntime().availableProcessors()).intValue());
+    }
+
+    /**
+     * @param isWcag
+     *            {@code true} for the WCAG test files, {@code false} for the PDF
+     *            test files
+     * @param shard
+     *            the shard of the test files to check
+     * @param threads
+     *            the number of worker threads files are checked on
+     */
+    public RegressionTestingHelper(boolean isWcag, RegressionShard shard, int threads) throws IOException {
+        if (shard == null)
+            throw new NullPointerException("Parameter shard can not be null");
+        if (threads < 1)
+            throw new IllegalArgumentException("Parameter threads=" + threads + ", must be > 0");
         VeraGreenfieldFoundryProvider.initialise();
         printDependencies();
         File zipFile;
         try {
-            zipFile = AbstractTestCorpus.createTempFileFromCorpus(new URL(testFilesZipUrl), "regression");
+            zipFile = CorpusCache.defaultInstance().fetch(new URL(testFilesZipUrl));
         } catch (IOException e) {
             throw new IllegalStateException(e);
         }
+        this.shard = shard;
+        this.threads = threads;
         this.pdfMap = new HashMap<>();
         this.schMap = new HashMap<>();
+        this.policies = new HashMap<>();
+        this.orphanedPdfNames = new TreeSet<>();
         this.itemsMapFromZipSource(zipFile, isWcag);
         this.zipSource = new ZipFile(zipFile);
     }
 
+    /**
+     * @param resultStore
+     *            the store outcomes are replayed from and recorded to, so
+     *            unchanged files aren't checked again, or {@code null} to check
+     *            every file
+     */
+    public void setResultStore(RegressionResultStore resultStore) {
+        this.resultStore = resultStore;
+    }
+
+    /**
+     * @param reportSink
+     *            the sink each file's outcome is reported to as soon as it's
+     *            checked, or {@code null} for no report
+     */
+    public void setReportSink(RegressionReportSink reportSink) {
+        this.reportSink = reportSink;
+    }
+
+    /**
+     * @param executionOptions
+     *            the time budget, failure limit and triage mode for later
+     *            runs
+     */
+    public void setExecutionOptions(RegressionExecutionOptions executionOptions) {
+        if (executionOptions == null)
+            throw new NullPointerException("Parameter executionOptions can not be null");
+        this.executionOptions = executionOptions;
+    }
+
+    /**
+     * @return the names of the PDF test files in this helper's shard
+     */
     public Set<String> getPdfFileNames() {
         return pdfMap.keySet();
     }
 
+    /**
+     * @return the names of the PDF test files in this helper's shard that have
+     *         no Schematron policy
+     */
+    public Set<String> getOrphanedPdfFileNames() {
+        return Collections.unmodifiableSet(this.orphanedPdfNames);
+    }
+
     public void getFailedPolicyComplianceFiles(Map<String, List<FailedPolicyCheck>> failedFiles, PDFAFlavour flavour,
             ValidationProfile customProfile, Set<String> fileNames) throws JAXBException, IOException {
+        getFailedPolicyComplianceFiles(failedFiles, Collections.singletonMap(flavour, fileNames), customProfile);
+    }
+
+    /**
+     * Validates the files listed for each flavour and checks the reports
+     * against the files' policies, adding the files that fail to
+     * {@code failedFiles}. All of the files for all of the flavours are fanned
+     * out across the helper's worker threads. Each worker has its own
+     * processors and report buffers, processors are pooled across calls so
+     * they stay warm. Files outside the helper's shard are skipped, files
+     * without a policy fail without being validated. The largest files are
+     * queued first so the workers finish at about the same time.
+     */
+    public void getFailedPolicyComplianceFiles(Map<String, List<FailedPolicyCheck>> failedFiles,
+            Map<PDFAFlavour, Set<String>> filesByFlavour, ValidationProfile customProfile)
+            throws JAXBException, IOException {
+        Map<PDFAFlavour, String> profileKeys = new HashMap<>();
+        Map<String, List<FailedPolicyCheck>> failures = new ConcurrentHashMap<>();
+        List<RegressionTestCase> testCases = new ArrayList<>();
+        String customProfileKey = customProfile == null ? null : ProcessorPool.defaultInstance().profileKey(customProfile);
+        for (Map.Entry<PDFAFlavour, Set<String>> entry : filesByFlavour.entrySet()) {
+            profileKeys.put(entry.getKey(), customProfileKey != null ? customProfileKey
+                    : "flavour " + (entry.getKey() == null ? PDFAFlavour.NO_FLAVOUR : entry.getKey()).getId());
+            for (String pdfName : entry.getValue()) {
+                if (!this.shard.contains(pdfName)) {
+                    continue;
+                }
+                ZipEntry pdfEntry = this.pdfMap.get(pdfName);
+                ZipEntry policy = this.policies.get(pdfName);
+                if (pdfEntry == null || policy == null) {
+                    // Unpaired files fail straight away rather than taking a worker
+                    List<FailedPolicyCheck> failedChecks = Collections.singletonList(new FailedPolicyCheck(
+                            pdfEntry == null ? "pdf file is not found" : "sch file is not found"));
+                    failures.put(pdfName, failedChecks);
+                    if (this.reportSink != null) {
+                        this.reportSink.fileChecked(pdfName, entry.getKey(), 0, false, failedChecks);
+                    }
+                    continue;
+                }
+                testCases.add(RegressionTestCase.fromValues(pdfEntry, policy, entry.getKey()));
+            }
+        }
+        testCases.sort(RegressionTestCase.LARGEST_FIRST);
+        Queue<RegressionTestCase> tasks = new ConcurrentLinkedQueue<>(testCases);
+        AtomicInteger replayed = new AtomicInteger();
+        // Only files that were checked count towards the failure limit, not unpaired ones
+        AtomicInteger policyFailures = new AtomicInteger();
+        int workers = Math.max(1, Math.min(this.threads, tasks.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                futures.add(executor.submit(() -> {
+                    new Worker(customProfile, profileKeys, replayed, policyFailures).drain(tasks, failures);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while checking regression files", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Regression worker failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        if (!tasks.isEmpty()) {
+            System.out.println("Stopped after " + policyFailures.get() + " failed files, " + tasks.size()
+                    + " files weren't checked");
+        }
+        if (this.resultStore != null) {
+            System.out.println("Replayed " + replayed.get() + " stored regression results");
+            try {
+                this.resultStore.save();
+            } catch (IOException e) {
+                System.err.println("Couldn't save regression results: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+        failedFiles.putAll(failures);
+    }
+
+    private static ProcessorConfig processorConfig(PDFAFlavour flavour, ValidationProfile customProfile,
+            boolean recordPasses) {
         MetadataFixerConfig fixConf = FixerFactory.configFromValues("test");
         ValidatorConfig validatorConfig = new ValidatorConfigBuilder().flavour(flavour)
-                .defaultFlavour(PDFAFlavour.NO_FLAVOUR).recordPasses(true).maxFails(0)
+                .defaultFlavour(PDFAFlavour.NO_FLAVOUR).recordPasses(recordPasses).maxFails(0)
                 .isLogsEnabled(true).showErrorMessages(true).build();
-        ProcessorConfig processorConfig = ProcessorFactory.fromValues(validatorConfig, null,
+        return ProcessorFactory.fromValues(validatorConfig, null,
                 null, fixConf, EnumSet.of(TaskType.VALIDATE),
                 customProfile == null ? Profiles.defaultProfile() : customProfile, null);
-        BatchProcessor processor = ProcessorFactory.fileBatchProcessor(processorConfig);
+    }
 
-        File tempSchFile = File.createTempFile("veraPDF", ".sch");
-        File tempPdfFile = File.createTempFile("veraPDF", ".pdf");
-        File tempMrrFile = File.createTempFile("veraPDF", ".mrr");
-        File tempResultFile = File.createTempFile("veraPDF", ".xml");
-        List<File> files = new ArrayList<>();
-        files.add(tempPdfFile);
+    /**
+     * The outcome of validating a file and checking it against its policy.
+     */
+    private static final class Outcome {
+        final List<FailedPolicyCheck> failedChecks;
+        // false if the checks didn't complete, so the outcome mustn't be stored
+        final boolean processed;
+
+        Outcome(List<FailedPolicyCheck> failedChecks, boolean processed) {
+            this.failedChecks = failedChecks;
+            this.processed = processed;
+        }
+    }
 
-        for (String pdfName : fileNames) {
+    /**
+     * Checks files taken from a shared queue until it's empty, with its own
+     * report buffers and its own processor per flavour, borrowed from the
+     * shared {@link ProcessorPool} and returned once the queue is empty.
+     * <p>
+     * With a time budget each file is checked on a separate thread. A file
+     * that overruns its budget fails and the thread checking it is
+     * interrupted. The check stops at its next read of the PDF or between its
+     * validation, policy and SVRL steps, meanwhile the worker carries on with
+     * a fresh thread, processor and buffers. The run fails if more timed out
+     * checks are still running than the options allow.
+     */
+    private final class Worker {
+        private final ValidationProfile customProfile;
+        private final Map<PDFAFlavour, String> profileKeys;
+        private final AtomicInteger replayed;
+        private final AtomicInteger policyFailures;
+        private final RegressionExecutionOptions options = executionOptions;
+        private final Map<String, BatchProcessor> processors = new HashMap<>();
+        private final int spillThreshold;
+        private SpillingOutputStream mrrBuffer;
+        private SpillingOutputStream svrlBuffer;
+        private ExecutorService documentExecutor;
+
+        Worker(ValidationProfile customProfile, Map<PDFAFlavour, String> profileKeys, AtomicInteger replayed,
+                AtomicInteger policyFailures) {
+            this.customProfile = customProfile;
+            this.profileKeys = profileKeys;
+            this.replayed = replayed;
+            this.policyFailures = policyFailures;
+            this.spillThreshold = Integer.getInteger(SPILL_THRESHOLD_PROPERTY, DEFAULT_SPILL_THRESHOLD).intValue();
+            this.mrrBuffer = new SpillingOutputStream(this.spillThreshold, ".mrr");
+            this.svrlBuffer = new SpillingOutputStream(this.spillThreshold, ".xml");
+        }
+
+        void drain(Queue<RegressionTestCase> tasks, Map<String, List<FailedPolicyCheck>> failures)
+                throws IOException {
+            int maxFailures = this.options.getMaxFailures();
+            try {
+                RegressionTestCase task;
+                while ((maxFailures == 0 || this.policyFailures.get() < maxFailures)
+                        && (task = tasks.poll()) != null) {
+                    List<FailedPolicyCheck> failedChecks = check(task);
+                    if (failedChecks != null) {
+                        this.policyFailures.incrementAndGet();
+                        failures.put(task.getPdfName(), failedChecks);
+                    }
+                }
+            } finally {
+                for (Map.Entry<String, BatchProcessor> processor : this.processors.entrySet()) {
+                    ProcessorPool.defaultInstance().release(processor.getKey(), processor.getValue());
+                }
+                if (this.documentExecutor != null) {
+                    this.documentExecutor.shutdownNow();
+                }
+                this.mrrBuffer.dispose();
+                this.svrlBuffer.dispose();
+            }
+        }
+
+        private String poolKey(PDFAFlavour flavour, boolean recordPasses) {
+            return "regression " + (flavour == null ? PDFAFlavour.NO_FLAVOUR : flavour).getId() + " "
+                    + this.profileKeys.get(flavour) + (recordPasses ? "" : " no passes");
+        }
+
+        private List<FailedPolicyCheck> check(RegressionTestCase testCase) throws IOException {
+            PDFAFlavour flavour = testCase.getFlavour();
+            String pdfName = testCase.getPdfName();
             System.out.println(pdfName);
-            try (OutputStream reportStream = new FileOutputStream(tempMrrFile)) {
-                copyInputStreamToFile(this.getPdfStream(pdfName), tempPdfFile);
-                processor.process(files, ProcessorFactory.getHandler(FormatOption.MRR, false, reportStream, false));
-                reportStream.flush();
+            long start = System.nanoTime();
+            byte[] schematron;
+            try (InputStream schStream = getStreamFromReference(testCase.getPolicy())) {
+                schematron = readBytes(schStream);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return report(flavour, pdfName, start, false,
+                        Collections.singletonList(new FailedPolicyCheck(e.getMessage())));
+            }
+            String key = null;
+            if (resultStore != null) {
+                key = resultStore.keyFor(pdfSha1(pdfName), DigestUtils.sha1Hex(schematron), this.profileKeys.get(flavour));
+                List<FailedPolicyCheck> stored = resultStore.get(key);
+                if (stored != null) {
+                    this.replayed.incrementAndGet();
+                    return report(flavour, pdfName, start, true, stored.isEmpty() ? null : stored);
+                }
+            }
+            boolean recordPasses = this.options.recordPasses(schematron);
+            String poolKey = poolKey(flavour, recordPasses);
+            BatchProcessor processor = this.processors.computeIfAbsent(poolKey, k -> ProcessorPool.defaultInstance()
+                    .acquire(k, () -> processorConfig(flavour, this.customProfile, recordPasses)));
+            Outcome outcome = this.options.getTimeoutMillis() > 0 ? checkWithBudget(processor, poolKey, testCase, schematron)
+                    : validateAndCheck(processor, testCase, schematron, this.mrrBuffer, this.svrlBuffer);
+            if (key != null && outcome.processed) {
+                resultStore.put(key, outcome.failedChecks);
+            }
+            return report(flavour, pdfName, start, false, outcome.failedChecks);
+        }
+
+        private Outcome checkWithBudget(BatchProcessor processor, String poolKey, RegressionTestCase testCase,
+                byte[] schematron) throws IOException {
+            if (this.documentExecutor == null) {
+                this.documentExecutor = Executors.newSingleThreadExecutor(task -> {
+                    Thread thread = new Thread(task, "regression-document");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            SpillingOutputStream mrr = this.mrrBuffer;
+            SpillingOutputStream svrl = this.svrlBuffer;
+            Future<Outcome> future = this.documentExecutor
+                    .submit(() -> validateAndCheck(processor, testCase, schematron, mrr, svrl));
+            long timeoutMillis = this.options.getTimeoutMillis();
+            try {
+                return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                System.out.println(testCase.getPdfName() + " timed out after " + timeoutMillis + " ms");
+                abandon(poolKey);
+                return new Outcome(Collections.singletonList(
+                        new FailedPolicyCheck("Timed out after " + timeoutMillis + " ms")), false);
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while checking " + testCase.getPdfName());
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Checking " + testCase.getPdfName() + " failed", e.getCause());
+            }
+        }
+
+        /**
+         * Leaves an interrupted file to stop on its own thread, dropping the
+         * processor and buffers it's using. The buffers are disposed of once
+         * it has stopped.
+         *
+         * @throws IOException
+         *             if more timed out checks are still running than the
+         *             options allow
+         */
+        private void abandon(String poolKey) throws IOException {
+            this.processors.remove(poolKey);
+            SpillingOutputStream mrr = this.mrrBuffer;
+            SpillingOutputStream svrl = this.svrlBuffer;
+            int running = abandonedChecks.incrementAndGet();
+            this.documentExecutor.submit(() -> {
+                abandonedChecks.decrementAndGet();
+                mrr.dispose();
+                svrl.dispose();
+                return null;
+            });
+            this.documentExecutor.shutdown();
+            this.documentExecutor = null;
+            this.mrrBuffer = new SpillingOutputStream(this.spillThreshold, ".mrr");
+            this.svrlBuffer = new SpillingOutputStream(this.spillThreshold, ".xml");
+            if (running > this.options.getMaxAbandoned()) {
+                throw new IOException(running + " timed out checks are still running, more than the limit of "
+                        + this.options.getMaxAbandoned());
+            }
+        }
+
+        private Outcome validateAndCheck(BatchProcessor processor, RegressionTestCase testCase, byte[] schematron,
+                SpillingOutputStream mrrBuffer, SpillingOutputStream svrlBuffer) throws IOException {
+            List<FailedPolicyCheck> failedChecks = null;
+            boolean processed = true;
+            mrrBuffer.reset();
+            svrlBuffer.reset();
+            Document mrrDocument = null;
+            ZipEntry pdfEntry = testCase.getPdf();
+            try (InputStream pdfStream = new InterruptibleInputStream(getStreamFromReference(pdfEntry))) {
+                BatchProcessingHandler handler;
+                if (directMrr) {
+                    DomMrrHandler domHandler = DomMrrHandler.newInstance(false);
+                    mrrDocument = domHandler.getDocument();
+                    handler = domHandler;
+                } else {
+                    handler = ProcessorFactory.getHandler(FormatOption.MRR, false, mrrBuffer, false);
+                }
+                processor.process(ItemDetails.fromValues(testCase.getPdfName(), pdfEntry.getSize()), pdfStream,
+                        handler);
+                mrrBuffer.flush();
+            } catch (InterruptedIOException e) {
+                throw e;
             } catch (IOException | VeraPDFException e) {
-                failedFiles.put(pdfName, Collections.singletonList(new FailedPolicyCheck(e.getMessage())));
+                failedChecks = Collections.singletonList(new FailedPolicyCheck(e.getMessage()));
+                processed = false;
                 e.printStackTrace();
             }
+            checkInterrupted(testCase);
             try {
-                String schName = pdfName.substring(0, pdfName.length() - 3) + "sch";
-                ZipEntry schZipEntry = this.schMap.get(schName);
-                if (schZipEntry == null) {
-                    throw new IOException("sch file is not found");
+                if (mrrDocument != null) {
+                    PolicyTemplatesCache.defaultInstance().applyPolicy(schematron, new DOMSource(mrrDocument),
+                            svrlBuffer);
+                } else {
+                    try (InputStream mrrStream = mrrBuffer.toInputStream()) {
+                        PolicyTemplatesCache.defaultInstance().applyPolicy(schematron, mrrStream, svrlBuffer);
+                    }
                 }
-                copyInputStreamToFile(this.getStreamFromReference(schZipEntry), tempSchFile);
-                applyPolicy(tempSchFile, tempMrrFile, tempResultFile);
-                int failedPolicyJobsCount = countFailedPolicyJobs(tempResultFile);
-                if (failedPolicyJobsCount > 0) {
-                    failedFiles.put(pdfName, getFailedChecks(tempResultFile, tempMrrFile));
+                checkInterrupted(testCase);
+                List<PolicyReportReader.FailedAssert> failedAsserts;
+                try (InputStream svrlStream = svrlBuffer.toInputStream()) {
+                    failedAsserts = PolicyReportReader.failedAsserts(svrlStream);
                 }
+                if (!failedAsserts.isEmpty()) {
+                    checkInterrupted(testCase);
+                    failedChecks = mrrDocument != null ? PolicyReportReader.failedChecks(failedAsserts, mrrDocument)
+                            : PolicyReportReader.failedChecks(failedAsserts, mrrBuffer::toInputStream);
+                }
+            } catch (InterruptedIOException e) {
+                throw e;
             } catch (Exception e) {
-                failedFiles.put(pdfName, Collections.singletonList(new FailedPolicyCheck(e.getMessage())));
+                failedChecks = Collections.singletonList(new FailedPolicyCheck(e.getMessage()));
+                processed = false;
                 e.printStackTrace();
             }
+            return new Outcome(failedChecks, processed);
+        }
+
+        private void checkInterrupted(RegressionTestCase testCase) throws InterruptedIOException {
+            if (Thread.interrupted()) {
+                throw new InterruptedIOException("Checking " + testCase.getPdfName() + " was interrupted");
+            }
         }
 
-        tempSchFile.deleteOnExit();
-        tempPdfFile.deleteOnExit();
-        tempMrrFile.deleteOnExit();
-        tempResultFile.deleteOnExit();
+        private List<FailedPolicyCheck> report(PDFAFlavour flavour, String pdfName, long start, boolean replayed,
+                List<FailedPolicyCheck> failedChecks) {
+            RegressionReportSink sink = reportSink;
+            if (sink != null) {
+                sink.fileChecked(pdfName, flavour, (System.nanoTime() - start) / 1_000_000, replayed,
+                        failedChecks == null ? Collections.emptyList() : failedChecks);
+            }
+            return failedChecks;
+        }
+    }
+
+    /**
+     * Fails reads once the reading thread has been interrupted, so a timed out
+     * check stops while the PDF is being read.
+     */
+    private static final class InterruptibleInputStream extends FilterInputStream {
+        InterruptibleInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkInterrupted();
+            return super.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            checkInterrupted();
+            return super.read(b, off, len);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            checkInterrupted();
+            return super.skip(n);
+        }
+
+        private static void checkInterrupted() throws InterruptedIOException {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Reading the PDF was interrupted");
+            }
+        }
+    }
+
+    private String pdfSha1(String pdfName) throws IOException {
+        String sha1 = this.pdfSha1s.get(pdfName);
+        if (sha1 == null) {
+            try (InputStream pdfStream = this.getStreamFromReference(this.pdfMap.get(pdfName))) {
+                sha1 = DigestUtils.sha1Hex(pdfStream);
+            }
+            this.pdfSha1s.put(pdfName, sha1);
+        }
+        return sha1;
     }
 
     public static void printResult(Map<String, List<FailedPolicyCheck>> failedFiles) {
@@ -144,7 +590,13 @@ public class RegressionTestingHelper {
         }
     }
 
+    /**
+     * Indexes the test files in the zip, pairing each PDF in the shard with its
+     * Schematron policy. PDFs without a policy and policies without a PDF are
+     * reported straight away.
+     */
     private void itemsMapFromZipSource(File zipFile, boolean isWcag) throws IOException {
+        Set<String> allPolicyNames = new HashSet<>();
         try (ZipFile zipSource = new ZipFile(zipFile)) {
             Enumeration<? extends ZipEntry> entries = zipSource.entries();
             while (entries.hasMoreElements()) {
@@ -152,6 +604,10 @@ public class RegressionTestingHelper {
                 String entryName = entry.getName();
                 if ((isWcag == entryName.contains("WCAG_2_2")) && !entry.isDirectory()) {
                     if (entryName.endsWith(".pdf")) {
+                        allPolicyNames.add(RegressionTestCase.policyName(entryName));
+                        if (!this.shard.contains(entryName)) {
+                            continue;
+                        }
                         this.pdfMap.put(entryName, entry);
                     } else if (entryName.endsWith(".sch")) {
                         this.schMap.put(entryName, entry);
@@ -159,14 +615,22 @@ public class RegressionTestingHelper {
                 }
             }
         }
-    }
-
-    private InputStream getPdfStream(String pdfName) throws IOException {
-        return this.getStreamFromReference(this.pdfMap.get(pdfName));
-    }
-
-    private InputStream getSchStream(String schName) throws IOException {
-        return this.getStreamFromReference(this.schMap.get(schName));
+        for (Map.Entry<String, ZipEntry> pdf : this.pdfMap.entrySet()) {
+            ZipEntry policy = this.schMap.get(RegressionTestCase.policyName(pdf.getKey()));
+            if (policy != null) {
+                this.policies.put(pdf.getKey(), policy);
+            } else {
+                this.orphanedPdfNames.add(pdf.getKey());
+            }
+        }
+        for (String pdfName : this.orphanedPdfNames) {
+            System.out.println("No policy for test file " + pdfName);
+        }
+        for (String schName : new TreeSet<>(this.schMap.keySet())) {
+            if (!allPolicyNames.contains(schName)) {
+                System.out.println("No test file for policy " + schName);
+            }
+        }
     }
 
     private InputStream getStreamFromReference(ZipEntry reference) throws IOException {
@@ -185,49 +649,42 @@ public class RegressionTestingHelper {
 
     public static int countFailedPolicyJobs(File xmlReport)
             throws IOException, SAXException, ParserConfigurationException, XPathExpressionException {
-        DocumentBuilder documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-        Document document = documentBuilder.parse(xmlReport);
-        return document.getElementsByTagName("svrl:failed-assert").getLength();
+        try (InputStream svrlStream = new FileInputStream(xmlReport)) {
+            return PolicyReportReader.failedAsserts(svrlStream).size();
+        }
     }
 
     public static List<FailedPolicyCheck> getFailedChecks(File xmlReport, File tempMrrFile)
             throws IOException, SAXException, ParserConfigurationException, XPathExpressionException {
-        DocumentBuilder documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-        Document document = documentBuilder.parse(xmlReport);
-        Document mrrDocument = documentBuilder.parse(tempMrrFile);
-        XPath path = XPathFactory.newInstance().newXPath();
-        List<FailedPolicyCheck> failedChecks = new LinkedList<>();
-        NodeList list = document.getElementsByTagName("svrl:failed-assert");
-        for (int i = 0; i < list.getLength(); i++) {
-            Element check = (Element) list.item(i);
-            String test = check.getAttribute("test");
-            String messageValue = getProperty(check, "svrl:text").getTextContent();
-            Element node = (Element) path.evaluate(check.getAttribute("location"), mrrDocument, XPathConstants.NODE);
-            failedChecks.add(new FailedPolicyCheck(node, messageValue, test));
-        }
-        return failedChecks;
+        List<PolicyReportReader.FailedAssert> failedAsserts;
+        try (InputStream svrlStream = new FileInputStream(xmlReport)) {
+            failedAsserts = PolicyReportReader.failedAsserts(svrlStream);
+        }
+        return PolicyReportReader.failedChecks(failedAsserts, () -> new FileInputStream(tempMrrFile));
     }
 
     public static void applyPolicy(File policyFile, File tempMrrFile, File tempResultFile)
             throws IOException, VeraPDFException {
         try (InputStream mrrIs = new FileInputStream(tempMrrFile);
                 OutputStream policyResultOs = new FileOutputStream(tempResultFile)) {
-            PolicyChecker.applyPolicy(policyFile, mrrIs, policyResultOs);
+            // Only Schematron needs compiling, XSLT policies and unsupported extensions are left to the checker
+            if ("sch".equalsIgnoreCase(FileUtils.extFromFileName(policyFile.getName()))) {
+                PolicyTemplatesCache.defaultInstance().applyPolicy(Files.readAllBytes(policyFile.toPath()), mrrIs,
+                        policyResultOs);
+            } else {
+                PolicyChecker.applyPolicy(policyFile, mrrIs, policyResultOs);
+            }
         }
     }
 
-    private static Node getProperty(Node parent, String propertyName) {
-        if (parent == null) {
-            return null;
-        }
-        NodeList childNodes = parent.getChildNodes();
-        for (int i = 0; i < childNodes.getLength(); i++) {
-            Node item = childNodes.item(i);
-            if (propertyName.equals(item.getNodeName())) {
-                return item;
-            }
+    private static byte[] readBytes(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] bytes = new byte[2048];
+        int read;
+        while ((read = inputStream.read(bytes)) != -1) {
+            outputStream.write(bytes, 0, read);
         }
-        return null;
+        return outputStream.toByteArray();
     }
 
     public static void printDependencies() {
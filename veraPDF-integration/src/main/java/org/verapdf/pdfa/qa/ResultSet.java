@@ -80,15 +80,16 @@ public interface ResultSet {
     public static final class Result {
         private final CorpusItemId corpusItemId;
         private final ValidationResult result;
+        private static final long MEGABYTE = 1024 * 1024;
         private final AuditDuration duration;
-        private final long memoryUsed;
+        private final long bytesAllocated;
 
         Result(final CorpusItemId corpusItemId, final ValidationResult result, final AuditDuration duration,
-                long memoryUsed) {
+                long bytesAllocated) {
             this.corpusItemId = corpusItemId;
             this.result = result;
             this.duration = duration;
-            this.memoryUsed = memoryUsed;
+            this.bytesAllocated = bytesAllocated;
         }
 
         /**
@@ -125,8 +126,24 @@ public interface ResultSet {
             return this.duration.getDuration();
         }
 
+        public long getDurationMillis() {
+            return this.duration.getDifference();
+        }
+
+        /**
+         * @return the number of megabytes allocated parsing and validating the
+         *         item, or -1 if allocation couldn't be measured
+         */
         public long getMemoryUsed() {
-            return this.memoryUsed;
+            return this.bytesAllocated < 0 ? -1 : this.bytesAllocated / MEGABYTE;
+        }
+
+        /**
+         * @return the number of bytes allocated parsing and validating the
+         *         item, or -1 if allocation couldn't be measured
+         */
+        public long getBytesAllocated() {
+            return this.bytesAllocated;
         }
 
         /**
@@ -181,6 +198,7 @@ public interface ResultSet {
      */
     public static class Incomplete {
         private final CorpusItemId corpusItemId;
+        private final String itemName;
         private final Throwable cause;
 
         /**
@@ -188,7 +206,20 @@ public interface ResultSet {
          * @param cause
          */
         public Incomplete(final CorpusItemId corpusItemId, final Throwable cause) {
+            this(corpusItemId, corpusItemId == null ? null : corpusItemId.getName(), cause);
+        }
+
+        /**
+         * @param corpusItemId
+         *            the id of the item, null if the item failed before it
+         *            could be identified
+         * @param itemName
+         *            the name of the item in the corpus
+         * @param cause
+         */
+        public Incomplete(final CorpusItemId corpusItemId, final String itemName, final Throwable cause) {
             this.corpusItemId = corpusItemId;
+            this.itemName = itemName;
             this.cause = cause;
         }
 
@@ -199,6 +230,14 @@ public interface ResultSet {
             return this.corpusItemId;
         }
 
+        /**
+         * @return the name of the item in the corpus, available even when the
+         *         item couldn't be identified
+         */
+        public String getItemName() {
+            return this.itemName;
+        }
+
         /**
          * @return the cause
          */
@@ -215,6 +254,7 @@ public interface ResultSet {
             int result = 1;
             result = prime * result + ((this.cause == null) ? 0 : this.cause.hashCode());
             result = prime * result + ((this.corpusItemId == null) ? 0 : this.corpusItemId.hashCode());
+            result = prime * result + ((this.itemName == null) ? 0 : this.itemName.hashCode());
             return result;
         }
 
@@ -240,6 +280,11 @@ public interface ResultSet {
                     return false;
             } else if (!this.corpusItemId.equals(other.corpusItemId))
                 return false;
+            if (this.itemName == null) {
+                if (other.itemName != null)
+                    return false;
+            } else if (!this.itemName.equals(other.itemName))
+                return false;
             return true;
         }
 
@@ -248,7 +293,7 @@ public interface ResultSet {
          */
         @Override
         public String toString() {
-            return "Incomplete [corpusItemId=" + this.corpusItemId + ", cause=" + this.cause + "]";
+            return "Incomplete [corpusItemId=" + this.corpusItemId + ", itemName=" + this.itemName + ", cause=" + this.cause + "]";
         }
     }
 
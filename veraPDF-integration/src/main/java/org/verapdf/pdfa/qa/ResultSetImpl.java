@@ -18,30 +18,20 @@
 package org.verapdf.pdfa.qa;
 
 import org.verapdf.component.AuditDuration;
-import org.verapdf.component.Components;
 import org.verapdf.pdfa.Foundries;
-import org.verapdf.pdfa.PDFAParser;
 import org.verapdf.pdfa.PDFAValidator;
 import org.verapdf.pdfa.flavours.PDFAFlavour;
-import org.verapdf.pdfa.flavours.PDFFlavours;
-import org.verapdf.pdfa.results.ValidationResult;
-import org.verapdf.pdfa.validation.profiles.Profiles;
 import org.verapdf.pdfa.validation.profiles.ValidationProfile;
 
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlElementWrapper;
 import javax.xml.bind.annotation.adapters.XmlAdapter;
-import java.lang.management.ManagementFactory;
 import java.util.*;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 /**
  * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
  */
 public class ResultSetImpl implements ResultSet {
-	private static final int MEGABYTE = (1024 * 1024);
-	private static final Logger LOG = Logger.getLogger(ResultSetImpl.class.getCanonicalName());
 	@XmlElement(name = "resultDetails")
 	private final ResultSetDetails details = ResultSetDetailsImpl
 			.getNewInstance(Foundries.defaultInstance().getDetails());
@@ -60,14 +50,24 @@ public class ResultSetImpl implements ResultSet {
 	@XmlElement(name = "exception")
 	private final Set<Incomplete> exceptions;
 
-	private ResultSetImpl(final CorpusDetails corpusDetails, final String corpusId, final ValidationProfile profile, final Set<Result> results,
-			final Set<Incomplete> exceptions, final AuditDuration duration, final long memoryUsed) {
+	ResultSetImpl(final CorpusDetails corpusDetails, final String corpusId, final ValidationProfile profile, final Set<Result> results,
+			final Set<Incomplete> exceptions, final AuditDuration duration, final long memoryUsed, final long peakRss) {
 		this.corpusDetails = corpusDetails;
         this.corpusId = corpusId;
 		this.profile = profile;
 		this.results = new TreeSet<>(new ResultComparator());
 		this.results.addAll(results);
-		this.summary = ResultSetSummaryImpl.fromResults(results, exceptions, duration, memoryUsed);
+		this.summary = ResultSetSummaryImpl.fromResults(results, exceptions, duration, memoryUsed, peakRss);
+		this.exceptions = new HashSet<>(exceptions);
+	}
+
+	ResultSetImpl(final CorpusDetails corpusDetails, final String corpusId, final ValidationProfile profile,
+			final ResultSetSummary summary, final Set<Incomplete> exceptions) {
+		this.corpusDetails = corpusDetails;
+		this.corpusId = corpusId;
+		this.profile = profile;
+		this.results = new TreeSet<>(new ResultComparator());
+		this.summary = summary;
 		this.exceptions = new HashSet<>(exceptions);
 	}
 
@@ -192,42 +192,15 @@ public class ResultSetImpl implements ResultSet {
 	}
 
 	/**
+	 * Validates {@code corpus} serially on the calling thread, see
+	 * {@link CorpusValidator} for parallel validation.
+	 *
 	 * @param corpus
 	 * @param validator
 	 * @return
 	 */
 	public static ResultSet validateCorpus(final TestCorpus corpus, final PDFAValidator validator, final PDFAFlavour flavour) {
-		Set<Result> results = new HashSet<>();
-		Set<Incomplete> exceptions = new HashSet<>();
-		Components.Timer batchTimer = Components.Timer.start();
-		long maxMemUse = 0;
-		for (String itemName : corpus.getItemNames()) {
-			System.out.println(itemName);
-			CorpusItemId id = null;
-			Components.Timer jobTimer = Components.Timer.start();
-			try (PDFAParser loader = Foundries.defaultInstance().createParser(corpus.getItemStream(itemName), flavour);
-				 PDFAValidator newValidator = flavour != PDFAFlavour.NO_FLAVOUR ? null : Foundries.defaultInstance().createValidator(loader.getFlavour(), 100, false, true, false)) {
-				PDFAValidator currentValidator = flavour != PDFAFlavour.NO_FLAVOUR ? validator : newValidator;
-				try {
-					id = CorpusItemIdImpl.fromFileName(currentValidator.getProfile().getPDFAFlavour().getPart(), itemName, "");
-				} catch (IllegalArgumentException excep) {
-					LOG.log(Level.FINE, "Problem generating ID for corpus item:" + itemName, excep);
-				}
-				ValidationResult result = currentValidator.validate(loader);
-				long memUsed = (ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / MEGABYTE);
-					maxMemUse = Math.max(memUsed, maxMemUse);
-				results.add(new Result(id, result, jobTimer.stop(), memUsed));
-			} catch (Throwable e) {
-				LOG.log(Level.SEVERE, String.format("Caught throwable testing %s from corpus %s", itemName,
-						corpus.getDetails().getName()));
-				LOG.log(Level.SEVERE, e.getClass().getName());
-				LOG.log(Level.SEVERE, e.getMessage());
-				exceptions.add(new Incomplete(id, e));
-			}
-		}
-		return new ResultSetImpl(corpus.getDetails(), corpus.getType().getId(), flavour != PDFAFlavour.NO_FLAVOUR ? 
-				validator.getProfile() : Profiles.defaultProfile(), results, exceptions, batchTimer.stop(),
-				maxMemUse);
+		return CorpusValidator.validateSerially(corpus, validator, flavour);
 	}
 
 	static class Adapter extends XmlAdapter<ResultSetImpl, ResultSet> {
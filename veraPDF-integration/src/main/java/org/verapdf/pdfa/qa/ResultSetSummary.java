@@ -44,5 +44,18 @@ public interface ResultSetSummary {
     public int inapplicableCases();
     public int exceptions();
     public AuditDuration getDuration();
+    /**
+     * @return the largest number of megabytes allocated validating a single
+     *         item, or -1 if allocation couldn't be measured
+     */
     public long getMemoryUsed();
+    /**
+     * @return the peak resident set size in megabytes while the result set was
+     *         produced, or -1 if it wasn't sampled
+     */
+    public long getPeakRss();
+    /**
+     * @return {@code true} if the peak resident set size was sampled
+     */
+    public boolean isPeakRssSampled();
 }
@@ -45,11 +45,12 @@ public final class ResultSetSummaryImpl implements ResultSetSummary {
     private final int exceptions;
     private final AuditDuration duration;
     private final long memoryUsed;
+    private final long peakRss;
 
     private ResultSetSummaryImpl(final boolean isPassed,
             final int invalidCases,final int invalidCasesFailed, final int validCases, final int validCasesFailed,
             final int undefinedCases, final int inapplicableCases,
-            final int exceptions, final AuditDuration duration, final long memoryUsed) {
+            final int exceptions, final AuditDuration duration, final long memoryUsed, final long peakRss) {
         super();
         this.isPassed = isPassed;
         this.invalidCases = invalidCases;
@@ -63,6 +64,7 @@ public final class ResultSetSummaryImpl implements ResultSetSummary {
         this.exceptions = exceptions;
         this.duration = duration;
         this.memoryUsed = memoryUsed;
+        this.peakRss = peakRss;
     }
 
     /*
@@ -167,37 +169,68 @@ public final class ResultSetSummaryImpl implements ResultSetSummary {
 
     public static ResultSetSummary fromResults(final Set<ResultSet.Result> results,
             final Set<ResultSet.Incomplete> incompletes, final AuditDuration duration, final long memoryUsed) {
-        int validCases = 0;
-        int validFailed = 0;
-        int invalidCases = 0;
-        int invalidFailed = 0;
-        int undefinedCases = 0;
-        int inapplicableTestCount = 0;
-        int exceptions = incompletes.size();
+        return fromResults(results, incompletes, duration, memoryUsed, -1);
+    }
 
+    public static ResultSetSummary fromResults(final Set<ResultSet.Result> results,
+            final Set<ResultSet.Incomplete> incompletes, final AuditDuration duration, final long memoryUsed,
+            final long peakRss) {
+        Tally tally = new Tally();
         for (ResultSet.Result result : results) {
+            tally.add(result);
+        }
+        for (int index = 0; index < incompletes.size(); index++) {
+            tally.addException();
+        }
+        return tally.toSummary(duration, memoryUsed, peakRss);
+    }
+
+    /**
+     * Rolling counters for a {@link ResultSetSummary}, results are counted as
+     * they're added so the results themselves needn't be kept. Instances are
+     * safe to update from multiple threads.
+     */
+    static final class Tally {
+        private int validCases = 0;
+        private int validFailed = 0;
+        private int invalidCases = 0;
+        private int invalidFailed = 0;
+        private int undefinedCases = 0;
+        private int inapplicableTestCount = 0;
+        private int exceptions = 0;
+
+        synchronized void add(final ResultSet.Result result) {
             switch (result.getCorpusItemId().getTestType()) {
             case PASS:
-                validCases++;
-                if (!result.getResult().isCompliant()) validFailed++; 
+                this.validCases++;
+                if (!result.getResult().isCompliant()) this.validFailed++;
                 break;
             case FAIL:
-                invalidCases++;
-                if (result.getResult().isCompliant()) invalidFailed++; 
+                this.invalidCases++;
+                if (result.getResult().isCompliant()) this.invalidFailed++;
                 break;
             case UNDEFINED:
-                undefinedCases++;
+                this.undefinedCases++;
                 break;
             case NOT_APPLICABLE:
-                inapplicableTestCount++;
+                this.inapplicableTestCount++;
                 break;
             default:
                 break;
             }
         }
 
-        return new ResultSetSummaryImpl((validFailed == 0 && invalidFailed == 0 && exceptions == 0), invalidCases, invalidFailed, validCases, validFailed,
-                undefinedCases, inapplicableTestCount, exceptions, duration, memoryUsed);
+        synchronized void addException() {
+            this.exceptions++;
+        }
+
+        synchronized ResultSetSummary toSummary(final AuditDuration duration, final long memoryUsed,
+                final long peakRss) {
+            return new ResultSetSummaryImpl(
+                    (this.validFailed == 0 && this.invalidFailed == 0 && this.exceptions == 0), this.invalidCases,
+                    this.invalidFailed, this.validCases, this.validFailed, this.undefinedCases,
+                    this.inapplicableTestCount, this.exceptions, duration, memoryUsed, peakRss);
+        }
     }
 
     static class Adapter extends
@@ -224,4 +257,14 @@ public final class ResultSetSummaryImpl implements ResultSetSummary {
 		return this.memoryUsed;
 	}
 
+	@Override
+	public long getPeakRss() {
+		return this.peakRss;
+	}
+
+	@Override
+	public boolean isPeakRssSampled() {
+		return this.peakRss >= 0;
+	}
+
 }
@@ -0,0 +1,49 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa;
+
+import org.verapdf.pdfa.qa.ResultSet.Incomplete;
+import org.verapdf.pdfa.qa.ResultSet.Result;
+
+/**
+ * Receives the outcome of each corpus item as it's validated, used by
+ * {@link CorpusValidator#validate(TestCorpus, org.verapdf.pdfa.flavours.PDFAFlavour, ResultSink)}
+ * to process results without keeping them all in memory. Items may be
+ * validated on several threads so implementations must be thread safe.
+ *
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+public interface ResultSink {
+    /**
+     * @param result
+     *            the {@link Result} for a validated item
+     */
+    public void accept(Result result);
+
+    /**
+     * @param incomplete
+     *            the {@link Incomplete} for an item whose validation threw an
+     *            exception
+     */
+    public default void exception(Incomplete incomplete) {
+        // Exceptions are recorded by the ResultSet, nothing else to do by default
+    }
+}
@@ -31,10 +31,18 @@ import org.verapdf.pdfa.validation.profiles.*;
 
 import javax.xml.bind.JAXBException;
 import java.io.*;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
@@ -43,20 +51,23 @@ public final class RuleDirectory implements Directory<RuleId, Rule> {
 
     private final Registry<RuleId, Rule> rules = new MapBackedRegistry<>(
             Collections.emptyMap());
-    private final Set<Variable> variables = new HashSet<>();
+    private final VariableRegistry variables = VariableRegistry.newInstance();
     private final PDFAFlavour flavour;
 
-    private RuleDirectory(final File root) throws FileNotFoundException,
+    private RuleDirectory(final File root, final ProfileManifest manifest) throws FileNotFoundException,
             IOException, JAXBException {
         this.flavour = PDFAFlavour.fromString(root.getName());
-        Set<Rule> ruleSet = rulesFromDir(root, this.flavour);
+        Set<Rule> ruleSet = rulesFromDir(root, manifest);
         for (Rule rule : ruleSet) {
             this.rules.putdateItem(rule.getRuleId(), rule);
         }
     }
 
+    /**
+     * @return the variables of the directory's profiles, sorted by name
+     */
     public Set<Variable> getVariables() {
-        return Collections.unmodifiableSet(this.variables);
+        return this.variables.getVariables();
     }
 
     /**
@@ -119,49 +130,106 @@ public final class RuleDirectory implements Directory<RuleId, Rule> {
      */
     public static RuleDirectory loadFromDir(final File root)
             throws IOException, JAXBException {
+        return loadFromDir(root, null);
+    }
+
+    /**
+     * Load up a {@link Rule} {@code Set} from a root directory, only reading
+     * the atomic profiles that have changed since {@code manifest} last saw
+     * them. Unchanged profiles are loaded from the {@link BinaryProfileCache}
+     * by their recorded SHA-1.
+     *
+     * @param root     the {@code File} root directory for the Corpus
+     * @param manifest the {@link ProfileManifest} of a previous run, or
+     *                 {@code null} to read every profile
+     * @return a new {@link RuleDirectory} instance initialised from
+     * {@code root}.
+     * @throws NullPointerException     if {@code root} is null
+     * @throws IllegalArgumentException if {@code root} is not an existing directory
+     * @throws JAXBException            if one of the Rules could not be parsed
+     * @throws IOException              if there's a problem reading the directory contents
+     */
+    public static RuleDirectory loadFromDir(final File root, final ProfileManifest manifest)
+            throws IOException, JAXBException {
         if (root == null)
             throw new NullPointerException("Parameter root should not be null.");
         if (!root.isDirectory())
             throw new IllegalArgumentException(
                     "Parameter root MUST be an existing directory.");
-        return new RuleDirectory(root);
+        return new RuleDirectory(root, manifest);
     }
 
-    private Set<Rule> rulesFromDir(final File dir,
-                                   final PDFAFlavour pdfaFlavour) throws FileNotFoundException,
-            IOException, JAXBException {
+    /**
+     * Loads the rules from every atomic profile under {@code root}. The files
+     * are found with a single walk of the tree, skipping hidden files and
+     * directories, and parsed in parallel on the common fork-join pool.
+     * Variables are merged in path order afterwards, so clashes are reported
+     * the same way on every run.
+     */
+    private Set<Rule> rulesFromDir(final File root,
+                                   final ProfileManifest manifest) throws IOException, JAXBException {
+        List<Path> files = profileFiles(root.toPath());
+        List<ValidationProfile> profiles;
+        try {
+            profiles = files.parallelStream().map(file -> loadProfile(file, manifest))
+                    .collect(Collectors.toList());
+        } catch (ProfileLoadException excep) {
+            if (excep.getCause() instanceof JAXBException)
+                throw (JAXBException) excep.getCause();
+            throw (IOException) excep.getCause();
+        }
         Set<Rule> rulesLocal = new HashSet<>();
-        File[] files = dir.listFiles();
-        for (File file : files) {
-            if (file.isHidden())
-                continue;
-            if (file.isDirectory())
-            	rulesLocal.addAll(rulesFromDir(file, pdfaFlavour));
-            if (file.isFile() && file.canRead()) {
-                try (InputStream fis = new FileInputStream(file)) {
-                    Set<Rule> rule = getRuleFromProfile(fis);
-                    rulesLocal.addAll(rule);
-                }
-            }
+        for (ValidationProfile profile : profiles) {
+            this.variables.addAll(profile.getVariables());
+            rulesLocal.addAll(profile.getRules());
         }
+        this.variables.checkForClashes();
         return rulesLocal;
     }
 
-    private Set<Rule> getRuleFromProfile(final InputStream toParse) throws JAXBException {
-        ValidationProfile profile = Profiles.profileFromXml(
-                toParse);
-        checkAndAddAllVariables(this.variables, profile.getVariables());
-        return profile.getRules();
-    }
+    static List<Path> profileFiles(final Path root) throws IOException {
+        List<Path> files = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                return !dir.equals(root) && Files.isHidden(dir) ? FileVisitResult.SKIP_SUBTREE
+                        : FileVisitResult.CONTINUE;
+            }
 
-    static void checkAndAddAllVariables(Set<Variable> toAdd, Set<Variable> fromAdd) {
-        for (Variable var : fromAdd) {
-            for (Variable toVar : toAdd) {
-                if (toVar.getName().equals(var.getName()) && !toVar.equals(var)) {
-                    throw new IllegalArgumentException("Found different variables with the same name.");
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (attrs.isRegularFile() && !Files.isHidden(file) && Files.isReadable(file)) {
+                    files.add(file);
                 }
+                return FileVisitResult.CONTINUE;
             }
-            toAdd.add(var);
+        });
+        Collections.sort(files);
+        return files;
+    }
+
+    private static ValidationProfile loadProfile(final Path file, final ProfileManifest manifest) {
+        BinaryProfileCache cache = BinaryProfileCache.defaultInstance();
+        try {
+            if (manifest != null) {
+                ValidationProfile stored = cache.profileFromSha1(manifest.sha1Of(file));
+                if (stored != null)
+                    return stored;
+            }
+            return cache.profileFromXml(file.toFile());
+        } catch (IOException | JAXBException excep) {
+            throw new ProfileLoadException(excep);
+        }
+    }
+
+    /**
+     * Carries a checked exception out of a parallel stream.
+     */
+    private static final class ProfileLoadException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ProfileLoadException(final Exception cause) {
+            super(cause);
         }
     }
 }
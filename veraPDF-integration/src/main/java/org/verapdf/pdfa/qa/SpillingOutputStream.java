@@ -0,0 +1,174 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+/**
+ * An {@link OutputStream} that holds what's written to it in memory until it
+ * grows past a threshold, at which point the content is moved to a temporary
+ * file and later writes go to the file. The content can be read back as often
+ * as needed with {@link #toInputStream()}, and the stream re-used with
+ * {@link #reset()}.
+ * <p>
+ * {@link #close()} only flushes, so the stream can be handed to code that
+ * closes it and still be read back or re-used, call {@link #dispose()} to
+ * release the temporary file.
+ *
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+final class SpillingOutputStream extends OutputStream {
+	private final int threshold;
+	private final String suffix;
+	private final Buffer memory = new Buffer();
+	private File spillFile;
+	private OutputStream spillStream;
+	private long size = 0;
+
+	/**
+	 * @param threshold
+	 *            the number of bytes held in memory before spilling to disk
+	 * @param suffix
+	 *            the suffix for the temporary file
+	 */
+	SpillingOutputStream(final int threshold, final String suffix) {
+		if (threshold < 0)
+			throw new IllegalArgumentException("Parameter threshold=" + threshold + ", must be >= 0");
+		this.threshold = threshold;
+		this.suffix = suffix;
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+		prepareFor(1).write(b);
+		this.size++;
+	}
+
+	@Override
+	public void write(final byte[] bytes, final int off, final int len) throws IOException {
+		prepareFor(len).write(bytes, off, len);
+		this.size += len;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (this.spillStream != null) {
+			this.spillStream.flush();
+		}
+	}
+
+	/**
+	 * Flushes the stream, the content is kept.
+	 */
+	@Override
+	public void close() throws IOException {
+		flush();
+	}
+
+	/**
+	 * @return the number of bytes written since the last reset
+	 */
+	long size() {
+		return this.size;
+	}
+
+	/**
+	 * @return {@code true} if the content has been moved to a temporary file
+	 */
+	boolean isSpilled() {
+		return this.spillFile != null;
+	}
+
+	/**
+	 * @return a new InputStream over the content written since the last reset
+	 * @throws IOException
+	 *             if there's a problem reading the temporary file
+	 */
+	InputStream toInputStream() throws IOException {
+		if (this.spillFile == null)
+			return this.memory.toInputStream();
+		this.spillStream.flush();
+		return new FileInputStream(this.spillFile);
+	}
+
+	/**
+	 * Discards the content so the stream can be re-used.
+	 *
+	 * @throws IOException
+	 *             if there's a problem removing the temporary file
+	 */
+	void reset() throws IOException {
+		dispose();
+		this.memory.reset();
+		this.size = 0;
+	}
+
+	/**
+	 * Releases and deletes the temporary file, if there is one.
+	 *
+	 * @throws IOException
+	 *             if there's a problem removing the temporary file
+	 */
+	void dispose() throws IOException {
+		if (this.spillStream != null) {
+			this.spillStream.close();
+			this.spillStream = null;
+		}
+		if (this.spillFile != null) {
+			Files.deleteIfExists(this.spillFile.toPath());
+			this.spillFile = null;
+		}
+	}
+
+	private OutputStream prepareFor(final int len) throws IOException {
+		if (this.spillFile != null)
+			return this.spillStream;
+		if (this.memory.size() + (long) len <= this.threshold)
+			return this.memory;
+		this.spillFile = File.createTempFile("veraPDF", this.suffix);
+		this.spillStream = new BufferedOutputStream(new FileOutputStream(this.spillFile));
+		this.memory.writeTo(this.spillStream);
+		this.memory.reset();
+		return this.spillStream;
+	}
+
+	/**
+	 * A ByteArrayOutputStream that can be read without copying its buffer.
+	 */
+	private static final class Buffer extends ByteArrayOutputStream {
+		Buffer() {
+			super(8 * 1024);
+		}
+
+		InputStream toInputStream() {
+			return new ByteArrayInputStream(this.buf, 0, this.count);
+		}
+	}
+}
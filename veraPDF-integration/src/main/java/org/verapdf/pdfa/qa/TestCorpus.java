@@ -26,6 +26,7 @@ package org.verapdf.pdfa.qa;
 import org.verapdf.pdfa.flavours.PDFAFlavour;
 import org.verapdf.pdfa.qa.AbstractTestCorpus.Corpus;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Set;
@@ -65,6 +66,16 @@ public interface TestCorpus {
      *             if there's a problem retrieving the stream
      */
     public InputStream getItemStream(String itemName) throws IOException;
+
+    /**
+     * @param itemName
+     *            the name of the item to retrieve a file for
+     * @return a local File holding the item data, which should be treated as
+     *         read only
+     * @throws IOException
+     *             if there's a problem retrieving the item
+     */
+    public File getItemFile(String itemName) throws IOException;
     
     public Corpus getType();
 }
@@ -0,0 +1,127 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa;
+
+import org.verapdf.pdfa.validation.profiles.Variable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Collects the variables of the profiles being merged, indexed by name so
+ * each variable is checked against the others in constant time. Variables
+ * that share a name but differ are recorded as clashes rather than rejected
+ * straight away, so that every clash can be reported at once.
+ *
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+public final class VariableRegistry {
+	private final Map<String, Variable> variables = new TreeMap<>();
+	private final Map<String, Set<Variable>> clashes = new TreeMap<>();
+
+	private VariableRegistry() {
+	}
+
+	/**
+	 * @return a new, empty VariableRegistry
+	 */
+	public static VariableRegistry newInstance() {
+		return new VariableRegistry();
+	}
+
+	/**
+	 * @param variable
+	 *            the variable to add, ignored if an equal variable has already
+	 *            been added, recorded as a clash if a different variable with
+	 *            the same name has
+	 */
+	public void add(final Variable variable) {
+		if (variable == null)
+			throw new NullPointerException("Parameter variable can not be null");
+		Variable existing = this.variables.putIfAbsent(variable.getName(), variable);
+		if (existing != null && !existing.equals(variable)) {
+			this.clashes.computeIfAbsent(variable.getName(), name -> {
+				Set<Variable> clash = new LinkedHashSet<>();
+				clash.add(existing);
+				return clash;
+			}).add(variable);
+		}
+	}
+
+	/**
+	 * @param toAdd
+	 *            the variables to add, see {@link #add(Variable)}
+	 */
+	public void addAll(final Collection<? extends Variable> toAdd) {
+		if (toAdd == null)
+			throw new NullPointerException("Parameter toAdd can not be null");
+		for (Variable variable : toAdd) {
+			add(variable);
+		}
+	}
+
+	/**
+	 * @return the variables added, sorted by name, with the first variable
+	 *         added for any name that clashes
+	 */
+	public Set<Variable> getVariables() {
+		return Collections.unmodifiableSet(new LinkedHashSet<>(this.variables.values()));
+	}
+
+	/**
+	 * @return {@code true} if different variables have been added with the
+	 *         same name
+	 */
+	public boolean hasClashes() {
+		return !this.clashes.isEmpty();
+	}
+
+	/**
+	 * @return the clashing variables by name, sorted by name, each in the
+	 *         order added
+	 */
+	public Map<String, Set<Variable>> getClashes() {
+		return Collections.unmodifiableMap(this.clashes);
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             listing every clash, if different variables have been added
+	 *             with the same name
+	 */
+	public void checkForClashes() {
+		if (this.clashes.isEmpty())
+			return;
+		StringBuilder message = new StringBuilder("Found different variables with the same name.");
+		for (Map.Entry<String, Set<Variable>> clash : this.clashes.entrySet()) {
+			message.append("\n  ").append(clash.getKey()).append(':');
+			for (Variable variable : clash.getValue()) {
+				message.append("\n    object=").append(variable.getObject()).append(", defaultValue=")
+						.append(variable.getDefaultValue()).append(", value=").append(variable.getValue());
+			}
+		}
+		throw new IllegalArgumentException(message.toString());
+	}
+}
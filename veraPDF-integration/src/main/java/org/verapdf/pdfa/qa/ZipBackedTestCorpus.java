@@ -23,32 +23,30 @@
  */
 package org.verapdf.pdfa.qa;
 
-import org.apache.commons.codec.digest.DigestUtils;
 import org.verapdf.pdfa.flavours.PDFAFlavour;
-import org.verapdf.pdfa.flavours.PDFFlavours;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
-import java.util.zip.ZipFile;
 
 /**
+ * A {@link TestCorpus} view over the entries of a corpus zip file. Views of
+ * the same archive share a single {@link ZipCorpusIndex}, so creating a view
+ * per flavour only filters the shared entry list.
+ *
  * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
  */
 public class ZipBackedTestCorpus extends AbstractTestCorpus<ZipEntry> {
-	private static final String PDF_SUFFIX = ".pdf";
-	private final ZipFile zipSource;
+	private final ZipCorpusIndex index;
 
-	private ZipBackedTestCorpus(final CorpusDetails details, final Corpus type, final File zipSource,
-			final PDFAFlavour flavour) throws ZipException, IOException {
-		super(details, type, itemsMapFromZipSource(zipSource, flavour, type));
-		this.zipSource = new ZipFile(zipSource);
+	private ZipBackedTestCorpus(final CorpusDetails details, final Corpus type, final ZipCorpusIndex index,
+			final PDFAFlavour flavour) {
+		super(details, type, itemsMapFromIndex(index, flavour, type));
+		this.index = index;
 	}
 
 	/**
@@ -58,7 +56,17 @@ public class ZipBackedTestCorpus extends AbstractTestCorpus<ZipEntry> {
 	 */
 	@Override
 	protected InputStream getStreamFromReference(ZipEntry reference) throws IOException {
-		return this.zipSource.getInputStream(reference);
+		return this.index.getInputStream(reference);
+	}
+
+	/**
+	 * { @inheritDoc }
+	 *
+	 * @throws IOException
+	 */
+	@Override
+	protected File getFileFromReference(ZipEntry reference) throws IOException {
+		return this.index.getExtractedFile(reference);
 	}
 
 	/**
@@ -83,58 +91,50 @@ public class ZipBackedTestCorpus extends AbstractTestCorpus<ZipEntry> {
 			throw new NullPointerException("Parameter name can not be empty");
 		if (description == null)
 			throw new NullPointerException("Parameter description can not be null");
-		String hexSha1 = "";
-		try (InputStream is = new FileInputStream(type.getZipFile())) {
-			hexSha1 = DigestUtils.sha1Hex(is);
-		}
-		System.out.println("Loading corpus:" + type);
-		return new ZipBackedTestCorpus(CorpusDetailsImpl.fromValues(name, description, hexSha1), type, type.getZipFile(),
-				flavour);
+		ZipCorpusIndex index = ZipCorpusIndex.forZipFile(type.getZipFile());
+		System.out.println("Loading corpus:" + type + ", flavour:" + flavour);
+		return new ZipBackedTestCorpus(CorpusDetailsImpl.fromValues(name, description, index.getHexSha1()), type,
+				index, flavour);
 	}
 
-	private static final Map<String, ZipEntry> itemsMapFromZipSource(final File zipFile, final PDFAFlavour flavour, Corpus type)
-			throws ZipException, IOException {
+	private static final Map<String, ZipEntry> itemsMapFromIndex(final ZipCorpusIndex index,
+			final PDFAFlavour flavour, Corpus type) {
 		Map<String, ZipEntry> itemMap = new HashMap<>();
-
-		try (ZipFile zipSource = new ZipFile(zipFile)) {
-			Enumeration<? extends ZipEntry> entries = zipSource.entries();
-			while (entries.hasMoreElements()) {
-				ZipEntry entry = entries.nextElement();
-				if (entry.isDirectory() || !entry.getName().endsWith(PDF_SUFFIX))
-					continue;
-				String entryName = entry.getName();
-				if (type == Corpus.TWG && entryName.contains("TWG")) {
-					itemMap.put(entryName, entry);
-				} else if (flavour == null || type == Corpus.BFO) {
-					itemMap.put(entryName, entry);
-				} else if (checkFlavour(entryName, flavour)) {
-					itemMap.put(entryName, entry);
-				}
+		for (Map.Entry<String, ZipEntry> entry : index.getPdfEntries().entrySet()) {
+			String entryName = entry.getKey();
+			if (type == Corpus.TWG && entryName.contains("TWG")) {
+				itemMap.put(entryName, entry.getValue());
+			} else if (flavour == null || type == Corpus.BFO) {
+				itemMap.put(entryName, entry.getValue());
+			} else if (index.getFlavours(entryName).contains(flavour)) {
+				itemMap.put(entryName, entry.getValue());
 			}
 		}
 		return itemMap;
 	}
 
+	/**
+	 * @param item
+	 *            the name of a corpus item
+	 * @param flavour
+	 *            a {@link PDFAFlavour}
+	 * @return {@code true} if {@code item} tests {@code flavour}
+	 * @see FlavourClassifier#classify(String)
+	 */
 	public static boolean checkFlavour(final String item, final PDFAFlavour flavour) {
-		if (flavour == PDFAFlavour.NO_FLAVOUR) {
-			return item.contains("Autodetect");
-		}
-		if (flavour == PDFAFlavour.PDFUA_1) {
-			return item.contains("PDF_UA-1");
-		}
-		if (PDFFlavours.isWTPDFFlavour(flavour)) {
-			return item.contains("PDF_UA-2");
-		}
-		if (flavour == PDFAFlavour.PDFUA_2) {
-			return item.contains("PDF_UA-2");
-		}
-		if (flavour == PDFAFlavour.PDFA_4) {
-			return item.contains("PDF_A-4") && !matchFlavour(item, PDFAFlavour.PDFA_4_E) && !matchFlavour(item, PDFAFlavour.PDFA_4_F);
-		}
-		return matchFlavour(item, flavour);
+		return FlavourClassifier.classify(item).contains(flavour);
 	}
 
+	/**
+	 * @param item
+	 *            the name of a corpus item
+	 * @param flavour
+	 *            a {@link PDFAFlavour}
+	 * @return {@code true} if the id of {@code flavour} follows a
+	 *         {@code PDF_A-} or {@code PDFA-} marker in {@code item}
+	 * @see FlavourClassifier#matchingIds(String)
+	 */
 	public static boolean matchFlavour(final String item, final PDFAFlavour flavour) {
-		return flavour != PDFAFlavour.NO_FLAVOUR && item.matches(String.format(".*PDF_?A-%s.*", flavour.getId()));
+		return FlavourClassifier.matchingIds(item).contains(flavour);
 	}
 }
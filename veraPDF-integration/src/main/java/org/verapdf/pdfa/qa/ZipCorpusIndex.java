@@ -0,0 +1,208 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.verapdf.pdfa.flavours.PDFAFlavour;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * An index of the PDF entries in a corpus zip file, built once per archive and
+ * shared by every {@link ZipBackedTestCorpus} view of that archive. Building
+ * the index hashes the zip once, scans its central directory once and keeps a
+ * single open {@link ZipFile} handle for reading entries. Each entry is
+ * classified by {@link FlavourClassifier} once, when the index is built.
+ * <p>
+ * Entries can also be read as files: the first request for an entry's file
+ * extracts it to a directory under the {@link CorpusCache} root named for the
+ * archive's SHA-1, later requests, including those from later runs, reuse the
+ * extracted copy so an item is only inflated once however many flavours it's
+ * validated against.
+ *
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+final class ZipCorpusIndex {
+	private static final String PDF_SUFFIX = ".pdf";
+	private static final Map<File, ZipCorpusIndex> indexes = new ConcurrentHashMap<>();
+
+	private final File zipFile;
+	private final String hexSha1;
+	private final ZipFile zipSource;
+	private final Map<String, ZipEntry> pdfEntries;
+	private final Map<String, Set<PDFAFlavour>> flavours;
+	private final Map<String, File> extracted = new ConcurrentHashMap<>();
+
+	private ZipCorpusIndex(final File zipFile, final String hexSha1, final ZipFile zipSource,
+			final Map<String, ZipEntry> pdfEntries, final Map<String, Set<PDFAFlavour>> flavours) {
+		this.zipFile = zipFile;
+		this.hexSha1 = hexSha1;
+		this.zipSource = zipSource;
+		this.pdfEntries = Collections.unmodifiableMap(pdfEntries);
+		this.flavours = Collections.unmodifiableMap(flavours);
+	}
+
+	/**
+	 * @param zipFile
+	 *            a zip file holding corpus items
+	 * @return the shared index for {@code zipFile}, built on first request
+	 * @throws IOException
+	 *             if there's a problem reading the zip file
+	 */
+	static ZipCorpusIndex forZipFile(final File zipFile) throws IOException {
+		if (zipFile == null)
+			throw new NullPointerException("Parameter zipFile can not be null");
+		try {
+			return indexes.computeIfAbsent(zipFile.getCanonicalFile(), key -> {
+				try {
+					return build(key);
+				} catch (IOException excep) {
+					throw new UncheckedIOException(excep);
+				}
+			});
+		} catch (UncheckedIOException excep) {
+			throw excep.getCause();
+		}
+	}
+
+	/**
+	 * @return the zip file the index was built from
+	 */
+	File getZipFile() {
+		return this.zipFile;
+	}
+
+	/**
+	 * @return the hex SHA-1 of the zip file
+	 */
+	String getHexSha1() {
+		return this.hexSha1;
+	}
+
+	/**
+	 * @return the PDF entries of the zip file keyed by entry name, in
+	 *         central-directory order
+	 */
+	Map<String, ZipEntry> getPdfEntries() {
+		return this.pdfEntries;
+	}
+
+	/**
+	 * @param entryName
+	 *            the name of a PDF entry
+	 * @return the {@link PDFAFlavour}s the entry tests according to
+	 *         {@link FlavourClassifier#classify(String)}
+	 */
+	Set<PDFAFlavour> getFlavours(final String entryName) {
+		Set<PDFAFlavour> entryFlavours = this.flavours.get(entryName);
+		return entryFlavours == null ? Collections.emptySet() : entryFlavours;
+	}
+
+	/**
+	 * @param entry
+	 *            a {@link ZipEntry} from {@link #getPdfEntries()}
+	 * @return an InputStream for the content of {@code entry}
+	 * @throws IOException
+	 *             if there's a problem reading the entry
+	 */
+	InputStream getInputStream(final ZipEntry entry) throws IOException {
+		return this.zipSource.getInputStream(entry);
+	}
+
+	/**
+	 * @param entry
+	 *            a {@link ZipEntry} from {@link #getPdfEntries()}
+	 * @return a File holding the content of {@code entry}, extracted on first
+	 *         request
+	 * @throws IOException
+	 *             if there's a problem extracting the entry
+	 */
+	File getExtractedFile(final ZipEntry entry) throws IOException {
+		try {
+			return this.extracted.computeIfAbsent(entry.getName(), name -> {
+				try {
+					return extract(entry);
+				} catch (IOException excep) {
+					throw new UncheckedIOException(excep);
+				}
+			});
+		} catch (UncheckedIOException excep) {
+			throw excep.getCause();
+		}
+	}
+
+	private File extract(final ZipEntry entry) throws IOException {
+		Path root = CorpusCache.defaultInstance().getExtractedDirectory(this.hexSha1).toPath().toAbsolutePath()
+				.normalize();
+		Path target = root.resolve(entry.getName()).normalize();
+		if (!target.startsWith(root))
+			throw new IOException("Zip entry " + entry.getName() + " is outside the extraction directory");
+		if (Files.isRegularFile(target) && (entry.getSize() < 0 || Files.size(target) == entry.getSize()))
+			return target.toFile();
+		Files.createDirectories(target.getParent());
+		Path tempFile = Files.createTempFile(target.getParent(), "extract-", ".tmp");
+		try {
+			try (InputStream is = this.zipSource.getInputStream(entry)) {
+				Files.copy(is, tempFile, StandardCopyOption.REPLACE_EXISTING);
+			}
+			Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+		return target.toFile();
+	}
+
+	private static ZipCorpusIndex build(final File zipFile) throws IOException {
+		System.out.println("Indexing corpus archive:" + zipFile);
+		String hexSha1;
+		try (InputStream is = new FileInputStream(zipFile)) {
+			hexSha1 = DigestUtils.sha1Hex(is);
+		}
+		ZipFile zipSource = new ZipFile(zipFile);
+		Map<String, ZipEntry> pdfEntries = new LinkedHashMap<>();
+		Map<String, Set<PDFAFlavour>> flavours = new HashMap<>();
+		Enumeration<? extends ZipEntry> entries = zipSource.entries();
+		while (entries.hasMoreElements()) {
+			ZipEntry entry = entries.nextElement();
+			if (!entry.isDirectory() && entry.getName().endsWith(PDF_SUFFIX)) {
+				pdfEntries.put(entry.getName(), entry);
+				flavours.put(entry.getName(), FlavourClassifier.classify(entry.getName()));
+			}
+		}
+		return new ZipCorpusIndex(zipFile, hexSha1, zipSource, pdfEntries, flavours);
+	}
+}
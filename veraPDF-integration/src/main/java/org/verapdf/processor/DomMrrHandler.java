@@ -0,0 +1,140 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.processor;
+
+import javanet.staxutils.IndentingXMLStreamWriter;
+import javanet.staxutils.helpers.StreamWriterDelegate;
+import org.verapdf.core.VeraPDFException;
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.dom.DOMResult;
+import java.io.StringWriter;
+
+/**
+ * An MRR report handler that builds the report as a DOM {@link Document}
+ * rather than serialising it to text, so the report can be handed straight to
+ * an XSLT policy check without being written out and parsed back in. The
+ * report content is exactly what {@link MrrHandler} writes, the elements are
+ * written through a StAX writer that targets the DOM.
+ * <p>
+ * This class lives in the {@code org.verapdf.processor} package because
+ * {@link MrrHandler} is package private, and it replaces the {@code writer}
+ * field {@link MrrHandler} inherits. Neither is public API, the assumptions
+ * are checked by {@code DomMrrHandlerTest} so a library update that breaks
+ * them fails the build.
+ *
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+public final class DomMrrHandler extends MrrHandler {
+	private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+	private final Document document;
+
+	private DomMrrHandler(final Document document, final boolean logPassed) throws VeraPDFException {
+		super(new StringWriter(), logPassed);
+		this.document = document;
+		try {
+			// Indented as the text report is, so the DOM has the same whitespace
+			// text nodes as the parsed text report would
+			this.writer = new IndentingXMLStreamWriter(
+					new DocumentWriter(OUTPUT_FACTORY.createXMLStreamWriter(new DOMResult(document))));
+		} catch (XMLStreamException excep) {
+			throw wrapStreamException(excep, "Couldn't create DOM writer for MRR report");
+		}
+	}
+
+	/**
+	 * @param logPassed
+	 *            if {@code true} passed checks are included in the report
+	 * @return a new handler with an empty report document
+	 * @throws VeraPDFException
+	 *             if the report document can't be created
+	 */
+	public static DomMrrHandler newInstance(final boolean logPassed) throws VeraPDFException {
+		try {
+			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+			factory.setNamespaceAware(true);
+			return new DomMrrHandler(factory.newDocumentBuilder().newDocument(), logPassed);
+		} catch (ParserConfigurationException excep) {
+			throw new VeraPDFException("Couldn't create MRR report document", excep);
+		}
+	}
+
+	/**
+	 * @return the report document, complete once the batch has ended
+	 */
+	public Document getDocument() {
+		return this.document;
+	}
+
+	/**
+	 * Drops the text written outside of the root element, the line breaks
+	 * {@link MrrHandler} writes there aren't allowed in a DOM document.
+	 */
+	private static final class DocumentWriter extends StreamWriterDelegate {
+		private int depth = 0;
+
+		DocumentWriter(final XMLStreamWriter out) {
+			super(out);
+		}
+
+		@Override
+		public void writeStartElement(final String localName) throws XMLStreamException {
+			super.writeStartElement(localName);
+			this.depth++;
+		}
+
+		@Override
+		public void writeStartElement(final String namespaceURI, final String localName) throws XMLStreamException {
+			super.writeStartElement(namespaceURI, localName);
+			this.depth++;
+		}
+
+		@Override
+		public void writeStartElement(final String prefix, final String localName, final String namespaceURI)
+				throws XMLStreamException {
+			super.writeStartElement(prefix, localName, namespaceURI);
+			this.depth++;
+		}
+
+		@Override
+		public void writeEndElement() throws XMLStreamException {
+			super.writeEndElement();
+			this.depth--;
+		}
+
+		@Override
+		public void writeCharacters(final String text) throws XMLStreamException {
+			if (this.depth > 0)
+				super.writeCharacters(text);
+		}
+
+		@Override
+		public void writeCharacters(final char[] text, final int start, final int len) throws XMLStreamException {
+			if (this.depth > 0)
+				super.writeCharacters(text, start, len);
+		}
+	}
+}
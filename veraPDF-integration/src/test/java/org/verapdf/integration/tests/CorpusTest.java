@@ -33,10 +33,10 @@ import org.junit.rules.ErrorCollector;
 import org.verapdf.component.ComponentDetails;
 import org.verapdf.gf.foundry.VeraGreenfieldFoundryProvider;
 import org.verapdf.pdfa.Foundries;
-import org.verapdf.pdfa.PDFAValidator;
 import org.verapdf.pdfa.flavours.PDFAFlavour;
 import org.verapdf.pdfa.qa.*;
 import org.verapdf.pdfa.qa.AbstractTestCorpus.Corpus;
+import org.verapdf.pdfa.validation.profiles.Profiles;
 import org.yaml.snakeyaml.Yaml;
 
 import com.github.mustachejava.DefaultMustacheFactory;
@@ -45,6 +45,9 @@ import com.github.mustachejava.MustacheFactory;
 
 @SuppressWarnings({ "javadoc" })
 public class CorpusTest {
+    private static final String STREAM_PROPERTY = "verapdf.corpus.stream";
+    private static final File RESULTS_DIR = new File("target/test-results");
+    private static final PerformanceBaseline.Recorder PERFORMANCE = new PerformanceBaseline.Recorder();
     private static ComponentDetails gfDetails;
     private static final List<ResultSet> gfResults = new ArrayList<>();
     private static final MustacheFactory MF = new DefaultMustacheFactory("org/verapdf/integration/templates");
@@ -56,7 +59,7 @@ public class CorpusTest {
 
     @BeforeClass
     public static final void SetUp() throws IOException {
-        CorpusManager.initialise();
+        CorpusManager.prefetchAll();
     }
 
     private static Set<String> expectedForCorpus(final Corpus corpus, final PDFAFlavour flavour,
@@ -79,12 +82,37 @@ public class CorpusTest {
         gfDetails = Foundries.defaultInstance().getDetails();
         test(gfResults, "org/verapdf/integration/tests/rules/corpus-gf.yml");
         collector.checkThat("Exceptions thrown during Greenfield testing.", countExceptions(gfResults), equalTo(0));
+        checkPerformance();
+    }
+
+    /**
+     * Writes the timings for this run as a new baseline and, if a baseline was
+     * given with {@link PerformanceBaseline#BASELINE_PROPERTY}, fails on any
+     * performance regressions against it.
+     */
+    private void checkPerformance() throws IOException {
+        PerformanceBaseline current = PERFORMANCE.build();
+        RESULTS_DIR.mkdirs();
+        current.write(new File(RESULTS_DIR, PerformanceBaseline.FILE_NAME));
+        String baselinePath = System.getProperty(PerformanceBaseline.BASELINE_PROPERTY);
+        if (baselinePath == null)
+            return;
+        PerformanceBaseline baseline = PerformanceBaseline.read(new File(baselinePath));
+        for (String regression : current.regressionsFrom(baseline,
+                PerformanceBaseline.Thresholds.fromSystemProperties())) {
+            collector.addError(new AssertionError("Performance regression, " + regression));
+        }
     }
 
     private void test(List<ResultSet> results, String ymlPath) throws Exception {
-        testCorpora(results);
         final EnumMap<Corpus, EnumMap<PDFAFlavour, Set<String>>> failures = createExpectedFailures(ymlPath);
+        if (Boolean.getBoolean(STREAM_PROPERTY)) {
+            streamCorpora(results, failures);
+            return;
+        }
+        testCorpora(results);
         for (ResultSet set : results) {
+            PERFORMANCE.addAll(set);
             Set<String> expected = expectedForCorpus(Corpus.fromId(set.getCorpusId()), set
                     .getValidationProfile().getPDFAFlavour(), failures);
             testResults(set, expected);
@@ -100,24 +128,59 @@ public class CorpusTest {
     }
 
     private static void testCorpora(final List<ResultSet> resultSets) {
+        CorpusValidator engine = CorpusValidator.defaultInstance();
+        for (PDFAFlavour flavour : CorpusManager.testableFlavours()) {
+            for (TestCorpus corpus : CorpusManager.corporaForFlavour(flavour)) {
+                resultSets.add(engine.validate(corpus, flavour));
+            }
+        }
+    }
+
+    /**
+     * Validates the corpora writing each result to a JSON lines file as it's
+     * produced and checking it against the expected failures straight away,
+     * the result sets returned hold summaries but no results.
+     */
+    private void streamCorpora(final List<ResultSet> resultSets,
+            final EnumMap<Corpus, EnumMap<PDFAFlavour, Set<String>>> failures) throws IOException {
+        CorpusValidator engine = CorpusValidator.defaultInstance();
         for (PDFAFlavour flavour : CorpusManager.testableFlavours()) {
+            PDFAFlavour profileFlavour = flavour != PDFAFlavour.NO_FLAVOUR ? flavour
+                    : Profiles.defaultProfile().getPDFAFlavour();
             for (TestCorpus corpus : CorpusManager.corporaForFlavour(flavour)) {
-                if (flavour != PDFAFlavour.NO_FLAVOUR) {
-                    try (PDFAValidator validator = Foundries.defaultInstance().createValidator(flavour, 100, false, true, false)) {
-                        ResultSet results = ResultSetImpl.validateCorpus(corpus, validator, flavour);
-                        resultSets.add(results);
-                    } catch (IOException excep) {
-                        // Just exception closing validator
-                        excep.printStackTrace();
-                    }
-                } else {
-                    ResultSet results = ResultSetImpl.validateCorpus(corpus, null, flavour);
-                    resultSets.add(results);
+                final String corpusName = corpus.getDetails().getName();
+                final Set<String> expected = expectedForCorpus(corpus.getType(), profileFlavour, failures);
+                File outputDir = new File(RESULTS_DIR, corpusName + "-" + profileFlavour.getId());
+                outputDir.mkdirs();
+                try (JsonLinesResultSink jsonSink = JsonLinesResultSink.fromFile(new File(outputDir, "results.jsonl"))) {
+                    resultSets.add(engine.validate(corpus, flavour, new ResultSink() {
+                        @Override
+                        public void accept(ResultSet.Result result) {
+                            jsonSink.accept(result);
+                            PERFORMANCE.add(outputDir.getName(), result);
+                            checkResult(corpusName, profileFlavour, result, expected);
+                        }
+
+                        @Override
+                        public void exception(ResultSet.Incomplete incomplete) {
+                            jsonSink.exception(incomplete);
+                        }
+                    }));
                 }
             }
         }
     }
 
+    private void checkResult(final String corpusName, final PDFAFlavour flavour, final ResultSet.Result result,
+            final Set<String> expected) {
+        synchronized (this.collector) {
+            collector.checkThat(
+                    String.format("Unexpected result for corpus %s-%s, item %s", corpusName, flavour,
+                            result.getCorpusItemName()),
+                    result.isExpectedResult(), equalTo(!expected.contains(result.getCorpusItemName())));
+        }
+    }
+
     private void testResults(final ResultSet results, final Set<String> expected) {
         if (expected == null) {
             return;
@@ -153,7 +216,7 @@ public class CorpusTest {
     }
 
     private static void writeResults() throws IOException {
-        File rootDir = new File("target/test-results");
+        File rootDir = RESULTS_DIR;
         if (!rootDir.exists())
             rootDir.mkdirs();
         writeSummaries(rootDir);
@@ -0,0 +1,94 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa.test;
+
+import org.junit.rules.ExternalResource;
+import org.junit.rules.TemporaryFolder;
+import org.verapdf.pdfa.flavours.PDFAFlavour;
+import org.verapdf.pdfa.qa.BinaryProfileCache;
+import org.verapdf.pdfa.validation.profiles.Profiles;
+import org.verapdf.pdfa.validation.profiles.Rule;
+import org.verapdf.pdfa.validation.profiles.ValidationProfile;
+import org.verapdf.pdfa.validation.profiles.Variable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Helpers for tests that load directories of atomic profiles.
+ *
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+final class AtomicProfiles {
+    private AtomicProfiles() {
+    }
+
+    /**
+     * Writes a PDF/A-1B atomic profile holding a single rule.
+     */
+    static void write(File file, Rule rule, Set<Variable> variables) throws Exception {
+        file.getParentFile().mkdirs();
+        ValidationProfile profile = Profiles.profileFromValues(PDFAFlavour.PDFA_1_B,
+                Profiles.profileDetailsFromValues("rule", "", "test", null), "", Collections.singleton(rule),
+                variables);
+        try (OutputStream output = new FileOutputStream(file)) {
+            Profiles.profileToXml(profile, output, true, false);
+        }
+    }
+
+    /**
+     * Points the default {@link BinaryProfileCache} at a temporary directory
+     * for the duration of a test, so tests don't write to or read from the
+     * shared cache.
+     */
+    static final class TemporaryProfileCache extends ExternalResource {
+        private final TemporaryFolder folder = new TemporaryFolder();
+        private String previousDir;
+
+        @Override
+        protected void before() throws Throwable {
+            this.folder.create();
+            this.previousDir = System.getProperty(BinaryProfileCache.CACHE_DIR_PROPERTY);
+            System.setProperty(BinaryProfileCache.CACHE_DIR_PROPERTY, this.folder.getRoot().getPath());
+        }
+
+        @Override
+        protected void after() {
+            if (this.previousDir == null) {
+                System.clearProperty(BinaryProfileCache.CACHE_DIR_PROPERTY);
+            } else {
+                System.setProperty(BinaryProfileCache.CACHE_DIR_PROPERTY, this.previousDir);
+            }
+            this.folder.delete();
+        }
+
+        /**
+         * @return the number of profiles stored in the temporary cache
+         */
+        int storedCount() {
+            String[] stored = BinaryProfileCache.defaultInstance().getVersionDirectory().list();
+            return stored == null ? 0 : stored.length;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa.test;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.verapdf.gf.foundry.VeraGreenfieldFoundryProvider;
+import org.verapdf.pdfa.Foundries;
+import org.verapdf.pdfa.flavours.PDFAFlavour;
+import org.verapdf.pdfa.qa.BinaryProfileCache;
+import org.verapdf.pdfa.validation.profiles.Profiles;
+import org.verapdf.pdfa.validation.profiles.ValidationProfile;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+public class BinaryProfileCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testBinaryMatchesXml() throws Exception {
+        BinaryProfileCache cache = BinaryProfileCache.fromDirectory(this.folder.getRoot());
+        for (PDFAFlavour flavour : new PDFAFlavour[] { PDFAFlavour.PDFA_1_B, PDFAFlavour.PDFA_2_A,
+                PDFAFlavour.PDFUA_1 }) {
+            ValidationProfile original = Profiles.getVeraProfileDirectory().getValidationProfileByFlavour(flavour);
+            byte[] xml = Profiles.profileToXml(original, true, false).getBytes(StandardCharsets.UTF_8);
+            ValidationProfile parsed = cache.profileFromXml(xml);
+            assertEquals(Profiles.profileFromXml(new ByteArrayInputStream(xml)), parsed);
+            ValidationProfile loaded = cache.profileFromXml(xml);
+            assertNotSame(parsed, loaded);
+            assertEquals(parsed, loaded);
+            assertEquals(parsed.getRules(), loaded.getRules());
+            assertEquals(parsed.getVariables(), loaded.getVariables());
+            assertEquals(Profiles.profileToXml(parsed, true, false), Profiles.profileToXml(loaded, true, false));
+        }
+        File[] stored = cache.getVersionDirectory().listFiles();
+        assertEquals(3, stored.length);
+    }
+
+    @Test
+    public void testOtherLibraryVersionsMissed() throws Exception {
+        BinaryProfileCache cache = BinaryProfileCache.fromDirectory(this.folder.getRoot());
+        ValidationProfile original = Profiles.getVeraProfileDirectory()
+                .getValidationProfileByFlavour(PDFAFlavour.PDFA_1_B);
+        byte[] xml = Profiles.profileToXml(original, true, false).getBytes(StandardCharsets.UTF_8);
+        File binary = new File(cache.getVersionDirectory(), DigestUtils.sha1Hex(xml) + ".vprf");
+        binary.getParentFile().mkdirs();
+        byte[] libraries = "other 0.1".getBytes(StandardCharsets.UTF_8);
+        try (DataOutputStream output = new DataOutputStream(new FileOutputStream(binary))) {
+            output.writeInt(0x56505246);
+            output.writeInt(2);
+            output.writeInt(1);
+            output.writeInt(libraries.length);
+            output.write(libraries);
+        }
+        assertEquals(Profiles.profileFromXml(new ByteArrayInputStream(xml)), cache.profileFromXml(xml));
+        assertNotNull(cache.profileFromSha1(DigestUtils.sha1Hex(xml)));
+    }
+
+    @Test
+    public void testVersionDirectoryIndependentOfFoundry() throws Exception {
+        // A fresh loader, so the foundry hasn't registered its details whatever ran before
+        List<URL> urls = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            urls.add(new File(entry).toURI().toURL());
+        }
+        try (URLClassLoader loader = new URLClassLoader(urls.toArray(new URL[0]), null)) {
+            Class<?> cacheClass = loader.loadClass(BinaryProfileCache.class.getName());
+            Method fromDirectory = cacheClass.getMethod("fromDirectory", File.class);
+            Method getVersionDirectory = cacheClass.getMethod("getVersionDirectory");
+            Object before = getVersionDirectory.invoke(fromDirectory.invoke(null, this.folder.getRoot()));
+            loader.loadClass(VeraGreenfieldFoundryProvider.class.getName()).getMethod("initialise").invoke(null);
+            Class<?> foundries = loader.loadClass(Foundries.class.getName());
+            Object foundry = foundries.getMethod("defaultInstance").invoke(null);
+            foundries.getMethod("defaultInstance").getReturnType().getMethod("getDetails").invoke(foundry);
+            Object after = getVersionDirectory.invoke(fromDirectory.invoke(null, this.folder.getRoot()));
+            assertEquals(before, after);
+        }
+    }
+
+    @Test
+    public void testPrune() throws Exception {
+        BinaryProfileCache cache = BinaryProfileCache.fromDirectory(this.folder.getRoot());
+        byte[] xml = Profiles.profileToXml(
+                Profiles.getVeraProfileDirectory().getValidationProfileByFlavour(PDFAFlavour.PDFA_1_B), true, false)
+                .getBytes(StandardCharsets.UTF_8);
+        cache.profileFromXml(xml);
+        File unused = new File(cache.getVersionDirectory(), "unused.vprf");
+        Files.write(unused.toPath(), new byte[1]);
+        assertTrue(unused.setLastModified(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(60)));
+        File oldVersion = this.folder.newFolder("1-0123456789ab");
+        Files.write(new File(oldVersion, "old.vprf").toPath(), new byte[1]);
+        Files.write(new File(this.folder.getRoot(), "flat.vprf").toPath(), new byte[1]);
+        File other = this.folder.newFolder("other");
+
+        assertEquals(3, cache.prune(TimeUnit.DAYS.toMillis(30)));
+        assertFalse(unused.exists());
+        assertFalse(oldVersion.exists());
+        assertTrue(other.exists());
+        assertNotNull(cache.profileFromSha1(DigestUtils.sha1Hex(xml)));
+    }
+}
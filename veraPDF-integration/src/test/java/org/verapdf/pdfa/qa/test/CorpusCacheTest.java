@@ -0,0 +1,164 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa.test;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.verapdf.pdfa.qa.CorpusCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+@SuppressWarnings("static-method")
+public class CorpusCacheTest {
+    private static final String ETAG = "\"v1\"";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger downloads = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+    private volatile byte[] content = "corpus-v1".getBytes(StandardCharsets.UTF_8);
+    private volatile String etag = ETAG;
+    private HttpServer server;
+    private URL url;
+
+    @Before
+    public void startServer() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/corpus.zip", exchange -> {
+            if (this.etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                this.notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                this.downloads.incrementAndGet();
+                exchange.getResponseHeaders().add("ETag", this.etag);
+                exchange.sendResponseHeaders(200, this.content.length);
+                try (OutputStream body = exchange.getResponseBody()) {
+                    body.write(this.content);
+                }
+            }
+            exchange.close();
+        });
+        this.server.start();
+        this.url = new URL("http://127.0.0.1:" + this.server.getAddress().getPort() + "/corpus.zip");
+    }
+
+    @After
+    public void stopServer() {
+        this.server.stop(0);
+    }
+
+    @Test
+    public void testWarmCacheRevalidates() throws IOException {
+        CorpusCache cache = CorpusCache.fromValues(this.folder.newFolder("cache"), false);
+        File first = cache.fetch(this.url);
+        File second = cache.fetch(this.url);
+        assertEquals(first, second);
+        assertEquals(1, this.downloads.get());
+        assertEquals(1, this.notModified.get());
+        assertArrayEquals(this.content, Files.readAllBytes(second.toPath()));
+        assertEquals(DigestUtils.sha1Hex(this.content), cache.getHexSha1(this.url));
+    }
+
+    @Test
+    public void testChangedResourceIsDownloaded() throws IOException {
+        CorpusCache cache = CorpusCache.fromValues(this.folder.newFolder("cache"), false);
+        File first = cache.fetch(this.url);
+        this.content = "corpus-v2".getBytes(StandardCharsets.UTF_8);
+        this.etag = "\"v2\"";
+        File second = cache.fetch(this.url);
+        assertNotEquals(first, second);
+        assertEquals(2, this.downloads.get());
+        assertArrayEquals(this.content, Files.readAllBytes(second.toPath()));
+    }
+
+    @Test
+    public void testSupersededObjectDeleted() throws IOException {
+        CorpusCache cache = CorpusCache.fromValues(this.folder.newFolder("cache"), false);
+        File first = cache.fetch(this.url);
+        File extracted = new File(cache.getExtractedDirectory(first.getName()), "items/item.pdf");
+        extracted.getParentFile().mkdirs();
+        Files.write(extracted.toPath(), this.content);
+        this.content = "corpus-v2".getBytes(StandardCharsets.UTF_8);
+        this.etag = "\"v2\"";
+        File second = cache.fetch(this.url);
+        assertTrue(second.isFile());
+        assertFalse(first.exists());
+        assertFalse(cache.getExtractedDirectory(first.getName()).exists());
+    }
+
+    @Test
+    public void testSharedObjectKept() throws IOException {
+        File source = this.folder.newFile("local.zip");
+        Files.write(source.toPath(), this.content);
+        CorpusCache cache = CorpusCache.fromValues(this.folder.newFolder("cache"), false);
+        File first = cache.fetch(this.url);
+        assertEquals(first, cache.fetch(source.toURI().toURL()));
+        this.content = "corpus-v2".getBytes(StandardCharsets.UTF_8);
+        this.etag = "\"v2\"";
+        assertNotEquals(first, cache.fetch(this.url));
+        assertTrue(first.isFile());
+        assertEquals(first, cache.fetch(source.toURI().toURL()));
+    }
+
+    @Test
+    public void testOfflineUsesCachedCopy() throws IOException {
+        File root = this.folder.newFolder("cache");
+        File online = CorpusCache.fromValues(root, false).fetch(this.url);
+        this.server.stop(0);
+        File offline = CorpusCache.fromValues(root, true).fetch(this.url);
+        assertEquals(online, offline);
+        assertEquals(1, this.downloads.get());
+        assertEquals(0, this.notModified.get());
+    }
+
+    @Test(expected = IOException.class)
+    public void testOfflineWithoutCachedCopy() throws IOException {
+        CorpusCache.fromValues(this.folder.newFolder("cache"), true).fetch(this.url);
+    }
+
+    @Test
+    public void testFileUrl() throws IOException {
+        File source = this.folder.newFile("local.zip");
+        Files.write(source.toPath(), this.content);
+        CorpusCache cache = CorpusCache.fromValues(this.folder.newFolder("cache"), false);
+        File cached = cache.fetch(source.toURI().toURL());
+        assertArrayEquals(this.content, Files.readAllBytes(cached.toPath()));
+        assertEquals(cached, cache.fetch(source.toURI().toURL()));
+    }
+}
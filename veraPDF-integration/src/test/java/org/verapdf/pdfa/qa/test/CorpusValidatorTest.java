@@ -0,0 +1,123 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa.test;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.verapdf.gf.foundry.VeraGreenfieldFoundryProvider;
+import org.verapdf.pdfa.flavours.PDFAFlavour;
+import org.verapdf.pdfa.qa.AbstractTestCorpus.Corpus;
+import org.verapdf.pdfa.qa.CorpusDetails;
+import org.verapdf.pdfa.qa.CorpusValidator;
+import org.verapdf.pdfa.qa.JsonLinesResultSink;
+import org.verapdf.pdfa.qa.ResultSet;
+import org.verapdf.pdfa.qa.TestCorpus;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+@SuppressWarnings("static-method")
+public class CorpusValidatorTest {
+    private static final String ITEM = "veraPDF test suite 6-1-2-t01-fail-a.pdf";
+
+    @BeforeClass
+    public static void initialise() {
+        VeraGreenfieldFoundryProvider.initialise();
+    }
+
+    @Test
+    public void testUnparseableItemNamed() throws IOException {
+        StringWriter output = new StringWriter();
+        ResultSet resultSet;
+        try (JsonLinesResultSink sink = JsonLinesResultSink.fromWriter(output)) {
+            resultSet = CorpusValidator.fromValues(1, false).validate(new UnparseableCorpus(), PDFAFlavour.PDFA_1_B,
+                    sink);
+        }
+        assertEquals(1, resultSet.getExceptions().size());
+        ResultSet.Incomplete incomplete = resultSet.getExceptions().iterator().next();
+        assertNull(incomplete.getCorpusItemId());
+        assertEquals(ITEM, incomplete.getItemName());
+        assertTrue(output.toString(), output.toString().startsWith("{\"item\":\"" + ITEM + "\",\"exception\":"));
+    }
+
+    private static final class UnparseableCorpus implements TestCorpus {
+        @Override
+        public CorpusDetails getDetails() {
+            return new CorpusDetails() {
+                @Override
+                public String getName() {
+                    return "unparseable";
+                }
+
+                @Override
+                public String getDescription() {
+                    return "A corpus with an item that isn't a PDF";
+                }
+
+                @Override
+                public String getHexSha1() {
+                    return "";
+                }
+            };
+        }
+
+        @Override
+        public int getItemCount() {
+            return 1;
+        }
+
+        @Override
+        public Set<String> getItemNames() {
+            return Collections.singleton(ITEM);
+        }
+
+        @Override
+        public Set<String> getItemNamesForFlavour(PDFAFlavour flavour) {
+            return getItemNames();
+        }
+
+        @Override
+        public InputStream getItemStream(String itemName) {
+            return new ByteArrayInputStream("not a PDF".getBytes(StandardCharsets.US_ASCII));
+        }
+
+        @Override
+        public File getItemFile(String itemName) throws IOException {
+            throw new IOException("Items are only available as streams");
+        }
+
+        @Override
+        public Corpus getType() {
+            return Corpus.VERA;
+        }
+    }
+}
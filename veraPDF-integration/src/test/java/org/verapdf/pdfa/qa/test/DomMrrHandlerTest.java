@@ -0,0 +1,128 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa.test;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.verapdf.core.VeraPDFException;
+import org.verapdf.gf.foundry.VeraGreenfieldFoundryProvider;
+import org.verapdf.metadata.fixer.FixerFactory;
+import org.verapdf.pdfa.flavours.PDFAFlavour;
+import org.verapdf.pdfa.qa.PolicyTemplatesCache;
+import org.verapdf.pdfa.validation.profiles.Profiles;
+import org.verapdf.pdfa.validation.validators.ValidatorConfigBuilder;
+import org.verapdf.processor.BatchProcessingHandler;
+import org.verapdf.processor.BatchProcessor;
+import org.verapdf.processor.DomMrrHandler;
+import org.verapdf.processor.FormatOption;
+import org.verapdf.processor.ProcessorFactory;
+import org.verapdf.processor.TaskType;
+import org.verapdf.processor.reports.ItemDetails;
+
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.dom.DOMSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+public class DomMrrHandlerTest {
+    private static final String PDF = "/org/verapdf/integration/tests/test-resources/feature-tests/Pages.pdf";
+    private static final byte[] POLICY = ("<?xml version=\"1.0\"?>"
+            + "<sch:schema xmlns:sch=\"http://purl.oclc.org/dsdl/schematron\" queryBinding=\"xslt\">"
+            + "<sch:pattern name=\"rules\"><sch:rule context=\"/report/jobs/job/validationReport/details/rule\">"
+            + "<sch:assert test=\"@status = 'passed'\">Rule failed</sch:assert></sch:rule>"
+            + "<sch:rule context=\"/report/jobs/job/validationReport\">"
+            + "<sch:assert test=\"count(details/*) = 0\">Has details</sch:assert></sch:rule></sch:pattern>"
+            + "</sch:schema>").getBytes(StandardCharsets.UTF_8);
+
+    @BeforeClass
+    public static void initialise() {
+        VeraGreenfieldFoundryProvider.initialise();
+    }
+
+    @Test
+    public void testMatchesSerialisedReport() throws IOException, VeraPDFException {
+        BatchProcessor processor = ProcessorFactory.fileBatchProcessor(ProcessorFactory.fromValues(
+                new ValidatorConfigBuilder().flavour(PDFAFlavour.PDFA_1_B).recordPasses(true).maxFails(0).build(),
+                null, null, FixerFactory.configFromValues("test"), EnumSet.of(TaskType.VALIDATE),
+                Profiles.defaultProfile(), null));
+        ByteArrayOutputStream mrr = new ByteArrayOutputStream();
+        process(processor, ProcessorFactory.getHandler(FormatOption.MRR, false, mrr, false));
+        DomMrrHandler domHandler = DomMrrHandler.newInstance(false);
+        process(processor, domHandler);
+
+        PolicyTemplatesCache policies = PolicyTemplatesCache.fromMaxSize(1);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        policies.applyPolicy(POLICY, new ByteArrayInputStream(mrr.toByteArray()), expected);
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        policies.applyPolicy(POLICY, new DOMSource(domHandler.getDocument()), actual);
+        assertTrue(expected.toString("UTF-8").contains("failed-assert"));
+        assertEquals(expected.toString("UTF-8"), actual.toString("UTF-8"));
+    }
+
+    /**
+     * {@link DomMrrHandler} subclasses the library's package private
+     * {@code MrrHandler} and replaces its {@code writer} field, neither is
+     * public API. This fails if a library update changes either of them.
+     */
+    @Test
+    public void testLibraryInternalsUnchanged() throws ClassNotFoundException {
+        Class<?> mrrHandler = Class.forName("org.verapdf.processor.MrrHandler");
+        assertEquals("DomMrrHandler must extend MrrHandler", mrrHandler, DomMrrHandler.class.getSuperclass());
+        assertFalse("org.verapdf.processor is sealed, DomMrrHandler can't share it",
+                mrrHandler.getPackage().isSealed());
+        Constructor<?> constructor;
+        try {
+            constructor = mrrHandler.getDeclaredConstructor(Writer.class, boolean.class);
+        } catch (NoSuchMethodException excep) {
+            throw new AssertionError("MrrHandler(Writer, boolean) has gone, DomMrrHandler needs updating", excep);
+        }
+        assertFalse("MrrHandler(Writer, boolean) is private", Modifier.isPrivate(constructor.getModifiers()));
+        Field writer;
+        try {
+            writer = Class.forName("org.verapdf.processor.AbstractXmlHandler").getDeclaredField("writer");
+        } catch (NoSuchFieldException excep) {
+            throw new AssertionError("AbstractXmlHandler.writer has gone, DomMrrHandler needs updating", excep);
+        }
+        assertEquals("AbstractXmlHandler.writer changed type", XMLStreamWriter.class, writer.getType());
+        assertTrue("AbstractXmlHandler.writer isn't protected", Modifier.isProtected(writer.getModifiers()));
+        assertFalse("AbstractXmlHandler.writer is final", Modifier.isFinal(writer.getModifiers()));
+    }
+
+    private static void process(final BatchProcessor processor, final BatchProcessingHandler handler)
+            throws IOException, VeraPDFException {
+        try (InputStream pdf = DomMrrHandlerTest.class.getResourceAsStream(PDF)) {
+            processor.process(ItemDetails.fromValues("Pages.pdf"), pdf, handler);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa.test;
+
+import org.junit.Test;
+import org.verapdf.pdfa.flavours.PDFAFlavour;
+import org.verapdf.pdfa.flavours.PDFFlavours;
+import org.verapdf.pdfa.qa.FlavourClassifier;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+@SuppressWarnings("static-method")
+public class FlavourClassifierTest {
+    private static final String[] ITEMS = { "veraPDF-corpus-staging/PDF_A-1b/6.1 File structure/veraPDF test suite 6-1-2-t01-fail-a.pdf",
+            "veraPDF-corpus-staging/PDF_A-2a/6.2 Graphics/veraPDF test suite 6-2-2-t01-pass-a.pdf",
+            "veraPDF-corpus-staging/PDF_A-4/6.1 File structure/veraPDF test suite 6-1-3-t01-pass-a.pdf",
+            "veraPDF-corpus-staging/PDF_A-4e/6.2 Graphics/veraPDF test suite 6-2-1-t01-pass-a.pdf",
+            "veraPDF-corpus-staging/PDF_A-4f/6.9 Embedded files/veraPDF test suite 6-9-t01-fail-a.pdf",
+            "veraPDF-corpus-staging/PDF_UA-1/7.1 General/veraPDF test suite 7-1-t01-pass-a.pdf",
+            "veraPDF-corpus-staging/PDF_UA-2/8.2 Logical structure/veraPDF test suite 8-2-t01-fail-a.pdf",
+            "veraPDF-corpus-staging/Autodetect/PDF_A-2b-autodetect-t01.pdf",
+            "veraPDF-corpus-staging/TWG test files/TWG_PDFA-1b_example.pdf",
+            "pdfa-testsuite-master/pdfa2-6-2-3-t01-fail.pdf",
+            "Isartor testsuite/PDFA-1b/6.1 File structure/isartor-6-1-2-t01-fail-a.pdf" };
+
+    @Test
+    public void testMatchesRegexClassification() {
+        for (String item : ITEMS) {
+            Set<PDFAFlavour> classified = FlavourClassifier.classify(item);
+            for (PDFAFlavour flavour : PDFAFlavour.values()) {
+                assertEquals(item + " " + flavour, regexCheckFlavour(item, flavour), classified.contains(flavour));
+            }
+        }
+    }
+
+    @Test
+    public void testPdfa4ExcludesProfiles() {
+        assertEquals(EnumSet.of(PDFAFlavour.PDFA_4_E), FlavourClassifier.classify("PDF_A-4e/test.pdf"));
+        assertEquals(EnumSet.of(PDFAFlavour.PDFA_4), FlavourClassifier.classify("PDF_A-4/test.pdf"));
+        assertTrue(FlavourClassifier.classify("PDFA-4/test.pdf").isEmpty());
+    }
+
+    @Test
+    public void testUnclassified() {
+        assertTrue(FlavourClassifier.classify("other/test.pdf").isEmpty());
+    }
+
+    private static boolean regexCheckFlavour(final String item, final PDFAFlavour flavour) {
+        if (flavour == PDFAFlavour.NO_FLAVOUR) {
+            return item.contains("Autodetect");
+        }
+        if (flavour == PDFAFlavour.PDFUA_1) {
+            return item.contains("PDF_UA-1");
+        }
+        if (PDFFlavours.isWTPDFFlavour(flavour) || flavour == PDFAFlavour.PDFUA_2) {
+            return item.contains("PDF_UA-2");
+        }
+        if (flavour == PDFAFlavour.PDFA_4) {
+            return item.contains("PDF_A-4") && !regexMatchFlavour(item, PDFAFlavour.PDFA_4_E)
+                    && !regexMatchFlavour(item, PDFAFlavour.PDFA_4_F);
+        }
+        return regexMatchFlavour(item, flavour);
+    }
+
+    private static boolean regexMatchFlavour(final String item, final PDFAFlavour flavour) {
+        return item.matches(String.format(".*PDF_?A-%s.*", flavour.getId()));
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa.test;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.verapdf.pdfa.qa.PerformanceBaseline;
+import org.verapdf.pdfa.qa.PerformanceBaseline.Recorder;
+import org.verapdf.pdfa.qa.PerformanceBaseline.Thresholds;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+@SuppressWarnings("static-method")
+public class PerformanceBaselineTest {
+    private static final String SET = "veraPDF-1b";
+    private static final int ITEMS = 40;
+    private static final Thresholds THRESHOLDS = Thresholds.fromValues(0.25, 5, 0.25, 16, 10);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        PerformanceBaseline baseline = baseline(1.0, 0, 1.0, 0);
+        File file = this.folder.newFile(PerformanceBaseline.FILE_NAME);
+        baseline.write(file);
+        PerformanceBaseline read = PerformanceBaseline.read(file);
+        assertEquals(baseline.getSetNames(), read.getSetNames());
+        assertEquals(baseline.getP50(SET), read.getP50(SET), 0.0);
+        assertEquals(baseline.getP95(SET), read.getP95(SET), 0.0);
+        assertEquals(59, read.getPeakMemory(SET));
+    }
+
+    @Test
+    public void testNoRegression() {
+        assertTrue(baseline(1.05, 0, 1.05, 0).regressionsFrom(baseline(1.0, 0, 1.0, 0), THRESHOLDS).isEmpty());
+    }
+
+    @Test
+    public void testSingleSlowItemIgnored() {
+        assertTrue(baseline(1.0, 1, 1.0, 0).regressionsFrom(baseline(1.0, 0, 1.0, 0), THRESHOLDS).isEmpty());
+    }
+
+    @Test
+    public void testUniformSlowdown() {
+        List<String> regressions = baseline(1.5, 0, 1.0, 0).regressionsFrom(baseline(1.0, 0, 1.0, 0), THRESHOLDS);
+        assertEquals(2, regressions.size());
+        assertTrue(regressions.get(0).contains("p50"));
+        assertTrue(regressions.get(1).contains("p95"));
+    }
+
+    @Test
+    public void testMemoryRegression() {
+        List<String> regressions = baseline(1.0, 0, 2.0, 0).regressionsFrom(baseline(1.0, 0, 1.0, 0), THRESHOLDS);
+        assertEquals(2, regressions.size());
+        assertTrue(regressions.get(0).contains("p50 item allocation"));
+        assertTrue(regressions.get(1).contains("p95 item allocation"));
+    }
+
+    @Test
+    public void testSingleMemoryHungryItemIgnored() {
+        assertTrue(baseline(1.0, 0, 1.0, 1).regressionsFrom(baseline(1.0, 0, 1.0, 0), THRESHOLDS).isEmpty());
+    }
+
+    @Test
+    public void testUnmeasuredMemoryIgnored() {
+        Recorder before = new Recorder();
+        Recorder after = new Recorder();
+        for (int index = 0; index < ITEMS; index++) {
+            before.add(SET, "item-" + index, 100, -1);
+            after.add(SET, "item-" + index, 100, 500);
+        }
+        assertTrue(after.build().regressionsFrom(before.build(), THRESHOLDS).isEmpty());
+    }
+
+    @Test
+    public void testSmallSetsIgnored() {
+        Recorder before = new Recorder();
+        Recorder after = new Recorder();
+        for (int index = 0; index < 5; index++) {
+            before.add(SET, "item-" + index, 100, 10);
+            after.add(SET, "item-" + index, 1000, 10);
+        }
+        assertTrue(after.build().regressionsFrom(before.build(), THRESHOLDS).isEmpty());
+    }
+
+    /**
+     * Items take 50 to 245 ms scaled by {@code factor}, the first
+     * {@code slowItems} take 10 times as long. They allocate 20 to 59 MB scaled
+     * by {@code memoryFactor}, the first {@code hungryItems} allocate 10 times
+     * as much.
+     */
+    private static PerformanceBaseline baseline(final double factor, final int slowItems, final double memoryFactor,
+            final int hungryItems) {
+        Recorder recorder = new Recorder();
+        for (int index = 0; index < ITEMS; index++) {
+            long millis = Math.round((50 + index * 5) * factor) * (index < slowItems ? 10 : 1);
+            long memory = Math.round((20 + index) * memoryFactor) * (index < hungryItems ? 10 : 1);
+            recorder.add(SET, "item-" + index, millis, memory);
+        }
+        return recorder.build();
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa.test;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.verapdf.pdfa.qa.FailedPolicyCheck;
+import org.verapdf.pdfa.qa.RegressionTestingHelper;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+public class PolicyReportReaderTest {
+    private static final String MRR = "<report><jobs><job><validationReport isCompliant=\"false\"><details>"
+            + "<rule status=\"passed\" clause=\"1\"/><rule status=\"failed\" testNumber=\"3\" clause=\"2\">"
+            + "<check status=\"failed\"/></rule></details></validationReport>"
+            + "<featuresReport><informationDict><entry key=\"Title\">T</entry></informationDict></featuresReport>"
+            + "</job></jobs></report>";
+    private static final String[] LOCATIONS = { "/report/jobs/job/validationReport/details/rule[2]",
+            "/report/jobs/job/validationReport", "/report/jobs/job/validationReport/details/rule[2]/check",
+            "/report/jobs/job/featuresReport/informationDict/entry/@key",
+            "/report/jobs/job/validationReport/details/rule[@clause='1']" };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testMatchesXPathEvaluation() throws Exception {
+        File mrr = this.folder.newFile("report.mrr");
+        Files.write(mrr.toPath(), MRR.getBytes(StandardCharsets.UTF_8));
+        StringBuilder svrl = new StringBuilder("<svrl:schematron-output xmlns:svrl=\"http://purl.oclc.org/dsdl/svrl\">");
+        for (int i = 0; i < LOCATIONS.length; i++) {
+            svrl.append("<svrl:fired-rule context=\"/report\"/><svrl:failed-assert test=\"test-").append(i)
+                    .append("\" location=\"").append(LOCATIONS[i]).append("\"><svrl:text>Message ").append(i)
+                    .append("</svrl:text></svrl:failed-assert>");
+        }
+        svrl.append("</svrl:schematron-output>");
+        File svrlFile = this.folder.newFile("report.svrl");
+        Files.write(svrlFile.toPath(), svrl.toString().getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(LOCATIONS.length, RegressionTestingHelper.countFailedPolicyJobs(svrlFile));
+        List<FailedPolicyCheck> checks = RegressionTestingHelper.getFailedChecks(svrlFile, mrr);
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(mrr);
+        for (int i = 0; i < LOCATIONS.length; i++) {
+            String location = LOCATIONS[i].replace("/@key", "");
+            Element node = (Element) XPathFactory.newInstance().newXPath().evaluate(location, document,
+                    XPathConstants.NODE);
+            FailedPolicyCheck expected = new FailedPolicyCheck(node, "Message " + i, "test-" + i);
+            assertEquals(expected.toString(), checks.get(i).toString());
+            assertEquals(expected.getErrorMessage(), checks.get(i).getErrorMessage());
+        }
+    }
+}
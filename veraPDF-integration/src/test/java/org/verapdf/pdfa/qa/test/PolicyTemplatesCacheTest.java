@@ -0,0 +1,116 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa.test;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.verapdf.core.VeraPDFException;
+import org.verapdf.pdfa.qa.PolicyTemplatesCache;
+import org.verapdf.pdfa.qa.RegressionTestingHelper;
+import org.verapdf.policy.PolicyChecker;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+@SuppressWarnings("static-method")
+public class PolicyTemplatesCacheTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String MRR = "<report><jobs><job><validationReport isCompliant=\"false\"/></job></jobs></report>";
+
+    @Test
+    public void testMatchesPolicyChecker() throws VeraPDFException {
+        byte[] policy = policy("true()");
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        PolicyChecker.applyPolicy(new ByteArrayInputStream(policy), mrr(), expected, false);
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        PolicyTemplatesCache.fromMaxSize(1).applyPolicy(policy, mrr(), actual);
+        assertEquals(expected.toString(), actual.toString());
+        assertTrue(actual.toString().contains("failed-assert"));
+    }
+
+    @Test
+    public void testCompilesOncePerPolicy() throws VeraPDFException {
+        PolicyTemplatesCache cache = PolicyTemplatesCache.fromMaxSize(2);
+        for (int i = 0; i < 3; i++) {
+            cache.applyPolicy(policy("true()"), mrr(), new ByteArrayOutputStream());
+        }
+        assertEquals(1, cache.getCompilations());
+        cache.applyPolicy(policy("false()"), mrr(), new ByteArrayOutputStream());
+        cache.applyPolicy(policy("1 = 1"), mrr(), new ByteArrayOutputStream());
+        assertEquals(2, cache.size());
+        cache.applyPolicy(policy("true()"), mrr(), new ByteArrayOutputStream());
+        assertEquals(4, cache.getCompilations());
+    }
+
+    @Test
+    public void testPolicyFilesDispatchedByExtension() throws Exception {
+        File mrr = this.folder.newFile("mrr.xml");
+        Files.write(mrr.toPath(), MRR.getBytes(StandardCharsets.UTF_8));
+        File result = this.folder.newFile("result.xml");
+        File schematron = this.folder.newFile("policy.sch");
+        Files.write(schematron.toPath(), policy("true()"));
+        RegressionTestingHelper.applyPolicy(schematron, mrr, result);
+        assertTrue(read(result).contains("failed-assert"));
+        File xslt = this.folder.newFile("policy.xsl");
+        String stylesheet = "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+                + "<xsl:template match=\"/\"><applied/></xsl:template></xsl:stylesheet>";
+        Files.write(xslt.toPath(), stylesheet.getBytes(StandardCharsets.UTF_8));
+        RegressionTestingHelper.applyPolicy(xslt, mrr, result);
+        assertTrue(read(result).contains("<applied/>"));
+        File other = this.folder.newFile("policy.txt");
+        Files.write(other.toPath(), policy("true()"));
+        try {
+            RegressionTestingHelper.applyPolicy(other, mrr, result);
+            fail("Expected a policy with an unsupported extension to be rejected");
+        } catch (VeraPDFException excep) {
+            // Expected
+        }
+    }
+
+    private static String read(final File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static ByteArrayInputStream mrr() {
+        return new ByteArrayInputStream(MRR.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] policy(final String test) {
+        String schematron = "<?xml version=\"1.0\"?>"
+                + "<sch:schema xmlns:sch=\"http://purl.oclc.org/dsdl/schematron\" queryBinding=\"xslt\">"
+                + "<sch:pattern name=\"compliance\"><sch:rule context=\"/report/jobs/job/validationReport\">"
+                + "<sch:assert test=\"@isCompliant = 'true' or not(" + test + ")\">Not compliant</sch:assert>"
+                + "</sch:rule></sch:pattern></sch:schema>";
+        return schematron.getBytes(StandardCharsets.UTF_8);
+    }
+}
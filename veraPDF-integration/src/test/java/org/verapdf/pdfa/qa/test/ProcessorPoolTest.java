@@ -0,0 +1,62 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa.test;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.verapdf.gf.foundry.VeraGreenfieldFoundryProvider;
+import org.verapdf.pdfa.qa.ProcessorPool;
+import org.verapdf.processor.BatchProcessor;
+import org.verapdf.processor.ProcessorFactory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+@SuppressWarnings("static-method")
+public class ProcessorPoolTest {
+    @BeforeClass
+    public static void initialise() {
+        VeraGreenfieldFoundryProvider.initialise();
+    }
+
+    @Test
+    public void testReleasedProcessorsReused() {
+        ProcessorPool pool = ProcessorPool.newInstance();
+        AtomicInteger configs = new AtomicInteger();
+        BatchProcessor first = pool.acquire("1b", () -> {
+            configs.incrementAndGet();
+            return ProcessorFactory.defaultConfig();
+        });
+        BatchProcessor second = pool.acquire("1b", ProcessorFactory::defaultConfig);
+        assertNotSame(first, second);
+        pool.release("1b", first);
+        pool.release("1b", second);
+        assertEquals(2, pool.idleCount("1b"));
+        assertSame(second, pool.acquire("1b", ProcessorFactory::defaultConfig));
+        assertSame(first, pool.acquire("1b", ProcessorFactory::defaultConfig));
+        assertNotSame(first, pool.acquire("2b", ProcessorFactory::defaultConfig));
+        assertEquals(1, configs.get());
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa.test;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.verapdf.pdfa.qa.ProfileManifest;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+public class ProfileManifestTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRacyEditRehashed() throws Exception {
+        File manifestFile = new File(this.folder.getRoot(), "merge.manifest");
+        Path profile = this.folder.newFile("rule.xml").toPath();
+        FileTime modified = FileTime.fromMillis(System.currentTimeMillis());
+        write(profile, "first", modified);
+        ProfileManifest manifest = ProfileManifest.fromFile(manifestFile);
+        assertEquals(sha1("first"), manifest.sha1Of(profile));
+        manifest.save();
+
+        // Same size and timestamp, as an edit within the timestamp granularity would be
+        write(profile, "other", modified);
+        manifest = ProfileManifest.fromFile(manifestFile);
+        assertEquals(sha1("other"), manifest.sha1Of(profile));
+        assertEquals(1, manifest.getChangedCount());
+    }
+
+    @Test
+    public void testOldFileTrusted() throws Exception {
+        File manifestFile = new File(this.folder.getRoot(), "merge.manifest");
+        Path profile = this.folder.newFile("rule.xml").toPath();
+        FileTime modified = FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1));
+        write(profile, "first", modified);
+        ProfileManifest manifest = ProfileManifest.fromFile(manifestFile);
+        assertEquals(sha1("first"), manifest.sha1Of(profile));
+        manifest.save();
+
+        // Not read again, so the recorded hash is returned
+        write(profile, "other", modified);
+        manifest = ProfileManifest.fromFile(manifestFile);
+        assertEquals(sha1("first"), manifest.sha1Of(profile));
+        assertEquals(0, manifest.getChangedCount());
+
+        write(profile, "longer", modified);
+        manifest = ProfileManifest.fromFile(manifestFile);
+        assertEquals(sha1("longer"), manifest.sha1Of(profile));
+    }
+
+    private static void write(Path file, String content, FileTime modified) throws Exception {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, modified);
+    }
+
+    private static String sha1(String content) {
+        return DigestUtils.sha1Hex(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa.test;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.verapdf.pdfa.flavours.PDFAFlavour;
+import org.verapdf.pdfa.qa.ProfilesMerger;
+import org.verapdf.pdfa.qa.test.AtomicProfiles.TemporaryProfileCache;
+import org.verapdf.pdfa.validation.profiles.Profiles;
+import org.verapdf.pdfa.validation.profiles.RuleId;
+import org.verapdf.pdfa.validation.profiles.ValidationProfile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+public class ProfilesMergerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    @Rule
+    public TemporaryProfileCache profileCache = new TemporaryProfileCache();
+
+    @Test
+    public void testIncrementalMerge() throws Exception {
+        ValidationProfile profile = Profiles.getVeraProfileDirectory()
+                .getValidationProfileByFlavour(PDFAFlavour.PDFA_1_B);
+        List<org.verapdf.pdfa.validation.profiles.Rule> rules = new ArrayList<>(profile.getRules());
+        File root = this.folder.newFolder("1b");
+        for (int i = 0; i < 10; i++) {
+            AtomicProfiles.write(new File(root, "rule-" + i + ".xml"), rules.get(i), Collections.emptySet());
+        }
+        File manifestFile = new File(this.folder.getRoot(), "merge.manifest");
+
+        byte[] first = merge(root, manifestFile);
+        assertTrue(manifestFile.isFile());
+        assertEquals(10, Profiles.profileFromXml(new ByteArrayInputStream(first)).getRules().size());
+        assertEquals(10, this.profileCache.storedCount());
+        assertArrayEquals(first, merge(root, manifestFile));
+        assertEquals(10, this.profileCache.storedCount());
+
+        // Only the edited file is parsed, the others are loaded from the binary cache
+        AtomicProfiles.write(new File(root, "rule-3.xml"), rules.get(10), Collections.emptySet());
+        byte[] changed = merge(root, manifestFile);
+        assertEquals(11, this.profileCache.storedCount());
+        List<RuleId> ids = new ArrayList<>();
+        for (org.verapdf.pdfa.validation.profiles.Rule rule : Profiles
+                .profileFromXml(new ByteArrayInputStream(changed)).getRules()) {
+            ids.add(rule.getRuleId());
+        }
+        assertEquals(10, ids.size());
+        assertTrue(ids.contains(rules.get(10).getRuleId()));
+        assertFalse(ids.contains(rules.get(3).getRuleId()));
+    }
+
+    private static byte[] merge(File root, File manifestFile) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ProfilesMerger.mergeAtomicProfiles(output, new File[] { root }, "merged", "Merged rules", "test",
+                manifestFile);
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa.test;
+
+import org.junit.Test;
+import org.verapdf.pdfa.qa.RegressionExecutionOptions;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+public class RegressionExecutionOptionsTest {
+    @Test
+    public void testFromArgs() {
+        RegressionExecutionOptions options = RegressionExecutionOptions
+                .fromArgs(new String[] { "--timeout", "1.5", "--max-failures", "10", "--max-abandoned", "2",
+                        "--triage" });
+        assertEquals(1500, options.getTimeoutMillis());
+        assertEquals(10, options.getMaxFailures());
+        assertEquals(2, options.getMaxAbandoned());
+        assertTrue(options.isTriage());
+        options = RegressionExecutionOptions.fromArgs(new String[0]);
+        assertEquals(0, options.getTimeoutMillis());
+        assertEquals(0, options.getMaxFailures());
+        assertEquals(RegressionExecutionOptions.DEFAULT_MAX_ABANDONED, options.getMaxAbandoned());
+        assertFalse(options.isTriage());
+    }
+
+    @Test
+    public void testRecordPasses() {
+        byte[] failedOnly = "<sch:assert test=\"@failedChecks = 0\"/>".getBytes(StandardCharsets.UTF_8);
+        byte[] needsPasses = "<sch:assert test=\"@status = 'passed'\"/>".getBytes(StandardCharsets.UTF_8);
+        assertTrue(RegressionExecutionOptions.DEFAULT.recordPasses(failedOnly));
+        RegressionExecutionOptions triage = RegressionExecutionOptions.fromValues(0, 0, true);
+        assertFalse(triage.recordPasses(failedOnly));
+        assertTrue(triage.recordPasses(needsPasses));
+    }
+}
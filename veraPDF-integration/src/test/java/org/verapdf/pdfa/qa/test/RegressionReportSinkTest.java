@@ -0,0 +1,104 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa.test;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.verapdf.pdfa.flavours.PDFAFlavour;
+import org.verapdf.pdfa.qa.FailedPolicyCheck;
+import org.verapdf.pdfa.qa.JsonLinesRegressionSink;
+import org.verapdf.pdfa.qa.JUnitXmlRegressionSink;
+import org.verapdf.pdfa.qa.RegressionReportSink;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.File;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+public class RegressionReportSinkTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testJsonLines() throws Exception {
+        StringWriter writer = new StringWriter();
+        try (JsonLinesRegressionSink sink = JsonLinesRegressionSink.fromWriter(writer)) {
+            sink.fileChecked("a.pdf", PDFAFlavour.PDFA_1_B, 12, false, Collections.emptyList());
+            sink.fileChecked("b.pdf", PDFAFlavour.PDFA_2_B, 3, true, Collections.singletonList(failedCheck()));
+            sink.fileChecked("c.pdf", PDFAFlavour.PDFA_2_B, 0, false,
+                    Collections.singletonList(new FailedPolicyCheck("sch file is not found")));
+        }
+        String[] lines = writer.toString().split("\n");
+        assertEquals(3, lines.length);
+        assertEquals("{\"file\":\"a.pdf\",\"flavour\":\"1b\",\"durationMillis\":12,\"replayed\":false,"
+                + "\"outcome\":\"pass\",\"failures\":[]}", lines[0]);
+        assertEquals("{\"file\":\"b.pdf\",\"flavour\":\"2b\",\"durationMillis\":3,\"replayed\":true,"
+                + "\"outcome\":\"fail\",\"failures\":[{\"test\":\"@status = 'passed'\",\"message\":\"Rule \\\"6.1\\\" failed\","
+                + "\"location\":\"/report/rule[2]\",\"node\":\"rule\",\"attributes\":{\"clause\":\"6.1\",\"status\":\"failed\"}}]}",
+                lines[1]);
+        assertTrue(lines[2].contains("\"outcome\":\"error\""));
+    }
+
+    @Test
+    public void testJUnitXml() throws Exception {
+        File report = new File(this.folder.getRoot(), "report.xml");
+        try (RegressionReportSink sink = RegressionReportSink.fromFile(report, "pdf")) {
+            assertTrue(sink instanceof JUnitXmlRegressionSink);
+            sink.fileChecked("a.pdf", PDFAFlavour.PDFA_1_B, 1500, false, Collections.emptyList());
+            sink.fileChecked("b.pdf", PDFAFlavour.PDFA_2_B, 3, false, Collections.singletonList(failedCheck()));
+            sink.fileChecked("c.pdf", PDFAFlavour.PDFA_2_B, 0, false,
+                    Collections.singletonList(new FailedPolicyCheck("sch file is not found")));
+        }
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(report);
+        assertEquals("testsuite", document.getDocumentElement().getTagName());
+        NodeList testCases = document.getElementsByTagName("testcase");
+        assertEquals(3, testCases.getLength());
+        Element passed = (Element) testCases.item(0);
+        assertEquals("a.pdf", passed.getAttribute("name"));
+        assertEquals("1.500", passed.getAttribute("time"));
+        assertEquals(0, passed.getElementsByTagName("failure").getLength());
+        Element failure = (Element) ((Element) testCases.item(1)).getElementsByTagName("failure").item(0);
+        assertEquals("@status = 'passed'", failure.getAttribute("type"));
+        assertEquals("Rule \"6.1\" failed", failure.getAttribute("message"));
+        assertTrue(failure.getTextContent().contains("/report/rule[2]"));
+        Element error = (Element) ((Element) testCases.item(2)).getElementsByTagName("error").item(0);
+        assertEquals("sch file is not found", error.getAttribute("message"));
+    }
+
+    private static FailedPolicyCheck failedCheck() {
+        Map<String, String> attributes = new TreeMap<>();
+        attributes.put("status", "failed");
+        attributes.put("clause", "6.1");
+        return new FailedPolicyCheck("rule", attributes, "/report/rule[2]", "Rule \"6.1\" failed",
+                "@status = 'passed'");
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa.test;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.verapdf.pdfa.qa.FailedPolicyCheck;
+import org.verapdf.pdfa.qa.RegressionResultStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+public class RegressionResultStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testOutcomesReplayed() throws IOException {
+        File file = new File(this.folder.getRoot(), "results.tsv");
+        RegressionResultStore store = RegressionResultStore.fromValues(file, false);
+        String passKey = store.keyFor("pdf1", "sch1", "flavour 1b");
+        String failKey = store.keyFor("pdf2", "sch1", "flavour 1b");
+        String errorKey = store.keyFor("pdf3", "sch1", "flavour 1b");
+        store.put(passKey, null);
+        Map<String, String> attributes = new TreeMap<>();
+        attributes.put("status", "failed");
+        attributes.put("test", "a=b\nc\\d");
+        store.put(failKey, Collections.singletonList(
+                new FailedPolicyCheck("rule", attributes, "/report/rule[2]", "Not\tok", "@status")));
+        store.put(errorKey, Collections.singletonList(new FailedPolicyCheck("Couldn't parse")));
+        store.save();
+
+        RegressionResultStore reloaded = RegressionResultStore.fromValues(file, false);
+        assertEquals(2, reloaded.size());
+        assertTrue(reloaded.get(passKey).isEmpty());
+        List<FailedPolicyCheck> failed = reloaded.get(failKey);
+        assertEquals("@status", failed.get(0).getTest());
+        assertEquals("Not\tok", failed.get(0).getErrorMessage());
+        assertEquals("/report/rule[2]", failed.get(0).getLocation());
+        assertEquals(attributes, failed.get(0).getAttributes());
+        assertEquals("{node: rule, attributes: [status=\"failed\", test=\"a=b\nc\\d\"]}", failed.get(0).getNode());
+        assertNull(reloaded.get(errorKey));
+        assertNotEquals(passKey, reloaded.keyFor("pdf1", "sch2", "flavour 1b"));
+        assertNull(RegressionResultStore.fromValues(file, true).get(passKey));
+    }
+
+    @Test
+    public void testOtherLibraryVersionsIgnored() throws IOException {
+        File file = new File(this.folder.getRoot(), "results.tsv");
+        Files.write(file.toPath(), "# veraPDF regression results, libraries other 0.1\nkey\tpass\n"
+                .getBytes(StandardCharsets.UTF_8));
+        assertEquals(0, RegressionResultStore.fromValues(file, false).size());
+    }
+}
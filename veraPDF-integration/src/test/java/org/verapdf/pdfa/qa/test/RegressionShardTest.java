@@ -0,0 +1,91 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa.test;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.verapdf.pdfa.qa.FailedPolicyCheck;
+import org.verapdf.pdfa.qa.RegressionShard;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+@SuppressWarnings("static-method")
+public class RegressionShardTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testShardsPartitionFiles() {
+        for (int i = 0; i < 500; i++) {
+            String fileName = "PDF_A-2b/6.1 File structure/test-" + i + ".pdf";
+            int owners = 0;
+            for (int index = 1; index <= 3; index++) {
+                if (RegressionShard.fromValues(index, 3).contains(fileName)) {
+                    owners++;
+                }
+            }
+            assertEquals(1, owners);
+            assertTrue(RegressionShard.ALL.contains(fileName));
+        }
+    }
+
+    @Test
+    public void testFromString() {
+        assertEquals(RegressionShard.fromValues(2, 4), RegressionShard.fromString("2/4"));
+        assertEquals(RegressionShard.fromValues(2, 4),
+                RegressionShard.fromArgs(new String[] { "--results", "out", "--shard", "2/4" }));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIndexOutOfRange() {
+        RegressionShard.fromString("5/4");
+    }
+
+    @Test
+    public void testMergeFailures() throws IOException {
+        File dir = this.folder.newFolder("results");
+        RegressionShard.fromValues(1, 2).writeFailures(dir, "pdf", Collections.singletonMap("a.pdf",
+                Arrays.asList(new FailedPolicyCheck("first\ttab"), new FailedPolicyCheck("second\nline"))));
+        RegressionShard.fromValues(2, 2).writeFailures(dir, "pdf", Collections.emptyMap());
+        Map<String, List<FailedPolicyCheck>> merged = RegressionShard.mergeFailures(dir, "pdf");
+        assertEquals(1, merged.size());
+        assertEquals("first\ttab", merged.get("a.pdf").get(0).toString());
+        assertEquals("second\nline", merged.get("a.pdf").get(1).toString());
+    }
+
+    @Test(expected = IOException.class)
+    public void testMergeMissingShard() throws IOException {
+        File dir = this.folder.newFolder("results");
+        RegressionShard.fromValues(1, 2).writeFailures(dir, "pdf", Collections.emptyMap());
+        RegressionShard.mergeFailures(dir, "pdf");
+    }
+}
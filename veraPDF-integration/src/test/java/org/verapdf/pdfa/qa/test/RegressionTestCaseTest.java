@@ -0,0 +1,64 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa.test;
+
+import org.junit.Test;
+import org.verapdf.pdfa.flavours.PDFAFlavour;
+import org.verapdf.pdfa.qa.RegressionTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+public class RegressionTestCaseTest {
+    @Test
+    public void testPolicyName() {
+        assertEquals("dir/test-1.sch", RegressionTestCase.policyName("dir/test-1.pdf"));
+    }
+
+    @Test
+    public void testLargestFirst() {
+        List<RegressionTestCase> testCases = new ArrayList<>();
+        testCases.add(testCase("small.pdf", 10));
+        testCases.add(testCase("unknown.pdf", -1));
+        testCases.add(testCase("large.pdf", 1000));
+        testCases.add(testCase("medium.pdf", 100));
+        testCases.sort(RegressionTestCase.LARGEST_FIRST);
+        assertEquals("large.pdf", testCases.get(0).getPdfName());
+        assertEquals("medium.pdf", testCases.get(1).getPdfName());
+        assertEquals("small.pdf", testCases.get(2).getPdfName());
+        assertEquals("unknown.pdf", testCases.get(3).getPdfName());
+    }
+
+    private static RegressionTestCase testCase(String pdfName, long size) {
+        ZipEntry pdf = new ZipEntry(pdfName);
+        if (size >= 0) {
+            pdf.setSize(size);
+        }
+        return RegressionTestCase.fromValues(pdf, new ZipEntry(RegressionTestCase.policyName(pdfName)),
+                PDFAFlavour.PDFA_1_B);
+    }
+}
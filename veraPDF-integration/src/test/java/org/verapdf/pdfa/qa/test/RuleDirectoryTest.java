@@ -0,0 +1,81 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa.test;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.verapdf.pdfa.flavours.PDFAFlavour;
+import org.verapdf.pdfa.qa.RuleDirectory;
+import org.verapdf.pdfa.qa.test.AtomicProfiles.TemporaryProfileCache;
+import org.verapdf.pdfa.validation.profiles.Profiles;
+import org.verapdf.pdfa.validation.profiles.ValidationProfile;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+public class RuleDirectoryTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    @Rule
+    public TemporaryProfileCache profileCache = new TemporaryProfileCache();
+
+    @Test
+    public void testLoadFromDir() throws Exception {
+        ValidationProfile profile = Profiles.getVeraProfileDirectory()
+                .getValidationProfileByFlavour(PDFAFlavour.PDFA_1_B);
+        List<org.verapdf.pdfa.validation.profiles.Rule> rules = new ArrayList<>(profile.getRules());
+        File root = this.folder.newFolder("1b");
+        for (int i = 0; i < 40; i++) {
+            File dir = new File(root, i % 2 == 0 ? "even/" + i : "odd");
+            AtomicProfiles.write(new File(dir, "rule-" + i + ".xml"), rules.get(i),
+                    Collections.singleton(Profiles.variableFromValues("var", "CosDocument", "0", "0")));
+        }
+        AtomicProfiles.write(new File(root, ".hidden/rule.xml"), rules.get(40), Collections.emptySet());
+
+        RuleDirectory directory = RuleDirectory.loadFromDir(root);
+        assertEquals(PDFAFlavour.PDFA_1_B, directory.getFlavour());
+        assertEquals(40, directory.size());
+        assertTrue(directory.getKeys().contains(rules.get(39).getRuleId()));
+        assertFalse(directory.getKeys().contains(rules.get(40).getRuleId()));
+        assertEquals(1, directory.getVariables().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testVariableClash() throws Exception {
+        ValidationProfile profile = Profiles.getVeraProfileDirectory()
+                .getValidationProfileByFlavour(PDFAFlavour.PDFA_1_B);
+        List<org.verapdf.pdfa.validation.profiles.Rule> rules = new ArrayList<>(profile.getRules());
+        File root = this.folder.newFolder("1b");
+        AtomicProfiles.write(new File(root, "a.xml"), rules.get(0),
+                Collections.singleton(Profiles.variableFromValues("var", "CosDocument", "0", "0")));
+        AtomicProfiles.write(new File(root, "b/b.xml"), rules.get(1),
+                Collections.singleton(Profiles.variableFromValues("var", "CosDocument", "1", "1")));
+        RuleDirectory.loadFromDir(root);
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * This file is part of veraPDF Quality Assurance, a module of the veraPDF project.
+ * Copyright (c) 2015, veraPDF Consortium <info@verapdf.org>
+ * All rights reserved.
+ *
+ * veraPDF Quality Assurance is free software: you can redistribute it and/or modify
+ * it under the terms of either:
+ *
+ * The GNU General public license GPLv3+.
+ * You should have received a copy of the GNU General Public License
+ * along with veraPDF Quality Assurance as the LICENSE.GPL file in the root of the source
+ * tree.  If not, see http://www.gnu.org/licenses/ or
+ * https://www.gnu.org/licenses/gpl-3.0.en.html.
+ *
+ * The Mozilla Public License MPLv2+.
+ * You should have received a copy of the Mozilla Public License along with
+ * veraPDF Quality Assurance as the LICENSE.MPL file in the root of the source tree.
+ * If a copy of the MPL was not distributed with this file, you can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ */
+package org.verapdf.pdfa.qa.test;
+
+import org.junit.Test;
+import org.verapdf.pdfa.qa.VariableRegistry;
+import org.verapdf.pdfa.validation.profiles.Profiles;
+import org.verapdf.pdfa.validation.profiles.Variable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:carl@openpreservation.org">Carl Wilson</a>
+ */
+public class VariableRegistryTest {
+    @Test
+    public void testEqualVariablesMerged() {
+        VariableRegistry registry = VariableRegistry.newInstance();
+        registry.addAll(Arrays.asList(variable("b", "0"), variable("a", "0")));
+        registry.addAll(Arrays.asList(variable("a", "0")));
+        assertFalse(registry.hasClashes());
+        registry.checkForClashes();
+        List<String> names = new ArrayList<>();
+        for (Variable variable : registry.getVariables()) {
+            names.add(variable.getName());
+        }
+        assertEquals(Arrays.asList("a", "b"), names);
+    }
+
+    @Test
+    public void testEveryClashReported() {
+        VariableRegistry registry = VariableRegistry.newInstance();
+        registry.addAll(Arrays.asList(variable("a", "0"), variable("b", "0"), variable("c", "0")));
+        registry.addAll(Arrays.asList(variable("a", "1"), variable("c", "1")));
+        registry.add(variable("a", "2"));
+        assertTrue(registry.hasClashes());
+        assertEquals(Arrays.asList("a", "c"), new ArrayList<>(registry.getClashes().keySet()));
+        assertEquals(3, registry.getClashes().get("a").size());
+        assertEquals("0", registry.getVariables().iterator().next().getDefaultValue());
+        try {
+            registry.checkForClashes();
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException excep) {
+            assertTrue(excep.getMessage().startsWith("Found different variables with the same name."));
+            assertTrue(excep.getMessage().contains("\n  a:"));
+            assertTrue(excep.getMessage().contains("\n  c:"));
+            assertFalse(excep.getMessage().contains("\n  b:"));
+        }
+    }
+
+    private static Variable variable(String name, String value) {
+        return Profiles.variableFromValues(name, "CosDocument", value, value);
+    }
+}
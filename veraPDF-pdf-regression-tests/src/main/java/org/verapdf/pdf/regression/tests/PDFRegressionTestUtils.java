@@ -3,16 +3,20 @@ package org.verapdf.pdf.regression.tests;
 import org.junit.Assert;
 import org.verapdf.pdfa.flavours.PDFAFlavour;
 import org.verapdf.pdfa.qa.FailedPolicyCheck;
+import org.verapdf.pdfa.qa.FlavourClassifier;
+import org.verapdf.pdfa.qa.RegressionExecutionOptions;
+import org.verapdf.pdfa.qa.RegressionReportSink;
+import org.verapdf.pdfa.qa.RegressionResultStore;
+import org.verapdf.pdfa.qa.RegressionShard;
 import org.verapdf.pdfa.qa.RegressionTestingHelper;
 
 import javax.xml.bind.JAXBException;
+import java.io.File;
 import java.io.IOException;
 import java.util.*;
-import java.util.stream.Collectors;
-
-import static org.verapdf.pdfa.qa.ZipBackedTestCorpus.checkFlavour;
 
 public class PDFRegressionTestUtils {
+    private static final String NAME = "pdf";
     private static final EnumSet<PDFAFlavour> flavours = EnumSet.of(PDFAFlavour.PDFA_1_A, PDFAFlavour.PDFA_1_B,
             PDFAFlavour.PDFA_2_A, PDFAFlavour.PDFA_2_B, PDFAFlavour.PDFA_2_U,
             PDFAFlavour.PDFA_3_A, PDFAFlavour.PDFA_3_B, PDFAFlavour.PDFA_3_U,
@@ -20,22 +24,58 @@ public class PDFRegressionTestUtils {
             PDFAFlavour.PDFUA_1, PDFAFlavour.PDFUA_2, PDFAFlavour.NO_FLAVOUR);
     private static final EnumMap<PDFAFlavour, Set<String>> filesByFlavour = new EnumMap<>(PDFAFlavour.class);
 
+    /**
+     * Runs the PDF regression tests. Use {@code --shard i/n} to run one of
+     * {@code n} shards of the test files, writing its failures to the
+     * {@code --results <dir>} directory, and {@code --merge <dir>} to merge the
+     * failures written by a complete set of shards. Outcomes are replayed
+     * from the previous run for unchanged files, use {@code --force} to check
+     * every file. Use {@code --report <file>} to stream each file's outcome to
+     * a JUnit XML report if the file name ends with {@code .xml}, or to a JSON
+     * lines report otherwise. {@code --timeout <s>} gives each file a time
+     * budget, with at most {@code --max-abandoned <n>} timed out files still
+     * stopping in the background, {@code --max-failures <n>} stops the run
+     * after {@code n} files fail their policies and {@code --triage} skips
+     * recording passed checks for files whose policies don't need them.
+     */
     public static void main(String[] args) {
-        test();
+        String mergeDir = RegressionShard.argument(args, "--merge");
+        if (mergeDir != null) {
+            merge(new File(mergeDir));
+        } else {
+            test(args);
+        }
     }
 
     public static void test() {
-        try {
-            RegressionTestingHelper helper = new RegressionTestingHelper(false);
+        test(new String[0]);
+    }
+
+    public static void test(String[] args) {
+        try (RegressionReportSink reportSink = RegressionReportSink.fromArgs(NAME, args)) {
+            RegressionShard shard = RegressionShard.fromArgs(args);
+            File resultsDir = RegressionShard.resultsDirFromArgs(args);
+            RegressionTestingHelper helper = new RegressionTestingHelper(false, shard, Integer.getInteger(
+                    RegressionTestingHelper.THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()).intValue());
+            helper.setResultStore(RegressionResultStore.fromArgs(NAME, args));
+            helper.setReportSink(reportSink);
+            helper.setExecutionOptions(RegressionExecutionOptions.fromArgs(args));
             if (filesByFlavour.isEmpty()) {
                 for (PDFAFlavour flavour : flavours) {
-                    Set<String> toAdd = helper.getPdfFileNames().stream().filter(s -> checkFlavour(s, flavour)).collect(Collectors.toSet());
-                    filesByFlavour.put(flavour, toAdd);
+                    filesByFlavour.put(flavour, new HashSet<>());
+                }
+                for (String fileName : helper.getPdfFileNames()) {
+                    for (PDFAFlavour flavour : FlavourClassifier.classify(fileName)) {
+                        if (flavours.contains(flavour)) {
+                            filesByFlavour.get(flavour).add(fileName);
+                        }
+                    }
                 }
             }
             Map<String, List<FailedPolicyCheck>> failedFiles = new HashMap<>();
-            for (PDFAFlavour flavour : flavours) {
-                helper.getFailedPolicyComplianceFiles(failedFiles, flavour, null, filesByFlavour.get(flavour));
+            helper.getFailedPolicyComplianceFiles(failedFiles, filesByFlavour, null);
+            if (resultsDir != null) {
+                System.out.println("Shard " + shard + " results: " + shard.writeFailures(resultsDir, NAME, failedFiles));
             }
             RegressionTestingHelper.printResult(failedFiles);
             Assert.assertEquals(0, failedFiles.size());
@@ -44,4 +84,14 @@ public class PDFRegressionTestUtils {
             e.printStackTrace();
         }
     }
+
+    private static void merge(File resultsDir) {
+        try {
+            Map<String, List<FailedPolicyCheck>> failedFiles = RegressionShard.mergeFailures(resultsDir, NAME);
+            RegressionTestingHelper.printResult(failedFiles);
+            Assert.assertEquals(0, failedFiles.size());
+        } catch (IOException e) {
+            Assert.fail("Shard results couldn't be merged: " + e.getMessage());
+        }
+    }
 }
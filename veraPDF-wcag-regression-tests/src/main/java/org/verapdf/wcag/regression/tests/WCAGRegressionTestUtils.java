@@ -2,34 +2,68 @@ package org.verapdf.wcag.regression.tests;
 
 import org.junit.Assert;
 import org.verapdf.pdfa.qa.FailedPolicyCheck;
+import org.verapdf.pdfa.qa.ProcessorPool;
+import org.verapdf.pdfa.qa.RegressionExecutionOptions;
+import org.verapdf.pdfa.qa.RegressionReportSink;
+import org.verapdf.pdfa.qa.RegressionResultStore;
+import org.verapdf.pdfa.qa.RegressionShard;
 import org.verapdf.pdfa.qa.RegressionTestingHelper;
-import org.verapdf.pdfa.validation.profiles.Profiles;
 import org.verapdf.pdfa.validation.profiles.ValidationProfile;
 
 import javax.xml.bind.JAXBException;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.URL;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public class WCAGRegressionTestUtils {
+    private static final String NAME = "wcag";
     private static final String wcagProfileUrl = "https://github.com/veraPDF/veraPDF-validation-profiles/raw/integration/PDF_UA/WCAG-2-2-Complete.xml";
 
+    /**
+     * Runs the WCAG regression tests. Use {@code --shard i/n} to run one of
+     * {@code n} shards of the test files, writing its failures to the
+     * {@code --results <dir>} directory, and {@code --merge <dir>} to merge the
+     * failures written by a complete set of shards. Outcomes are replayed
+     * from the previous run for unchanged files, use {@code --force} to check
+     * every file. Use {@code --report <file>} to stream each file's outcome to
+     * a JUnit XML report if the file name ends with {@code .xml}, or to a JSON
+     * lines report otherwise. {@code --timeout <s>} gives each file a time
+     * budget, with at most {@code --max-abandoned <n>} timed out files still
+     * stopping in the background, {@code --max-failures <n>} stops the run
+     * after {@code n} files fail their policies and {@code --triage} skips
+     * recording passed checks for files whose policies don't need them.
+     */
     public static void main(String[] args) {
-        test();
+        String mergeDir = RegressionShard.argument(args, "--merge");
+        if (mergeDir != null) {
+            merge(new File(mergeDir));
+        } else {
+            test(args);
+        }
     }
 
     public static void test() {
-        try {
-            RegressionTestingHelper helper = new RegressionTestingHelper(true);
-            ValidationProfile customProfile;
-            try (InputStream is = (new URL(wcagProfileUrl)).openStream()) {
-                customProfile = Profiles.profileFromXml(is);
-            }
+        test(new String[0]);
+    }
+
+    public static void test(String[] args) {
+        try (RegressionReportSink reportSink = RegressionReportSink.fromArgs(NAME, args)) {
+            RegressionShard shard = RegressionShard.fromArgs(args);
+            File resultsDir = RegressionShard.resultsDirFromArgs(args);
+            RegressionTestingHelper helper = new RegressionTestingHelper(true, shard, Integer.getInteger(
+                    RegressionTestingHelper.THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()).intValue());
+            helper.setResultStore(RegressionResultStore.fromArgs(NAME, args));
+            helper.setReportSink(reportSink);
+            helper.setExecutionOptions(RegressionExecutionOptions.fromArgs(args));
+            ValidationProfile customProfile = ProcessorPool.defaultInstance().profileFromUrl(new URL(wcagProfileUrl));
             Map<String, List<FailedPolicyCheck>> failedFiles = new HashMap<>();
             helper.getFailedPolicyComplianceFiles(failedFiles, null, customProfile, helper.getPdfFileNames());
+            if (resultsDir != null) {
+                System.out.println("Shard " + shard + " results: " + shard.writeFailures(resultsDir, NAME, failedFiles));
+            }
             RegressionTestingHelper.printResult(failedFiles);
             Assert.assertEquals(0, failedFiles.size());
         } catch (IOException | JAXBException e) {
@@ -37,4 +71,14 @@ public class WCAGRegressionTestUtils {
             e.printStackTrace();
         }
     }
+
+    private static void merge(File resultsDir) {
+        try {
+            Map<String, List<FailedPolicyCheck>> failedFiles = RegressionShard.mergeFailures(resultsDir, NAME);
+            RegressionTestingHelper.printResult(failedFiles);
+            Assert.assertEquals(0, failedFiles.size());
+        } catch (IOException e) {
+            Assert.fail("Shard results couldn't be merged: " + e.getMessage());
+        }
+    }
 }